@@ -54,6 +54,16 @@ public class Activator extends AbstractUIPlugin {
 			DBeaverCore.getGlobalPreferenceStore(), XuguConstants.PREF_DBMS_OUTPUT, true);
 		PrefUtils.setDefaultPreferenceValue(
 			DBeaverCore.getGlobalPreferenceStore(), XuguConstants.PREF_DBMS_READ_ALL_SYNONYMS, true);
+		PrefUtils.setDefaultPreferenceValue(
+			DBeaverCore.getGlobalPreferenceStore(), XuguConstants.PREF_METADATA_SNAPSHOT, false);
+		PrefUtils.setDefaultPreferenceValue(
+			DBeaverCore.getGlobalPreferenceStore(), XuguConstants.PREF_NAVIGATOR_PAGE_SIZE, XuguConstants.DEFAULT_NAVIGATOR_PAGE_SIZE);
+		PrefUtils.setDefaultPreferenceValue(
+			DBeaverCore.getGlobalPreferenceStore(), XuguConstants.PREF_INSERT_BATCH_SIZE, XuguConstants.DEFAULT_INSERT_BATCH_SIZE);
+		PrefUtils.setDefaultPreferenceValue(
+			DBeaverCore.getGlobalPreferenceStore(), XuguConstants.PREF_INSERT_COMMIT_INTERVAL, XuguConstants.DEFAULT_INSERT_COMMIT_INTERVAL);
+		PrefUtils.setDefaultPreferenceValue(
+			DBeaverCore.getGlobalPreferenceStore(), XuguConstants.PREF_PARTITION_READ_CONNECTIONS, XuguConstants.DEFAULT_PARTITION_READ_CONNECTIONS);
 		PrefUtils.setDefaultPreferenceValue(
 			DBeaverCore.getGlobalPreferenceStore(), XuguConstants.PREF_DISABLE_SCRIPT_ESCAPE_PROCESSING, true);
     }
@@ -53,9 +53,44 @@ public class XuguConstants {
     
     //默认的连接守护进程休眠时间1分钟
     public static final int DEFAULT_SLEEP_TIME = 60000;
+    //并行加载模式结构时最多使用的元数据连接数
+    public static final int STRUCTURE_LOADER_CONNECTIONS = 4;
+    //导航器按名称分页读取表、视图、序列、同义词时每页的行数；默认不分页，
+    //各页仍汇总后一次填充缓存，分页只在需要限制单条语句的结果大小时使用
+    public static final int DEFAULT_NAVIGATOR_PAGE_SIZE = 0;
+    //数据导入时每批插入的行数、提交间隔行数（0表示由事务设置决定）
+    public static final int DEFAULT_INSERT_BATCH_SIZE = 1000;
+    public static final int DEFAULT_INSERT_COMMIT_INTERVAL = 0;
+    //整表读取（导出）分区表时并行扫描分区使用的连接数，不大于1时整表扫描
+    public static final int DEFAULT_PARTITION_READ_CONNECTIONS = 4;
+    //服务器输出（DBMS_OUTPUT）缓冲区字节数，输出窗口每写出多少行刷新一次
+    public static final int MAXIMUM_DBMS_OUTPUT_SIZE = 1000000;
+    public static final int DBMS_OUTPUT_BATCH_LINES = 200;
+    //系统库SYSDBA辅助连接池：最大连接数、借出最长等待时间、空闲回收时间（毫秒）
+    public static final int SYSDBA_POOL_MAX_SIZE = 2;
+    public static final long SYSDBA_POOL_MAX_WAIT = 10000;
+    public static final long SYSDBA_POOL_IDLE_TIMEOUT = 60000;
+    //断线重连：首次等待时间、最长等待时间（毫秒）、重新打开连接的最多次数、元数据读取的最多重试次数
+    public static final long RECONNECT_BASE_DELAY = 500;
+    public static final long RECONNECT_MAX_DELAY = 10000;
+    public static final int RECONNECT_MAX_ATTEMPTS = 4;
+    public static final int RECONNECT_MAX_READ_RETRIES = 2;
+    //SQLState中表示连接异常的类别
+    public static final String SQL_STATE_CONNECTION_EXCEPTION = "08";
+    //语法错误或对象不存在（服务器不支持某项功能时返回）
+    public static final String SQL_STATE_SYNTAX_ERROR = "42";
+    //集群节点：健康检查间隔、探测连接超时（毫秒）
+    public static final long CLUSTER_CHECK_INTERVAL = 30000;
+    public static final int CLUSTER_CHECK_TIMEOUT = 3000;
+    //主连接、SQL编辑器连接、并行结构加载连接、分区并行读取连接的执行上下文用途
+    public static final String CONTEXT_PURPOSE_MAIN = "Main";
+    public static final String CONTEXT_PURPOSE_SQL_EDITOR = "SQLEditor";
+    public static final String CONTEXT_PURPOSE_STRUCTURE_LOADER = "Parallel metadata read";
+    public static final String CONTEXT_PURPOSE_PARTITION_READER = "Partition reader";
 
     public static final String PROP_CONNECTION_TYPE = DBConstants.INTERNAL_PROP_PREFIX + "connection-type@";
     public static final String PROP_SERVER_TIMEZONE = DBConstants.INTERNAL_PROP_PREFIX + "serverTimezone@";
+    public static final String PROP_CLUSTER_NODES = DBConstants.INTERNAL_PROP_PREFIX + "cluster-nodes@";
     
     public static final String[] TABLE_TYPES = new String[]{"TABLE", "VIEW"};
     
@@ -99,6 +134,11 @@ public class XuguConstants {
     public static final String PREF_DBMS_READ_ALL_SYNONYMS = "xugu.read.all.synonyms";
     public static final String PREF_DISABLE_SCRIPT_ESCAPE_PROCESSING = "xugu.disable.script.escape";
     public static final String PREF_KEY_DDL_FORMAT = "xugu.ddl.format";
+    public static final String PREF_METADATA_SNAPSHOT = "xugu.metadata.snapshot";
+    public static final String PREF_NAVIGATOR_PAGE_SIZE = "xugu.navigator.page.size";
+    public static final String PREF_INSERT_BATCH_SIZE = "xugu.insert.batch.size";
+    public static final String PREF_INSERT_COMMIT_INTERVAL = "xugu.insert.commit.interval";
+    public static final String PREF_PARTITION_READ_CONNECTIONS = "xugu.partition.read.connections";
     
     // 默认值约束
     public static final DBSEntityConstraintType CONSTRAINT_DEFAULT = new DBSEntityConstraintType("xugu.default", "DEFAULT", XuguMessages.model_struct_default, false, false, false, false); //$NON-NLS-1$
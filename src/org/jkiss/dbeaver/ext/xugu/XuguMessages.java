@@ -41,6 +41,8 @@ public class XuguMessages extends NLS {
 	public static String dialog_connection_test_connection;
 	public static String dialog_connection_user_name;
 	public static String dialog_connection_server_timezone;
+	public static String dialog_connection_cluster_nodes;
+	public static String dialog_connection_cluster_nodes_tip;
 	public static String dialog_connection_server_role;
 	public static String dialog_connection_role_sysdba;
 	public static String dialog_connection_role_dba;
@@ -280,9 +280,8 @@ public class XuguUtils {
     }
 
     public static int getDBIdleTime(Connection conn) {
-    	try {
-    		Statement stmt = conn.createStatement();
-			ResultSet rs = stmt.executeQuery("SHOW MAX_IDLE_TIME");
+    	try (Statement stmt = conn.createStatement();
+    	     ResultSet rs = stmt.executeQuery("SHOW MAX_IDLE_TIME")) {
 			if(rs.next()) {
 				return rs.getInt(1);
 			}
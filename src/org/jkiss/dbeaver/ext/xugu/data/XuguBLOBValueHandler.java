@@ -20,20 +20,29 @@ import org.jkiss.code.NotNull;
 import org.jkiss.dbeaver.model.DBPDataSource;
 import org.jkiss.dbeaver.model.data.DBDContent;
 import org.jkiss.dbeaver.model.exec.DBCException;
+import org.jkiss.dbeaver.model.exec.DBCSession;
+import org.jkiss.dbeaver.model.exec.jdbc.JDBCResultSet;
 import org.jkiss.dbeaver.model.impl.jdbc.data.handlers.JDBCContentValueHandler;
 import org.jkiss.dbeaver.model.runtime.DBRProgressMonitor;
 import org.jkiss.dbeaver.model.struct.DBSTypedObject;
 
 import java.io.IOException;
 import java.io.Writer;
+import java.sql.SQLException;
 
 /**
- * CLOB handler
+ * BLOB handler
+ * 读取结果集时只取Blob定位符，内容在首次使用时读取，超过阈值的值写入临时文件，堆内只保留小对象
  */
 public class XuguBLOBValueHandler extends JDBCContentValueHandler {
 
     public static final XuguBLOBValueHandler INSTANCE = new XuguBLOBValueHandler();
 
+    @Override
+    protected DBDContent fetchColumnValue(DBCSession session, JDBCResultSet resultSet, DBSTypedObject type, int index) throws DBCException, SQLException {
+        return new XuguContentBLOB(session.getDataSource(), resultSet.getBlob(index));
+    }
+
     @Override
     public void writeStreamValue(DBRProgressMonitor monitor, @NotNull DBPDataSource dataSource, @NotNull DBSTypedObject type, @NotNull DBDContent object, @NotNull Writer writer) throws DBCException, IOException {
         if (!object.isNull()) {
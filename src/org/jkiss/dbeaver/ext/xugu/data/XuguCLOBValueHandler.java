@@ -24,13 +24,14 @@ import org.jkiss.dbeaver.model.exec.DBCException;
 import org.jkiss.dbeaver.model.impl.jdbc.data.handlers.JDBCContentValueHandler;
 import org.jkiss.dbeaver.model.runtime.DBRProgressMonitor;
 import org.jkiss.dbeaver.model.struct.DBSTypedObject;
-import org.jkiss.dbeaver.utils.ContentUtils;
 
 import java.io.IOException;
+import java.io.Reader;
 import java.io.Writer;
 
 /**
  * CLOB handler
+ * 导出为SQL时从内容的Reader按固定长度分段读取，逐段转义并写出TO_CLOB('...')||...，不在内存中保留完整的值
  */
 public class XuguCLOBValueHandler extends JDBCContentValueHandler {
 
@@ -44,30 +45,55 @@ public class XuguCLOBValueHandler extends JDBCContentValueHandler {
             writer.write("NULL");
             return;
         }
-        String strValue = ContentUtils.getContentStringValue(monitor, object);
-        String[] parts = splitString(strValue);
-        for (int i = 0; i < parts.length; i++) {
-            String part = parts[i];
-            if (i > 0) {
-            	writer.write("||");
+        try (Reader reader = contents.getContentReader()) {
+            char[] buffer = new char[MAX_PART_SIZE];
+            //上一段末尾被截断的高位代理字符，放到下一段开头，避免拆开代理对
+            int carry = 0;
+            boolean first = true;
+            while (!monitor.isCanceled()) {
+                int length = carry;
+                int count;
+                while (length < buffer.length && (count = reader.read(buffer, length, buffer.length - length)) > 0) {
+                    length += count;
+                }
+                if (length == 0 && !first) {
+                    break;
+                }
+                boolean last = length < buffer.length;
+                int partLength = length;
+                if (!last && Character.isHighSurrogate(buffer[length - 1])) {
+                    partLength--;
+                }
+                if (!first) {
+                    writer.write("||");
+                }
+                writer.write("TO_CLOB('");
+                writeEscaped(writer, buffer, partLength);
+                writer.write("')");
+                first = false;
+                carry = length - partLength;
+                if (carry > 0) {
+                    buffer[0] = buffer[partLength];
+                }
+                if (last) {
+                    break;
+                }
             }
-            writer.write("TO_CLOB('");
-            writer.write(part.replace("'", "''"));
-            writer.write("')");
         }
     }
 
-    private static String[] splitString(String strValue) {
-        int partCount = strValue.length() / MAX_PART_SIZE;
-        if (strValue.length() % MAX_PART_SIZE > 0) {
-        	partCount++;
-        }
-        String[] parts = new String[partCount];
-        for (int i = 0; i < partCount; i++) {
-            int startOffset = i * MAX_PART_SIZE;
-            int endOffset = strValue.length() < startOffset + MAX_PART_SIZE ? strValue.length() : startOffset + MAX_PART_SIZE;
-            parts[i] = strValue.substring(startOffset, endOffset);
+    /**
+     * 写出字符串常量的内容，单引号写为两个单引号
+     */
+    private static void writeEscaped(Writer writer, char[] buffer, int length) throws IOException {
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            if (buffer[i] == '\'') {
+                writer.write(buffer, start, i + 1 - start);
+                writer.write('\'');
+                start = i + 1;
+            }
         }
-        return parts;
+        writer.write(buffer, start, length - start);
     }
 }
@@ -27,36 +27,40 @@ import org.jkiss.dbeaver.model.exec.DBCException;
 import org.jkiss.dbeaver.model.exec.jdbc.JDBCPreparedStatement;
 import org.jkiss.dbeaver.model.exec.jdbc.JDBCSession;
 import org.jkiss.dbeaver.model.impl.BytesContentStorage;
-import org.jkiss.dbeaver.model.impl.TemporaryContentStorage;
 import org.jkiss.dbeaver.model.impl.jdbc.data.JDBCContentLOB;
 import org.jkiss.dbeaver.model.runtime.DBRProgressMonitor;
 import org.jkiss.dbeaver.model.struct.DBSTypedObject;
 import org.jkiss.dbeaver.utils.ContentUtils;
 import org.jkiss.dbeaver.utils.MimeTypes;
-import org.jkiss.utils.BeanUtils;
 
 import java.io.*;
+import java.sql.SQLException;
 
 /**
  * BFILE content
+ * 驱动方法通过按类缓存的MethodHandle调用；只读取长度时读完即关闭文件，读取内容时长度和内容共用一次打开，
+ * 内容按固定大小的缓冲区流式复制
  */
 public class XuguContentBFILE extends JDBCContentLOB {
 
     private static final Log log = Log.getLog(XuguContentBFILE.class);
 
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
     private Object bfile;
+    private XuguDriverMethods methods;
     private String name;
     private boolean opened;
+    private long length = -1;
 
     public XuguContentBFILE(DBPDataSource dataSource, Object bfile) {
         super(dataSource);
         this.bfile = bfile;
         if (this.bfile != null) {
+            methods = XuguDriverMethods.forObject(bfile);
             try {
-                name = (String) BeanUtils.invokeObjectMethod(
-                    bfile,
-                    "getName");
-            } catch (Throwable e) {
+                name = (String) methods.invoke(bfile, "getName");
+            } catch (SQLException e) {
                 log.error(e);
             }
         }
@@ -64,27 +68,22 @@ public class XuguContentBFILE extends JDBCContentLOB {
 
     @Override
     public long getLOBLength() throws DBCException {
-        if (bfile != null) {
-            boolean openLocally = !opened;
+        if (length < 0 && bfile != null) {
+            //读取内容时文件已打开，由getContents关闭；否则只为读取长度打开，读完即关闭
+            boolean wasOpened = opened;
+            openFile();
             try {
-                if (openLocally) {
-                    openFile();
-                }
-                final Object length = BeanUtils.invokeObjectMethod(
-                    bfile,
-                    "length");
-                if (length instanceof Number) {
-                    return ((Number) length).longValue();
-                }
-            } catch (Throwable e) {
+                Object result = methods.invoke(bfile, "length");
+                length = result instanceof Number ? ((Number) result).longValue() : 0;
+            } catch (SQLException e) {
                 throw new DBCException("Error when reading BFILE length", e, dataSource);
             } finally {
-                if (openLocally) {
+                if (!wasOpened) {
                     closeFile();
                 }
             }
         }
-        return 0;
+        return Math.max(length, 0);
     }
 
     private void openFile() throws DBCException {
@@ -92,9 +91,9 @@ public class XuguContentBFILE extends JDBCContentLOB {
             return;
         }
         try {
-            BeanUtils.invokeObjectMethod(bfile, "openFile");
+            methods.invoke(bfile, "openFile");
             opened = true;
-        } catch (Throwable e) {
+        } catch (SQLException e) {
             throw new DBCException(e, dataSource);
         }
     }
@@ -104,20 +103,22 @@ public class XuguContentBFILE extends JDBCContentLOB {
             return;
         }
         try {
-            BeanUtils.invokeObjectMethod(bfile, "closeFile");
             opened = false;
-        } catch (Throwable e) {
+            methods.invoke(bfile, "closeFile");
+        } catch (SQLException e) {
             throw new DBCException(e, dataSource);
         }
     }
 
     private InputStream getInputStream() throws DBCException {
         try {
-            return (InputStream) BeanUtils.invokeObjectMethod(
-                bfile,
-                "getBinaryStream");
-        } catch (Throwable e) {
-            throw new DBCException("Error when reading BFILE length", e, dataSource);
+            InputStream stream = (InputStream) methods.invoke(bfile, "getBinaryStream");
+            if (stream == null) {
+                throw new DBCException("BFILE '" + name + "' has no content stream");
+            }
+            return stream;
+        } catch (SQLException e) {
+            throw new DBCException("Error when reading BFILE content", e, dataSource);
         }
     }
 
@@ -138,27 +139,36 @@ public class XuguContentBFILE extends JDBCContentLOB {
                 long contentLength = getContentLength();
                 DBPPlatform platform = dataSource.getContainer().getPlatform();
                 if (contentLength < platform.getPreferenceStore().getInt(ModelPreferences.MEMORY_CONTENT_MAX_SIZE)) {
-                    try {
-                        try (InputStream bs = getInputStream()) {
-                            storage = BytesContentStorage.createFromStream(
-                                bs,
-                                contentLength,
-                                getDefaultEncoding());
+                    byte[] data = new byte[(int) contentLength];
+                    try (InputStream bs = getInputStream()) {
+                        int offset = 0;
+                        int count;
+                        while (offset < data.length && (count = bs.read(data, offset, Math.min(COPY_BUFFER_SIZE, data.length - offset))) > 0) {
+                            offset += count;
+                        }
+                        if (offset < data.length) {
+                            throw new IOException("Unexpected end of BFILE '" + name + "': " + offset + " of " + data.length + " bytes read");
                         }
                     } catch (IOException e) {
                         throw new DBCException("IO error while reading content", e);
                     }
+                    storage = new BytesContentStorage(data, getDefaultEncoding());
                 } else {
                     // Create new local storage
                     File tempFile;
                     try {
-                        tempFile = ContentUtils.createTempContentFile(monitor, platform, "blob" + bfile.hashCode());
+                        tempFile = ContentUtils.createTempContentFile(monitor, platform, "bfile" + System.identityHashCode(this));
                     } catch (IOException e) {
                         throw new DBCException("Can't create temporary file", e);
                     }
-                    try (OutputStream os = new FileOutputStream(tempFile)) {
-                        try (InputStream bs = getInputStream()) {
-                            ContentUtils.copyStreams(bs, contentLength, os, monitor);
+                    try (OutputStream os = new FileOutputStream(tempFile); InputStream bs = getInputStream()) {
+                        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+                        int count;
+                        while ((count = bs.read(buffer)) > 0) {
+                            if (monitor.isCanceled()) {
+                                throw new IOException("Canceled");
+                            }
+                            os.write(buffer, 0, count);
                         }
                     } catch (IOException e) {
                         ContentUtils.deleteTempFile(tempFile);
@@ -167,14 +177,14 @@ public class XuguContentBFILE extends JDBCContentLOB {
                         ContentUtils.deleteTempFile(tempFile);
                         throw new DBCException(e, dataSource);
                     }
-                    this.storage = new TemporaryContentStorage(platform, tempFile, getDefaultEncoding());
+                    this.storage = new XuguMappedContentStorage(platform, tempFile, getDefaultEncoding());
                 }
-                // Free blob - we don't need it anymore
-                releaseBlob();
             }
             finally {
                 closeFile();
             }
+            // Free blob - we don't need it anymore
+            releaseBlob();
         }
         return storage;
     }
@@ -188,6 +198,12 @@ public class XuguContentBFILE extends JDBCContentLOB {
 
     private void releaseBlob() {
         if (bfile != null) {
+            //读取内容中途出错时文件可能仍处于打开状态
+            try {
+                closeFile();
+            } catch (DBCException e) {
+                log.debug("Error closing BFILE '" + name + "'", e);
+            }
             bfile = null;
         }
     }
@@ -0,0 +1,135 @@
+/*
+ * DBeaver - Universal Database Manager
+ * Copyright (C) 2010-2018 Serge Rider (serge@jkiss.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jkiss.dbeaver.ext.xugu.data;
+
+import org.jkiss.dbeaver.Log;
+import org.jkiss.dbeaver.ModelPreferences;
+import org.jkiss.dbeaver.model.DBPDataSource;
+import org.jkiss.dbeaver.model.app.DBPPlatform;
+import org.jkiss.dbeaver.model.data.DBDContentStorage;
+import org.jkiss.dbeaver.model.exec.DBCException;
+import org.jkiss.dbeaver.model.impl.BytesContentStorage;
+import org.jkiss.dbeaver.model.impl.jdbc.data.JDBCContentBLOB;
+import org.jkiss.dbeaver.model.impl.jdbc.data.JDBCContentLOB;
+import org.jkiss.dbeaver.model.runtime.DBRProgressMonitor;
+import org.jkiss.dbeaver.utils.ContentUtils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.sql.Blob;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * BLOB内容
+ * 读取结果集时只保留驱动的Blob定位符，首次读取内容时才取出数据并释放定位符：
+ * 小于内存内容上限（MEMORY_CONTENT_MAX_SIZE）的值保存在堆内，更大的值写入临时文件，显示或导出时再通过内存映射读取
+ */
+public class XuguContentBLOB extends JDBCContentBLOB {
+
+    private static final Log log = Log.getLog(XuguContentBLOB.class);
+
+    private static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    public XuguContentBLOB(DBPDataSource dataSource, Blob blob)
+    {
+        super(dataSource, blob);
+    }
+
+    @Override
+    public DBDContentStorage getContents(DBRProgressMonitor monitor) throws DBCException
+    {
+        Object blob = getRawValue();
+        if (storage == null && blob instanceof Blob) {
+            int memoryMaxSize = dataSource.getContainer().getPlatform().getPreferenceStore().getInt(ModelPreferences.MEMORY_CONTENT_MAX_SIZE);
+            try {
+                readStream(monitor, ((Blob) blob).getBinaryStream(), memoryMaxSize);
+            } catch (SQLException e) {
+                throw new DBCException(e, dataSource);
+            }
+            if (storage != null) {
+                //内容已取出，释放服务器端的定位符；之后再次释放（release）时free不执行任何操作
+                try {
+                    ((Blob) blob).free();
+                } catch (Exception e) {
+                    log.debug("Can't free BLOB", e);
+                }
+            }
+        }
+        return super.getContents(monitor);
+    }
+
+    /**
+     * 从二进制流读取内容
+     * @param stream 二进制流，为null表示NULL值
+     * @param memoryMaxSize 小于该字节数的内容保存在堆内
+     */
+    private void readStream(DBRProgressMonitor monitor, InputStream stream, int memoryMaxSize) throws DBCException
+    {
+        if (stream == null) {
+            return;
+        }
+        try (InputStream is = stream) {
+            //先读取上限以内的部分（缓冲区按需扩大），未读满即为小对象
+            int headLimit = Math.max(memoryMaxSize, 0);
+            byte[] head = new byte[Math.min(headLimit, INITIAL_BUFFER_SIZE)];
+            int length = 0;
+            int count;
+            while ((count = is.read(head, length, head.length - length)) > 0) {
+                length += count;
+                if (length == head.length) {
+                    if (length >= headLimit) {
+                        break;
+                    }
+                    head = Arrays.copyOf(head, (int) Math.min((long) headLimit, head.length * 2L));
+                }
+            }
+            if (length < memoryMaxSize) {
+                storage = new BytesContentStorage(Arrays.copyOf(head, length), getDefaultEncoding());
+                return;
+            }
+            DBPPlatform platform = dataSource.getContainer().getPlatform();
+            File tempFile = ContentUtils.createTempContentFile(monitor, platform, "blob" + System.identityHashCode(this));
+            try (OutputStream os = new FileOutputStream(tempFile)) {
+                os.write(head, 0, length);
+                byte[] buffer = head.length >= COPY_BUFFER_SIZE ? head : new byte[COPY_BUFFER_SIZE];
+                while ((count = is.read(buffer)) > 0) {
+                    if (monitor.isCanceled()) {
+                        throw new IOException("Canceled");
+                    }
+                    os.write(buffer, 0, count);
+                }
+            } catch (IOException | RuntimeException e) {
+                ContentUtils.deleteTempFile(tempFile);
+                throw e;
+            }
+            storage = new XuguMappedContentStorage(platform, tempFile, getDefaultEncoding());
+        } catch (IOException e) {
+            throw new DBCException("IO error while reading BLOB content", e, dataSource);
+        }
+    }
+
+    @Override
+    protected JDBCContentLOB createNewContent()
+    {
+        return new XuguContentBLOB(dataSource, null);
+    }
+}
@@ -16,25 +16,45 @@
  */
 package org.jkiss.dbeaver.ext.xugu.data;
 
+import org.jkiss.dbeaver.ModelPreferences;
 import org.jkiss.dbeaver.ext.xugu.XuguConstants;
 import org.jkiss.dbeaver.model.DBPDataSource;
 import org.jkiss.dbeaver.model.DBUtils;
+import org.jkiss.dbeaver.model.app.DBPPlatform;
+import org.jkiss.dbeaver.model.data.DBDContentStorage;
 import org.jkiss.dbeaver.model.exec.DBCException;
 import org.jkiss.dbeaver.model.exec.jdbc.JDBCSession;
 import org.jkiss.dbeaver.model.exec.jdbc.JDBCPreparedStatement;
+import org.jkiss.dbeaver.model.impl.StringContentStorage;
 import org.jkiss.dbeaver.model.impl.jdbc.data.JDBCContentXML;
+import org.jkiss.dbeaver.model.runtime.DBRProgressMonitor;
 import org.jkiss.dbeaver.model.struct.DBSTypedObject;
-import org.jkiss.utils.BeanUtils;
+import org.jkiss.dbeaver.utils.ContentUtils;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.invoke.MethodHandle;
+import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.SQLXML;
 
 /**
  * XML content
+ * 读取时按字符流分段复制，超过内存内容上限的文档写入临时文件；
+ * 写入时大文档按字符流绑定，小文档通过驱动的XMLType.createXML创建（经XuguDriverMethods调用）
  */
 public class XuguContentXML extends JDBCContentXML {
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    //按字符流绑定的参数，执行后随值一起关闭
+    private Reader tmpReader;
+
     public XuguContentXML(DBPDataSource dataSource, SQLXML xml)
     {
         super(dataSource, xml);
@@ -46,6 +66,61 @@ public class XuguContentXML extends JDBCContentXML {
         return new XuguContentXML(dataSource, null);
     }
 
+    @Override
+    public DBDContentStorage getContents(DBRProgressMonitor monitor)
+        throws DBCException
+    {
+        Object xml = getRawValue();
+        if (storage == null && xml instanceof SQLXML) {
+            DBPPlatform platform = dataSource.getContainer().getPlatform();
+            int maxLength = platform.getPreferenceStore().getInt(ModelPreferences.MEMORY_CONTENT_MAX_SIZE);
+            try (Reader reader = ((SQLXML) xml).getCharacterStream()) {
+                if (reader == null) {
+                    return null;
+                }
+                //先读取内存上限以内的部分，读完即保存为字符串
+                StringBuilder head = new StringBuilder(Math.min(Math.max(maxLength, 0), COPY_BUFFER_SIZE));
+                char[] buffer = new char[COPY_BUFFER_SIZE];
+                int count = 0;
+                while (head.length() <= maxLength && (count = reader.read(buffer)) > 0) {
+                    head.append(buffer, 0, count);
+                }
+                if (count < 0 || head.length() <= maxLength) {
+                    storage = new StringContentStorage(head.toString());
+                } else {
+                    File tempFile = ContentUtils.createTempContentFile(monitor, platform, "xml" + System.identityHashCode(this));
+                    try (Writer writer = new OutputStreamWriter(new FileOutputStream(tempFile), getDefaultEncoding())) {
+                        writer.append(head);
+                        head.setLength(0);
+                        while ((count = reader.read(buffer)) > 0) {
+                            if (monitor.isCanceled()) {
+                                throw new IOException("Canceled");
+                            }
+                            writer.write(buffer, 0, count);
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        ContentUtils.deleteTempFile(tempFile);
+                        throw e;
+                    }
+                    storage = new XuguMappedContentStorage(platform, tempFile, getDefaultEncoding());
+                }
+            } catch (SQLException e) {
+                throw new DBCException(e, dataSource);
+            } catch (IOException e) {
+                throw new DBCException("IO error while reading XML", e);
+            }
+        }
+        return super.getContents(monitor);
+    }
+
+    @Override
+    public void release()
+    {
+        ContentUtils.close(tmpReader);
+        tmpReader = null;
+        super.release();
+    }
+
     @Override
     public void bindParameter(
         JDBCSession session,
@@ -56,12 +131,20 @@ public class XuguContentXML extends JDBCContentXML {
     {
         try {
             if (storage != null) {
-                try (InputStream streamReader = storage.getContentStream()) {
-                    final Object xmlObject = createXmlObject(session, streamReader);
+                DBPPlatform platform = dataSource.getContainer().getPlatform();
+                if (storage.getContentLength() > platform.getPreferenceStore().getInt(ModelPreferences.MEMORY_CONTENT_MAX_SIZE)) {
+                    //大文档按字符流绑定，由驱动在执行时读取
+                    ContentUtils.close(tmpReader);
+                    tmpReader = storage.getContentReader();
+                    preparedStatement.setCharacterStream(paramIndex, tmpReader);
+                } else {
+                    try (InputStream streamReader = storage.getContentStream()) {
+                        final Object xmlObject = createXmlObject(session, streamReader);
 
-                    preparedStatement.setObject(
-                        paramIndex,
-                        xmlObject);
+                        preparedStatement.setObject(
+                            paramIndex,
+                            xmlObject);
+                    }
                 }
             } else {
                 preparedStatement.setNull(paramIndex, java.sql.Types.SQLXML);
@@ -78,11 +161,9 @@ public class XuguContentXML extends JDBCContentXML {
     private Object createXmlObject(JDBCSession session, InputStream stream) throws DBCException
     {
         try {
-            return BeanUtils.invokeStaticMethod(
-                DBUtils.getDriverClass(dataSource, XuguConstants.XMLTYPE_CLASS_NAME),
-                "createXML",
-                new Class[] {java.sql.Connection.class, java.io.InputStream.class},
-                new Object[] {session.getOriginal(), stream});
+            MethodHandle createXml = XuguDriverMethods.forClass(DBUtils.getDriverClass(dataSource, XuguConstants.XMLTYPE_CLASS_NAME))
+                .getStaticMethod("createXML", Connection.class, InputStream.class);
+            return (Object) createXml.invokeExact(session.getOriginal(), stream);
         } catch (SQLException e) {
             throw new DBCException(e, session.getDataSource());
         } catch (Throwable e) {
@@ -0,0 +1,162 @@
+/*
+ * DBeaver - Universal Database Manager
+ * Copyright (C) 2010-2018 Serge Rider (serge@jkiss.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jkiss.dbeaver.ext.xugu.data;
+
+import org.jkiss.code.NotNull;
+import org.jkiss.dbeaver.Log;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 驱动类（BFILE、XMLType等）的方法访问
+ * 每个驱动类的方法只查找一次并缓存为MethodHandle，缓存挂在类自身上（ClassValue），不会阻止驱动类卸载
+ */
+final class XuguDriverMethods {
+
+    private static final Log log = Log.getLog(XuguDriverMethods.class);
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    //查找失败的方法也缓存，避免重复查找
+    private static final MethodHandle MISSING = MethodHandles.constant(Object.class, null);
+
+    private static final ClassValue<XuguDriverMethods> driverMethods = new ClassValue<XuguDriverMethods>() {
+        @Override
+        protected XuguDriverMethods computeValue(Class<?> type)
+        {
+            return new XuguDriverMethods(type);
+        }
+    };
+
+    private final Class<?> type;
+    private final Map<String, MethodHandle> handles = new ConcurrentHashMap<>();
+
+    private XuguDriverMethods(Class<?> type)
+    {
+        this.type = type;
+    }
+
+    @NotNull
+    static XuguDriverMethods forClass(@NotNull Class<?> type)
+    {
+        return driverMethods.get(type);
+    }
+
+    @NotNull
+    static XuguDriverMethods forObject(@NotNull Object object)
+    {
+        return driverMethods.get(object.getClass());
+    }
+
+    /**
+     * 调用对象的无参方法
+     */
+    Object invoke(@NotNull Object target, @NotNull String methodName) throws SQLException
+    {
+        MethodHandle handle = handles.computeIfAbsent(methodName, name -> {
+            MethodHandle found = findMethod(name, false);
+            return found == MISSING ? MISSING : found.asType(GETTER_TYPE);
+        });
+        try {
+            return (Object) checkFound(handle, methodName).invokeExact(target);
+        } catch (SQLException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new SQLException("Error calling " + type.getName() + "." + methodName + "()", e);
+        }
+    }
+
+    /**
+     * 取静态方法，返回值统一为Object，调用方按(Object)handle.invokeExact(参数...)调用
+     */
+    @NotNull
+    MethodHandle getStaticMethod(@NotNull String methodName, @NotNull Class<?>... parameterTypes) throws SQLException
+    {
+        MethodType methodType = MethodType.methodType(Object.class, parameterTypes);
+        MethodHandle handle = handles.computeIfAbsent(methodName + methodType.toMethodDescriptorString(), key -> {
+            MethodHandle found = findMethod(methodName, true, parameterTypes);
+            return found == MISSING ? MISSING : found.asType(methodType);
+        });
+        return checkFound(handle, methodName);
+    }
+
+    private MethodHandle checkFound(MethodHandle handle, String methodName) throws SQLException
+    {
+        if (handle == MISSING) {
+            throw new SQLException("Method " + type.getName() + "." + methodName + " is not available");
+        }
+        return handle;
+    }
+
+    /**
+     * 查找方法，优先使用公开类或接口中声明的方法，驱动的实现类不是公开类时也能调用
+     */
+    private MethodHandle findMethod(String methodName, boolean isStatic, Class<?>... parameterTypes)
+    {
+        Method method;
+        try {
+            method = type.getMethod(methodName, parameterTypes);
+        } catch (NoSuchMethodException e) {
+            log.debug("Method " + type.getName() + "." + methodName + Arrays.toString(parameterTypes) + " not found");
+            return MISSING;
+        }
+        if (Modifier.isStatic(method.getModifiers()) != isStatic) {
+            return MISSING;
+        }
+        Method accessible = findPublicDeclaration(method);
+        try {
+            if (accessible != null) {
+                return MethodHandles.publicLookup().unreflect(accessible);
+            }
+            method.setAccessible(true);
+            return MethodHandles.lookup().unreflect(method);
+        } catch (IllegalAccessException | RuntimeException e) {
+            log.debug("Can't access method " + type.getName() + "." + methodName, e);
+            return MISSING;
+        }
+    }
+
+    private Method findPublicDeclaration(Method method)
+    {
+        for (Class<?> cls = type; cls != null; cls = cls.getSuperclass()) {
+            if (Modifier.isPublic(cls.getModifiers())) {
+                try {
+                    return cls.getMethod(method.getName(), method.getParameterTypes());
+                } catch (NoSuchMethodException e) {
+                    // continue
+                }
+            }
+            for (Class<?> iface : cls.getInterfaces()) {
+                if (Modifier.isPublic(iface.getModifiers())) {
+                    try {
+                        return iface.getMethod(method.getName(), method.getParameterTypes());
+                    } catch (NoSuchMethodException e) {
+                        // continue
+                    }
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * DBeaver - Universal Database Manager
+ * Copyright (C) 2010-2018 Serge Rider (serge@jkiss.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jkiss.dbeaver.ext.xugu.data;
+
+import org.jkiss.dbeaver.Log;
+import org.jkiss.dbeaver.model.app.DBPPlatform;
+import org.jkiss.dbeaver.model.data.DBDContentStorage;
+import org.jkiss.dbeaver.model.data.DBDContentStorageLocal;
+import org.jkiss.dbeaver.model.runtime.DBRProgressMonitor;
+import org.jkiss.dbeaver.utils.ContentUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * 临时文件中的大对象内容
+ * 文件在第一次读取时以只读方式映射到内存，数据在读取时才由操作系统按页载入，不占用Java堆；
+ * 超过单个映射上限（2GB）的文件按普通文件流读取
+ */
+public class XuguMappedContentStorage implements DBDContentStorageLocal {
+
+    private static final Log log = Log.getLog(XuguMappedContentStorage.class);
+
+    private final DBPPlatform platform;
+    private final File file;
+    private final String charset;
+    private MappedByteBuffer buffer;
+
+    public XuguMappedContentStorage(DBPPlatform platform, File file, String charset)
+    {
+        this.platform = platform;
+        this.file = file;
+        this.charset = charset;
+    }
+
+    private synchronized ByteBuffer getBuffer() throws IOException
+    {
+        if (buffer == null) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+                //映射在通道关闭后仍然有效
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+        }
+        //每个流使用独立的读取位置
+        return buffer.duplicate();
+    }
+
+    @Override
+    public InputStream getContentStream() throws IOException
+    {
+        if (file.length() > Integer.MAX_VALUE) {
+            return new FileInputStream(file);
+        }
+        final ByteBuffer data = getBuffer();
+        return new InputStream() {
+            @Override
+            public int read()
+            {
+                return data.hasRemaining() ? data.get() & 0xFF : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len)
+            {
+                if (len == 0) {
+                    return 0;
+                }
+                if (!data.hasRemaining()) {
+                    return -1;
+                }
+                int count = Math.min(len, data.remaining());
+                data.get(b, off, count);
+                return count;
+            }
+
+            @Override
+            public long skip(long n)
+            {
+                int count = (int) Math.max(0, Math.min(n, data.remaining()));
+                data.position(data.position() + count);
+                return count;
+            }
+
+            @Override
+            public int available()
+            {
+                return data.remaining();
+            }
+        };
+    }
+
+    @Override
+    public Reader getContentReader() throws IOException
+    {
+        return new InputStreamReader(getContentStream(), charset);
+    }
+
+    @Override
+    public long getContentLength()
+    {
+        return file.length();
+    }
+
+    @Override
+    public String getCharset()
+    {
+        return charset;
+    }
+
+    @Override
+    public DBDContentStorage cloneStorage(DBRProgressMonitor monitor) throws IOException
+    {
+        File copyFile = ContentUtils.createTempContentFile(monitor, platform, file.getName());
+        Files.copy(file.toPath(), copyFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return new XuguMappedContentStorage(platform, copyFile, charset);
+    }
+
+    @Override
+    public File getDataFile()
+    {
+        return file;
+    }
+
+    @Override
+    public synchronized void release()
+    {
+        //映射的内存在缓冲区被回收时释放，部分系统上映射期间无法删除文件，此时在退出时删除
+        buffer = null;
+        if (!file.delete() && file.exists()) {
+            log.debug("Can't delete temporary content file '" + file.getAbsolutePath() + "', will delete on exit");
+            file.deleteOnExit();
+        }
+    }
+}
@@ -31,9 +31,9 @@ import java.time.format.DateTimeFormatter;
  */
 public class XuguTemporalAccessorValueHandler extends JDBCTemporalAccessorValueHandler {
 
-    private static final DateTimeFormatter DEFAULT_DATETIME_FORMAT = DateTimeFormatter.ofPattern("'TIMESTAMP '''yyyy-MM-dd HH:mm:ss.nnnnnn''");
-    private static final DateTimeFormatter DEFAULT_DATE_FORMAT = DateTimeFormatter.ofPattern("'DATE '''yyyy-MM-dd''");
-    private static final DateTimeFormatter DEFAULT_TIME_FORMAT = DateTimeFormatter.ofPattern("'TIME '''HH:mm:ss.SSS''");
+    private static final DateTimeFormatter DEFAULT_DATETIME_FORMAT = XuguTimestampValueHandler.NATIVE_DATETIME_FORMATTER;
+    private static final DateTimeFormatter DEFAULT_DATE_FORMAT = XuguTimestampValueHandler.NATIVE_DATE_FORMATTER;
+    private static final DateTimeFormatter DEFAULT_TIME_FORMAT = XuguTimestampValueHandler.NATIVE_TIME_FORMATTER;
 
     public XuguTemporalAccessorValueHandler(DBDDataFormatterProfile formatterProfile)
     {
@@ -25,23 +25,35 @@ import org.jkiss.dbeaver.model.exec.DBCSession;
 import org.jkiss.dbeaver.model.exec.jdbc.JDBCSession;
 import org.jkiss.dbeaver.model.impl.jdbc.data.handlers.JDBCDateTimeValueHandler;
 import org.jkiss.dbeaver.model.struct.DBSTypedObject;
-import org.jkiss.utils.time.ExtendedDateFormat;
 
 import java.lang.reflect.Method;
 import java.sql.Connection;
+import java.sql.Timestamp;
 import java.sql.Types;
+import java.text.FieldPosition;
 import java.text.Format;
-import java.text.SimpleDateFormat;
+import java.text.ParsePosition;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
 import java.util.Calendar;
+import java.util.Date;
 
 /**
  * Object type support
+ * 原生格式（SQL字面量）基于不可变的DateTimeFormatter，多个线程共享同一实例，格式化结果直接写入调用方的缓冲区；
+ * 结果集显示和导出仍使用格式配置中的java.text格式化器
  */
 public class XuguTimestampValueHandler extends JDBCDateTimeValueHandler {
 
-    private static final SimpleDateFormat DEFAULT_DATETIME_FORMAT = new ExtendedDateFormat("'TIMESTAMP '''yyyy-MM-dd HH:mm:ss.ffffff''");
-    private static final SimpleDateFormat DEFAULT_DATE_FORMAT = new SimpleDateFormat("'DATE '''yyyy-MM-dd''");
-    private static final SimpleDateFormat DEFAULT_TIME_FORMAT = new SimpleDateFormat("'TIME '''HH:mm:ss.SSS''");
+    static final DateTimeFormatter NATIVE_DATETIME_FORMATTER = DateTimeFormatter.ofPattern("'TIMESTAMP '''yyyy-MM-dd HH:mm:ss.SSSSSS''");
+    static final DateTimeFormatter NATIVE_DATE_FORMATTER = DateTimeFormatter.ofPattern("'DATE '''yyyy-MM-dd''");
+    static final DateTimeFormatter NATIVE_TIME_FORMATTER = DateTimeFormatter.ofPattern("'TIME '''HH:mm:ss.SSS''");
+
+    private static final Format DEFAULT_DATETIME_FORMAT = new NativeFormat(NATIVE_DATETIME_FORMATTER);
+    private static final Format DEFAULT_DATE_FORMAT = new NativeFormat(NATIVE_DATE_FORMATTER);
+    private static final Format DEFAULT_TIME_FORMAT = new NativeFormat(NATIVE_TIME_FORMATTER);
 
     //private static Method TIMESTAMP_READ_METHOD = null, TIMESTAMPTZ_READ_METHOD = null, TIMESTAMPLTZ_READ_METHOD = null;
 
@@ -92,4 +104,46 @@ public class XuguTimestampValueHandler extends JDBCDateTimeValueHandler {
         return super.getFormatterId(column);
     }
 
+    /**
+     * 按DateTimeFormatter格式化java.util.Date（包括java.sql.Timestamp的纳秒部分）和java.time值
+     * 只用于输出，不支持解析
+     */
+    private static class NativeFormat extends Format {
+
+        private final DateTimeFormatter formatter;
+
+        NativeFormat(DateTimeFormatter formatter)
+        {
+            this.formatter = formatter;
+        }
+
+        @Override
+        public StringBuffer format(Object obj, StringBuffer toAppendTo, FieldPosition pos)
+        {
+            formatter.formatTo(toTemporal(obj), toAppendTo);
+            return toAppendTo;
+        }
+
+        @Override
+        public Object parseObject(String source, ParsePosition pos)
+        {
+            //不解析，位置不变表示解析失败
+            pos.setErrorIndex(pos.getIndex());
+            return null;
+        }
+
+        private static TemporalAccessor toTemporal(Object obj)
+        {
+            if (obj instanceof Timestamp) {
+                return ((Timestamp) obj).toLocalDateTime();
+            } else if (obj instanceof Date) {
+                //java.sql.Date和java.sql.Time不支持toInstant
+                return Instant.ofEpochMilli(((Date) obj).getTime()).atZone(ZoneId.systemDefault()).toLocalDateTime();
+            } else if (obj instanceof TemporalAccessor) {
+                return (TemporalAccessor) obj;
+            }
+            throw new IllegalArgumentException("Cannot format given Object as a Date");
+        }
+    }
+
 }
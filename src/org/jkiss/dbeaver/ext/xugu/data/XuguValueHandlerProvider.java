@@ -19,18 +19,26 @@ package org.jkiss.dbeaver.ext.xugu.data;
 import org.jkiss.dbeaver.ext.xugu.XuguConstants;
 import org.jkiss.dbeaver.model.DBPDataKind;
 import org.jkiss.dbeaver.model.DBPDataSource;
+import org.jkiss.dbeaver.model.data.DBDDataFormatterProfile;
 import org.jkiss.dbeaver.model.data.DBDPreferences;
 import org.jkiss.dbeaver.model.data.DBDValueHandler;
 import org.jkiss.dbeaver.model.data.DBDValueHandlerProvider;
 import org.jkiss.dbeaver.model.struct.DBSTypedObject;
 
+import java.lang.ref.WeakReference;
 import java.sql.Types;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 /**
  * Xugu data types provider
  */
 public class XuguValueHandlerProvider implements DBDValueHandlerProvider {
 
+    //时间类型的处理器按格式配置缓存，同一配置的所有列共享一个实例；
+    //处理器引用了格式配置，必须通过WeakReference保存，否则键永远不会被回收
+    private final Map<DBDDataFormatterProfile, WeakReference<XuguTimestampValueHandler>> timestampHandlers = new WeakHashMap<>();
+
     @Override
     public DBDValueHandler getValueHandler(DBPDataSource dataSource, DBDPreferences preferences, DBSTypedObject typedObject)
     {
@@ -42,7 +50,7 @@ public class XuguValueHandlerProvider implements DBDValueHandlerProvider {
                 return XuguCLOBValueHandler.INSTANCE;
             case Types.TIME_WITH_TIMEZONE:
             case Types.TIMESTAMP_WITH_TIMEZONE:
-                return new XuguTimestampValueHandler(preferences.getDataFormatterProfile());
+                return getTimestampHandler(preferences.getDataFormatterProfile());
             case Types.STRUCT:
                 return XuguObjectValueHandler.INSTANCE;
         }
@@ -57,10 +65,23 @@ public class XuguValueHandlerProvider implements DBDValueHandlerProvider {
         }
 
         if (typeName.contains(XuguConstants.TYPE_NAME_TIMESTAMP) || typedObject.getDataKind() == DBPDataKind.DATETIME) {
-            return new XuguTimestampValueHandler(preferences.getDataFormatterProfile());
+            return getTimestampHandler(preferences.getDataFormatterProfile());
         } else {
             return null;
         }
     }
 
+    private XuguTimestampValueHandler getTimestampHandler(DBDDataFormatterProfile formatterProfile)
+    {
+        synchronized (timestampHandlers) {
+            WeakReference<XuguTimestampValueHandler> handlerRef = timestampHandlers.get(formatterProfile);
+            XuguTimestampValueHandler handler = handlerRef == null ? null : handlerRef.get();
+            if (handler == null) {
+                handler = new XuguTimestampValueHandler(formatterProfile);
+                timestampHandlers.put(formatterProfile, new WeakReference<>(handler));
+            }
+            return handler;
+        }
+    }
+
 }
\ No newline at end of file
@@ -78,6 +78,9 @@ public class XuguXMLValueHandler extends XuguCLOBValueHandler {
             return new XuguContentXML(session.getDataSource(), null);
         } else if (object instanceof SQLXML) {
             return new XuguContentXML(session.getDataSource(), (SQLXML) object);
+        } else if (isDriverXMLType(object)) {
+            //驱动的XMLType对象，包装后按流读取
+            return new XuguContentXML(session.getDataSource(), new XuguXMLWrapper(object));
         } else {
             throw new DBCException("Unsupported object type: " + object.getClass().getName());
         }
@@ -90,8 +93,17 @@ public class XuguXMLValueHandler extends XuguCLOBValueHandler {
             return new XuguContentXML(session.getDataSource(), null);
         } else if (object instanceof XuguContentXML) {
             return copy ? (XuguContentXML)((XuguContentXML) object).cloneValue(session.getProgressMonitor()) : (XuguContentXML) object;
+        } else if (object instanceof SQLXML) {
+            return new XuguContentXML(session.getDataSource(), (SQLXML) object);
+        } else if (isDriverXMLType(object)) {
+            return new XuguContentXML(session.getDataSource(), new XuguXMLWrapper(object));
         }
         return super.getValueFromObject(session, type, object, copy);
     }
 
+    private static boolean isDriverXMLType(Object object)
+    {
+        return object.getClass().getSimpleName().equals(XuguConstants.XMLTYPE_CLASS_NAME);
+    }
+
 }
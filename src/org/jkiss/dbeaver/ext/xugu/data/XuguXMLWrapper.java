@@ -16,21 +16,23 @@
  */
 package org.jkiss.dbeaver.ext.xugu.data;
 
-import org.jkiss.utils.BeanUtils;
-
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
 import javax.xml.transform.Result;
 import javax.xml.transform.Source;
+import javax.xml.transform.stax.StAXSource;
+import javax.xml.transform.stream.StreamSource;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Writer;
-import java.lang.reflect.InvocationTargetException;
 import java.sql.SQLException;
 import java.sql.SQLXML;
 
 /**
  * Xugu XML wrapper.
  * Actual type of xmlType object is xugu.xdb.XMLType
+ * 驱动方法通过XuguDriverMethods调用；内容通过字符流或StAX读取，不需要先转换为字符串
  */
 public class XuguXMLWrapper implements SQLXML {
 
@@ -44,26 +46,13 @@ public class XuguXMLWrapper implements SQLXML {
     @Override
     public void free() throws SQLException
     {
-        try {
-            BeanUtils.invokeObjectMethod(xmlType, "close", null, null);
-        } catch (Throwable e) {
-            throw new SQLException("Can't close XMLType", e);
-        }
+        invokeMethod(xmlType, "close");
     }
 
     @Override
     public InputStream getBinaryStream() throws SQLException
     {
-        try {
-            return (InputStream) BeanUtils.invokeObjectMethod(xmlType, "getInputStream", null, null);
-        } catch (InvocationTargetException e) {
-            if (e.getTargetException() instanceof SQLException) {
-                throw (SQLException)e.getTargetException();
-            }
-            throw new SQLException(e);
-        } catch (Throwable e) {
-            throw new SQLException(e);
-        }
+        return (InputStream) invokeMethod(xmlType, "getInputStream");
     }
 
     @Override
@@ -75,17 +64,8 @@ public class XuguXMLWrapper implements SQLXML {
     @Override
     public Reader getCharacterStream() throws SQLException
     {
-        try {
-            Object clobVal = BeanUtils.invokeObjectMethod(xmlType, "getClobVal", null, null);
-            return (Reader) BeanUtils.invokeObjectMethod(clobVal, "getCharacterStream", null, null);
-        } catch (InvocationTargetException e) {
-            if (e.getTargetException() instanceof SQLException) {
-                throw (SQLException)e.getTargetException();
-            }
-            throw new SQLException(e);
-        } catch (Throwable e) {
-            throw new SQLException(e);
-        }
+        Object clobVal = invokeMethod(xmlType, "getClobVal");
+        return clobVal == null ? null : (Reader) invokeMethod(clobVal, "getCharacterStream");
     }
 
     @Override
@@ -97,16 +77,7 @@ public class XuguXMLWrapper implements SQLXML {
     @Override
     public String getString() throws SQLException
     {
-        try {
-            return (String) BeanUtils.invokeObjectMethod(xmlType, "getStringVal", null, null);
-        } catch (InvocationTargetException e) {
-            if (e.getTargetException() instanceof SQLException) {
-                throw (SQLException)e.getTargetException();
-            }
-            throw new SQLException(e);
-        } catch (Throwable e) {
-            throw new SQLException(e);
-        }
+        return (String) invokeMethod(xmlType, "getStringVal");
     }
 
     @Override
@@ -116,9 +87,24 @@ public class XuguXMLWrapper implements SQLXML {
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public <T extends Source> T getSource(Class<T> sourceClass) throws SQLException
     {
-        return null;
+        Reader reader = getCharacterStream();
+        if (reader == null) {
+            return null;
+        }
+        if (sourceClass == null || sourceClass == StreamSource.class) {
+            return (T) new StreamSource(reader);
+        }
+        if (sourceClass == StAXSource.class) {
+            try {
+                return (T) new StAXSource(XMLInputFactory.newFactory().createXMLStreamReader(reader));
+            } catch (XMLStreamException e) {
+                throw new SQLException("Can't create StAX reader for XMLType", e);
+            }
+        }
+        throw new SQLException("Source class " + sourceClass.getName() + " not supported");
     }
 
     @Override
@@ -127,4 +113,9 @@ public class XuguXMLWrapper implements SQLXML {
         throw new SQLException("Function not supported");
     }
 
+    private static Object invokeMethod(Object object, String methodName) throws SQLException
+    {
+        return XuguDriverMethods.forObject(object).invoke(object, methodName);
+    }
+
 }
@@ -0,0 +1,407 @@
+/*
+ * DBeaver - Universal Database Manager
+ * Copyright (C) 2010-2018 Serge Rider (serge@jkiss.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jkiss.dbeaver.ext.xugu.model;
+
+import org.jkiss.code.NotNull;
+import org.jkiss.dbeaver.Log;
+import org.jkiss.dbeaver.model.runtime.DBRProgressMonitor;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 辅助连接池（系统库SYSDBA连接）
+ * 连接数有上限，借出时校验空闲较久的连接，超过空闲时间的连接被回收，池满时最多等待指定时间
+ */
+public class XuguAuxConnectionPool {
+
+    private static final Log log = Log.getLog(XuguAuxConnectionPool.class);
+
+    private static final String VALIDATION_QUERY = "select 1 from dual";
+    //刚归还的连接在此时间内借出时不再校验
+    private static final long VALIDATION_BYPASS_MS = 1000;
+
+    /**
+     * 打开新的物理连接
+     */
+    public interface ConnectionFactory {
+        Connection openConnection(@NotNull DBRProgressMonitor monitor) throws SQLException;
+    }
+
+    /**
+     * 借出的连接，关闭时归还连接池
+     */
+    public final class Lease implements AutoCloseable {
+        private final PooledConnection pooled;
+        private boolean broken;
+        private boolean released;
+
+        private Lease(PooledConnection pooled)
+        {
+            this.pooled = pooled;
+        }
+
+        @NotNull
+        public Connection getConnection()
+        {
+            return pooled.connection;
+        }
+
+        /**
+         * 使用中出现连接错误时调用，归还时直接关闭该连接
+         */
+        public void invalidate()
+        {
+            broken = true;
+        }
+
+        @Override
+        public void close()
+        {
+            if (!released) {
+                released = true;
+                release(pooled, broken);
+            }
+        }
+    }
+
+    private static final class PooledConnection {
+        private final Connection connection;
+        private long lastUsedTime;
+
+        private PooledConnection(Connection connection)
+        {
+            this.connection = connection;
+            this.lastUsedTime = System.currentTimeMillis();
+        }
+    }
+
+    private final String name;
+    private final ConnectionFactory factory;
+    private final int maxSize;
+    private final long maxWaitMs;
+    private final long idleTimeoutMs;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    //空闲连接，后进先出，最近使用的连接最先借出
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    private int openCount;
+    private int borrowedCount;
+    private boolean closed;
+
+    //统计信息
+    private final AtomicLong borrows = new AtomicLong();
+    private final AtomicLong borrowWaitNanos = new AtomicLong();
+    private final AtomicLong maxBorrowWaitNanos = new AtomicLong();
+    private final AtomicLong saturatedBorrows = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+    private final AtomicLong validationFailures = new AtomicLong();
+    private int peakBorrowed;
+
+    public XuguAuxConnectionPool(@NotNull String name, @NotNull ConnectionFactory factory, int maxSize, long maxWaitMs, long idleTimeoutMs)
+    {
+        this.name = name;
+        this.factory = factory;
+        this.maxSize = Math.max(1, maxSize);
+        this.maxWaitMs = maxWaitMs;
+        this.idleTimeoutMs = idleTimeoutMs;
+    }
+
+    /**
+     * 借出一个连接，池满时等待其他连接归还，超时抛出异常
+     * @param monitor 监控
+     * @return 借出的连接，使用完毕后必须关闭
+     * @throws SQLException 无法打开连接或等待超时
+     */
+    @NotNull
+    public Lease borrow(@NotNull DBRProgressMonitor monitor) throws SQLException
+    {
+        long startTime = System.nanoTime();
+        long deadline = startTime + TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+        boolean waited = false;
+        while (true) {
+            PooledConnection pooled = null;
+            boolean create = false;
+            List<PooledConnection> expired = null;
+            lock.lock();
+            try {
+                if (closed) {
+                    throw new SQLException("Connection pool '" + name + "' is closed");
+                }
+                expired = takeExpired();
+                if (!idle.isEmpty()) {
+                    pooled = idle.pollFirst();
+                    borrowedCount++;
+                } else if (openCount < maxSize) {
+                    openCount++;
+                    borrowedCount++;
+                    create = true;
+                } else {
+                    waited = true;
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0 || monitor.isCanceled()) {
+                        timeouts.incrementAndGet();
+                        throw new SQLException("Timed out after " + maxWaitMs + "ms waiting for a connection from pool '" + name + "' (" + maxSize + " connections in use)");
+                    }
+                    try {
+                        available.awaitNanos(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Interrupted while waiting for a connection from pool '" + name + "'", e);
+                    }
+                    continue;
+                }
+                peakBorrowed = Math.max(peakBorrowed, borrowedCount);
+            } finally {
+                lock.unlock();
+                closeAll(expired);
+            }
+
+            if (create) {
+                try {
+                    Connection connection = factory.openConnection(monitor);
+                    if (connection == null) {
+                        throw new SQLException("Null connection returned for pool '" + name + "'");
+                    }
+                    pooled = new PooledConnection(connection);
+                    created.incrementAndGet();
+                } catch (SQLException | RuntimeException e) {
+                    discard(null);
+                    throw e;
+                }
+            } else if (!validate(pooled)) {
+                validationFailures.incrementAndGet();
+                discard(pooled);
+                continue;
+            }
+            recordBorrow(System.nanoTime() - startTime, waited);
+            return new Lease(pooled);
+        }
+    }
+
+    private boolean validate(PooledConnection pooled)
+    {
+        if (System.currentTimeMillis() - pooled.lastUsedTime < VALIDATION_BYPASS_MS) {
+            return true;
+        }
+        try (Statement dbStat = pooled.connection.createStatement()) {
+            dbStat.executeQuery(VALIDATION_QUERY).close();
+            return true;
+        } catch (SQLException e) {
+            log.debug("Pooled connection of '" + name + "' is not valid", e);
+            return false;
+        }
+    }
+
+    private void recordBorrow(long waitNanos, boolean waited)
+    {
+        borrows.incrementAndGet();
+        borrowWaitNanos.addAndGet(waitNanos);
+        if (waited) {
+            saturatedBorrows.incrementAndGet();
+        }
+        long max;
+        while ((max = maxBorrowWaitNanos.get()) < waitNanos && !maxBorrowWaitNanos.compareAndSet(max, waitNanos)) {
+            // retry
+        }
+    }
+
+    private void release(PooledConnection pooled, boolean broken)
+    {
+        List<PooledConnection> expired;
+        lock.lock();
+        try {
+            if (broken || closed) {
+                openCount--;
+                borrowedCount--;
+                expired = new ArrayList<>();
+                expired.add(pooled);
+            } else {
+                borrowedCount--;
+                pooled.lastUsedTime = System.currentTimeMillis();
+                idle.addFirst(pooled);
+                expired = takeExpired();
+            }
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+        closeAll(expired);
+    }
+
+    /**
+     * 放弃借出中的连接（校验失败或打开失败），释放其占用的名额
+     */
+    private void discard(PooledConnection pooled)
+    {
+        lock.lock();
+        try {
+            openCount--;
+            borrowedCount--;
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+        if (pooled != null) {
+            closeConnection(pooled);
+        }
+    }
+
+    /**
+     * 取出超过空闲时间的连接，调用方需持有锁，并在释放锁后关闭它们
+     */
+    private List<PooledConnection> takeExpired()
+    {
+        List<PooledConnection> expired = null;
+        long now = System.currentTimeMillis();
+        for (Iterator<PooledConnection> iter = idle.descendingIterator(); iter.hasNext(); ) {
+            PooledConnection pooled = iter.next();
+            if (now - pooled.lastUsedTime < idleTimeoutMs) {
+                //越靠后的连接空闲越久，遇到未过期的即可停止
+                break;
+            }
+            iter.remove();
+            openCount--;
+            if (expired == null) {
+                expired = new ArrayList<>();
+            }
+            expired.add(pooled);
+        }
+        return expired;
+    }
+
+    /**
+     * 回收超过空闲时间的连接
+     */
+    public void evictIdle()
+    {
+        List<PooledConnection> expired;
+        lock.lock();
+        try {
+            expired = takeExpired();
+        } finally {
+            lock.unlock();
+        }
+        closeAll(expired);
+    }
+
+    private void closeAll(List<PooledConnection> connections)
+    {
+        if (connections != null) {
+            for (PooledConnection pooled : connections) {
+                evicted.incrementAndGet();
+                closeConnection(pooled);
+            }
+        }
+    }
+
+    private void closeConnection(PooledConnection pooled)
+    {
+        try {
+            pooled.connection.close();
+        } catch (SQLException e) {
+            log.debug("Error closing pooled connection of '" + name + "'", e);
+        }
+    }
+
+    /**
+     * 关闭连接池，空闲连接立即关闭，借出中的连接在归还时关闭
+     */
+    public void close()
+    {
+        List<PooledConnection> connections;
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            connections = new ArrayList<>(idle);
+            openCount -= idle.size();
+            idle.clear();
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        for (PooledConnection pooled : connections) {
+            closeConnection(pooled);
+        }
+        if (borrows.get() > 0) {
+            log.debug("[Xugu] " + this);
+        }
+    }
+
+    public long getBorrowCount()
+    {
+        return borrows.get();
+    }
+
+    /**
+     * @return 平均借出等待时间（毫秒）
+     */
+    public double getAverageBorrowTime()
+    {
+        long count = borrows.get();
+        return count == 0 ? 0 : borrowWaitNanos.get() / 1000000.0 / count;
+    }
+
+    public double getMaxBorrowTime()
+    {
+        return maxBorrowWaitNanos.get() / 1000000.0;
+    }
+
+    /**
+     * @return 因连接池已满而需要等待的借出次数
+     */
+    public long getSaturatedBorrowCount()
+    {
+        return saturatedBorrows.get();
+    }
+
+    public long getTimeoutCount()
+    {
+        return timeouts.get();
+    }
+
+    @Override
+    public String toString()
+    {
+        lock.lock();
+        try {
+            return "Pool '" + name + "': borrows=" + borrows.get() +
+                String.format(", avgWait=%.2fms, maxWait=%.2fms", getAverageBorrowTime(), getMaxBorrowTime()) +
+                ", saturated=" + saturatedBorrows.get() + ", timeouts=" + timeouts.get() +
+                ", created=" + created.get() + ", evicted=" + evicted.get() + ", invalid=" + validationFailures.get() +
+                ", open=" + openCount + "/" + maxSize + ", peakBorrowed=" + peakBorrowed;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * DBeaver - Universal Database Manager
+ * Copyright (C) 2010-2018 Serge Rider (serge@jkiss.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jkiss.dbeaver.ext.xugu.model;
+
+/**
+ * 连接级目录上下文（库ID、库名）
+ * 角色标识由登录用户决定，对数据源的所有连接相同，仍由XuguDataSource.getRoleFlag提供
+ * 每个执行上下文只解析一次，由XuguDataSource缓存，切换数据库或刷新数据源时失效
+ */
+public final class XuguCatalogContext {
+
+    private final int dbId;
+    private final String dbName;
+
+    public XuguCatalogContext(int dbId, String dbName)
+    {
+        this.dbId = dbId;
+        this.dbName = dbName;
+    }
+
+    public int getDbId()
+    {
+        return dbId;
+    }
+
+    public String getDbName()
+    {
+        return dbName;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Catalog " + dbName + " [id=" + dbId + "]";
+    }
+}
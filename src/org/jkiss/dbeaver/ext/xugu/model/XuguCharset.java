@@ -38,7 +38,6 @@ import java.util.List;
 public class XuguCharset extends XuguInformation {
 
     private String name;
-    private Connection conn;
     private List<XuguCollation> collations = new ArrayList<>();
 
     public XuguCharset(XuguDataSource dataSource, Connection conn, String name)
@@ -46,18 +45,19 @@ public class XuguCharset extends XuguInformation {
     {
         super(dataSource);
         this.name = name;
-        this.conn = conn;
-        this.loadInfo();
+        this.loadInfo(conn);
     }
 
-    public void loadInfo()
+    private void loadInfo(Connection conn)
         throws SQLException
     {
-    	Statement stmt = this.conn.createStatement();
-    	ResultSet rs = stmt.executeQuery("SELECT * FROM SYS_CHARSETS WHERE CHARSET_NAME='"+this.name+"'");
-    	while(rs.next()) {
-    		XuguCollation temp = new XuguCollation(this, rs);
-    		addCollation(temp);
+    	//连接来自辅助连接池，只在构造时使用，不保留引用
+    	try (Statement stmt = conn.createStatement();
+    	     ResultSet rs = stmt.executeQuery("SELECT * FROM SYS_CHARSETS WHERE CHARSET_NAME='"+this.name+"'")) {
+	    	while(rs.next()) {
+	    		XuguCollation temp = new XuguCollation(this, rs);
+	    		addCollation(temp);
+	    	}
     	}
     }
 
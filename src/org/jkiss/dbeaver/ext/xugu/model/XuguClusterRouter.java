@@ -0,0 +1,349 @@
+/*
+ * DBeaver - Universal Database Manager
+ * Copyright (C) 2010-2018 Serge Rider (serge@jkiss.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jkiss.dbeaver.ext.xugu.model;
+
+import org.jkiss.code.NotNull;
+import org.jkiss.code.Nullable;
+import org.jkiss.dbeaver.Log;
+import org.jkiss.dbeaver.ext.xugu.XuguConstants;
+import org.jkiss.utils.CommonUtils;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 集群节点路由
+ * 连接配置中的节点列表用于分担插件自有的只读连接和只读会话：定时探测各节点的连通性和延迟，
+ * 在健康节点中选择延迟最低的一组，再按已分配的连接数和随机数分散；主连接和元数据连接（对象编辑器的保存、重命名、删除在其上执行）始终使用主节点
+ */
+public class XuguClusterRouter {
+
+    private static final Log log = Log.getLog(XuguClusterRouter.class);
+
+    //延迟不超过最低延迟的该倍数（或最低延迟加上固定毫秒数）的节点都视为候选
+    private static final double LATENCY_TOLERANCE = 1.5;
+    private static final long LATENCY_TOLERANCE_MS = 2;
+    //延迟平滑系数
+    private static final double LATENCY_SMOOTHING = 0.3;
+
+    /**
+     * 集群中的一个节点
+     */
+    public static final class Node {
+        private final String host;
+        private final String port;
+        private volatile boolean healthy = true;
+        //平滑后的探测延迟（毫秒），尚未探测时为-1
+        private volatile double latency = -1;
+        private volatile long lastCheckTime;
+        private int failures;
+        //当前分配到该节点的连接数，每次选择节点时重新统计
+        private int assigned;
+
+        Node(@NotNull String host, @Nullable String port)
+        {
+            this.host = host;
+            this.port = port;
+        }
+
+        @NotNull
+        public String getHost()
+        {
+            return host;
+        }
+
+        @Nullable
+        public String getPort()
+        {
+            return port;
+        }
+
+        public boolean isHealthy()
+        {
+            return healthy;
+        }
+
+        public double getLatency()
+        {
+            return latency;
+        }
+
+        public long getLastCheckTime()
+        {
+            return lastCheckTime;
+        }
+
+        @Override
+        public String toString()
+        {
+            return port == null ? host : host + ":" + port;
+        }
+    }
+
+    private final XuguDataSource dataSource;
+    private final Node primary;
+    private final List<Node> nodes;
+    //已分配到各节点的连接，连接关闭后不再计数
+    private final Map<Connection, Node> routedConnections = new WeakHashMap<>();
+    private volatile ScheduledFuture<?> healthCheck;
+
+    private XuguClusterRouter(@NotNull XuguDataSource dataSource, @NotNull Node primary, @NotNull List<Node> nodes)
+    {
+        this.dataSource = dataSource;
+        this.primary = primary;
+        this.nodes = Collections.unmodifiableList(nodes);
+    }
+
+    /**
+     * 按连接配置创建路由，未配置其他节点时返回null
+     * @param primaryHost 主节点地址
+     * @param primaryPort 主节点端口
+     * @param nodeList 节点列表，格式为host[:port]，以逗号、分号或空白分隔，未写端口时使用主节点端口
+     */
+    @Nullable
+    public static XuguClusterRouter create(@NotNull XuguDataSource dataSource, @Nullable String primaryHost, @Nullable String primaryPort, @Nullable String nodeList)
+    {
+        if (CommonUtils.isEmpty(primaryHost) || CommonUtils.isEmptyTrimmed(nodeList)) {
+            return null;
+        }
+        Node primary = new Node(primaryHost, primaryPort);
+        List<Node> nodes = new ArrayList<>();
+        nodes.add(primary);
+        for (String address : nodeList.trim().split("[,;\\s]+")) {
+            if (address.isEmpty()) {
+                continue;
+            }
+            String host = address;
+            String port = primaryPort;
+            int divPos = address.lastIndexOf(':');
+            if (divPos > 0 && address.indexOf(']') < divPos) {
+                host = address.substring(0, divPos);
+                port = address.substring(divPos + 1);
+            }
+            if (host.startsWith("[") && host.endsWith("]")) {
+                host = host.substring(1, host.length() - 1);
+            }
+            if (findNode(nodes, host, port) == null) {
+                nodes.add(new Node(host, port));
+            }
+        }
+        if (nodes.size() < 2) {
+            return null;
+        }
+        return new XuguClusterRouter(dataSource, primary, nodes);
+    }
+
+    private static Node findNode(List<Node> nodes, String host, String port)
+    {
+        for (Node node : nodes) {
+            if (node.host.equalsIgnoreCase(host) && CommonUtils.equalObjects(node.port, port)) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    @NotNull
+    public Node getPrimary()
+    {
+        return primary;
+    }
+
+    @NotNull
+    public List<Node> getNodes()
+    {
+        return nodes;
+    }
+
+    /**
+     * 判断该用途的连接是否可以分配到其他节点：只执行查询的并行结构加载连接和分区并行读取连接总是可以；SQL编辑器连接仅在连接设为只读时可以；
+     * 元数据连接上会执行对象的保存、重命名和删除，DDL之后的刷新也需要读到最新结果，与主连接及其他连接一样固定使用主节点
+     * @param purpose 执行上下文的用途
+     */
+    public boolean isRoutable(@NotNull String purpose)
+    {
+        if (purpose.equals(XuguConstants.CONTEXT_PURPOSE_STRUCTURE_LOADER) || purpose.equals(XuguConstants.CONTEXT_PURPOSE_PARTITION_READER)) {
+            return true;
+        }
+        return purpose.startsWith(XuguConstants.CONTEXT_PURPOSE_SQL_EDITOR) && dataSource.getContainer().isConnectionReadOnly();
+    }
+
+    /**
+     * 为新连接选择节点：健康节点中延迟最低的一组内，优先已分配连接最少的节点，相同时随机选择
+     * @return 所选节点，没有可用的健康节点时返回主节点
+     */
+    @NotNull
+    public synchronized Node selectNode()
+    {
+        countAssigned();
+        double bestLatency = Double.MAX_VALUE;
+        for (Node node : nodes) {
+            if (node.healthy && node.latency >= 0 && node.latency < bestLatency) {
+                bestLatency = node.latency;
+            }
+        }
+        double maxLatency = bestLatency == Double.MAX_VALUE ?
+            Double.MAX_VALUE :
+            Math.max(bestLatency * LATENCY_TOLERANCE, bestLatency + LATENCY_TOLERANCE_MS);
+        List<Node> candidates = new ArrayList<>();
+        int minAssigned = Integer.MAX_VALUE;
+        for (Node node : nodes) {
+            //尚未探测过的节点不参与选择，除非所有节点都未探测
+            if (!node.healthy || (node.latency < 0 ? bestLatency != Double.MAX_VALUE : node.latency > maxLatency)) {
+                continue;
+            }
+            if (node.assigned < minAssigned) {
+                minAssigned = node.assigned;
+                candidates.clear();
+            }
+            if (node.assigned == minAssigned) {
+                candidates.add(node);
+            }
+        }
+        return candidates.isEmpty() ? primary : candidates.get(ThreadLocalRandom.current().nextInt(candidates.size()));
+    }
+
+    /**
+     * 记录连接已打开在该节点上
+     */
+    public synchronized void assign(@NotNull Node node, @NotNull Connection connection)
+    {
+        routedConnections.put(connection, node);
+    }
+
+    /**
+     * @return 连接是否打开在主节点以外的节点上
+     */
+    public synchronized boolean isRouted(@NotNull Connection connection)
+    {
+        return routedConnections.containsKey(connection);
+    }
+
+    private void countAssigned()
+    {
+        for (Node node : nodes) {
+            node.assigned = 0;
+        }
+        for (Iterator<Map.Entry<Connection, Node>> iter = routedConnections.entrySet().iterator(); iter.hasNext(); ) {
+            Map.Entry<Connection, Node> entry = iter.next();
+            boolean closed;
+            try {
+                closed = entry.getKey().isClosed();
+            } catch (SQLException e) {
+                closed = true;
+            }
+            if (closed) {
+                iter.remove();
+            } else {
+                entry.getValue().assigned++;
+            }
+        }
+    }
+
+    /**
+     * 记录节点连接失败，在下一次健康检查成功之前不再分配该节点
+     */
+    public synchronized void markDown(@NotNull Node node, @Nullable Throwable error)
+    {
+        if (node.healthy) {
+            log.debug("[Xugu] Cluster node " + node + " marked down", error);
+        }
+        node.healthy = false;
+        node.failures++;
+    }
+
+    /**
+     * 在后台启动定时健康检查，首次检查完成前所有节点都视为可用
+     */
+    public void start(long intervalMs)
+    {
+        healthCheck = XuguKeepAliveService.getInstance().scheduleTask(this::checkNodes, intervalMs);
+    }
+
+    /**
+     * 停止健康检查
+     */
+    public void stop()
+    {
+        ScheduledFuture<?> curCheck = healthCheck;
+        if (curCheck != null) {
+            curCheck.cancel(false);
+            healthCheck = null;
+        }
+        log.debug("[Xugu] Cluster nodes of '" + dataSource.getContainer().getName() + "': " + this);
+    }
+
+    /**
+     * 依次探测各节点：以建立TCP连接的耗时作为延迟，不需要登录，也不占用数据库会话
+     */
+    void checkNodes()
+    {
+        for (Node node : nodes) {
+            long startTime = System.nanoTime();
+            boolean healthy;
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress(node.host, CommonUtils.toInt(node.port, XuguConstants.DEFAULT_PORT)), XuguConstants.CLUSTER_CHECK_TIMEOUT);
+                healthy = true;
+            } catch (IOException e) {
+                healthy = false;
+                log.debug("[Xugu] Cluster node " + node + " is not reachable: " + e.getMessage());
+            }
+            double latency = (System.nanoTime() - startTime) / 1000000.0;
+            synchronized (this) {
+                if (healthy) {
+                    node.latency = node.latency < 0 ? latency : node.latency + (latency - node.latency) * LATENCY_SMOOTHING;
+                    if (!node.healthy) {
+                        log.debug("[Xugu] Cluster node " + node + " is back up");
+                    }
+                } else {
+                    node.failures++;
+                }
+                node.healthy = healthy;
+                node.lastCheckTime = System.currentTimeMillis();
+            }
+        }
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        countAssigned();
+        StringBuilder str = new StringBuilder();
+        for (Node node : nodes) {
+            if (str.length() > 0) {
+                str.append(", ");
+            }
+            str.append(node).append(node == primary ? " (primary)" : "")
+                .append(node.healthy ? " up" : " down")
+                .append(String.format(" rtt=%.2fms", node.latency))
+                .append(" assigned=").append(node.assigned)
+                .append(" failures=").append(node.failures);
+        }
+        return str.toString();
+    }
+}
@@ -17,6 +17,8 @@
 package org.jkiss.dbeaver.ext.xugu.model;
 
 import org.eclipse.core.runtime.IAdaptable;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
 import org.jkiss.code.NotNull;
 import org.jkiss.code.Nullable;
 import org.jkiss.dbeaver.DBException;
@@ -31,10 +33,11 @@ import org.jkiss.dbeaver.model.exec.jdbc.*;
 import org.jkiss.dbeaver.model.impl.jdbc.*;
 import org.jkiss.dbeaver.model.impl.jdbc.cache.JDBCObjectCache;
 import org.jkiss.dbeaver.model.impl.jdbc.cache.JDBCStructLookupCache;
+import org.jkiss.dbeaver.model.impl.jdbc.exec.JDBCConnectionImpl;
 import org.jkiss.dbeaver.model.meta.Association;
+import org.jkiss.dbeaver.model.runtime.AbstractJob;
 import org.jkiss.dbeaver.model.runtime.DBRProgressMonitor;
 import org.jkiss.dbeaver.model.sql.SQLConstants;
-import org.jkiss.dbeaver.model.sql.SQLQueryResult;
 import org.jkiss.dbeaver.model.sql.SQLState;
 import org.jkiss.dbeaver.model.sql.SQLUtils;
 import org.jkiss.dbeaver.model.struct.*;
@@ -47,9 +50,13 @@ import org.jkiss.dbeaver.model.exec.plan.DBCPlanStyle;
 import org.jkiss.dbeaver.model.exec.plan.DBCQueryPlanner;
 import org.jkiss.dbeaver.ext.xugu.model.plan.XuguPlanAnalyser;
 import org.jkiss.dbeaver.ext.xugu.XuguUtils;
-import java.io.PrintWriter;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -61,13 +68,19 @@ import java.util.regex.Pattern;
 public class XuguDataSource extends JDBCDataSource
     implements DBSObjectSelector, DBCQueryPlanner, IAdaptable {
     private static final Log log = Log.getLog(XuguDataSource.class);
+    //同步取字符集时最多等待后台读取的时间（毫秒）
+    private static final long CHARSETS_WAIT_TIMEOUT = 1000;
 
     public JDBCRemoteInstance remoteInstance;
     public String purpose;
-    private int def_time;
-    private Thread daemon;
-    private JDBCSession metaSession;
-    private JDBCSession utilSession;
+    private volatile XuguKeepAliveService.KeepAlive keepAlive;
+    private final XuguReconnectManager reconnectManager = new XuguReconnectManager(this);
+    private volatile boolean connectedOnce;
+    //集群节点路由，未配置节点列表时为null
+    private XuguClusterRouter clusterRouter;
+    private boolean clusterRouterInitialized;
+    //当前线程正在打开的连接所分配的节点，生成连接URL时使用
+    private final ThreadLocal<XuguClusterRouter.Node> routedNode = new ThreadLocal<>();
     
     final public SchemaCache schemaCache = new SchemaCache();
     final public DatabaseCache databaseCache = new DatabaseCache();
@@ -79,7 +92,7 @@ public class XuguDataSource extends JDBCDataSource
     
     Connection connection;
     
-    private xuguOutputReader outputReader;
+    private XuguServerOutputReader outputReader;
     private XuguSchema publicSchema;
     private String activeSchemaName;
     private boolean isAdmin;
@@ -91,14 +104,27 @@ public class XuguDataSource extends JDBCDataSource
     private String userRole;
     private String roleFlag;
     
-    private List<XuguCharset> charsets;
+    private CompletableFuture<List<XuguCharset>> charsetsFuture;
+    private final Map<String, Long> startupPhases = Collections.synchronizedMap(new LinkedHashMap<String, Long>());
 
     private final Map<String, Boolean> availableViews = new HashMap<>();
+    /**
+     * 每个执行上下文对应的目录上下文，避免每次构造元数据查询时重复查询库ID
+     */
+    private final Map<JDBCExecutionContext, XuguCatalogContext> catalogContexts = new WeakHashMap<>();
+    //元数据查询注册表，按连接复用已准备的元数据语句
+    private final XuguQueryRegistry queryRegistry = new XuguQueryRegistry(this);
+    private XuguAuxConnectionPool sysdbaPool;
+    //定时回收辅助连接池中超过空闲时间的连接
+    private ScheduledFuture<?> sysdbaPoolEviction;
+    private XuguStructureLoader.ContextPool structureLoaderContexts;
+    //本地元数据快照，首次连接时打开
+    private volatile XuguMetadataSnapshot metadataSnapshot;
 
     public XuguDataSource(DBRProgressMonitor monitor, DBPDataSourceContainer container)
         throws DBException {
         super(monitor, container, new XuguSQLDialect());
-        this.outputReader = new xuguOutputReader();
+        this.outputReader = new XuguServerOutputReader(this);
     }
 
     @Override
@@ -141,26 +167,47 @@ public class XuguDataSource extends JDBCDataSource
 //        return available;
 //    }
 
-    //获取一个临时的指向系统库的SYSDBA连接
-    public Connection getSYSDBAConn(DBRProgressMonitor monitor) {
-    	try {
-	    	DBPConnectionConfiguration connectionInfo = getContainer().getActualConnectionConfiguration();
-	    	String nowDB = connectionInfo.getDatabaseName();
-	    	connectionInfo.setDatabaseName("SYSTEM");
-			Driver driverInstance = getDriverInstance(monitor);
-			String url = getConnectionURL(connectionInfo)+"?user=SYSDBA&password=SYSDBA";
-	    	Connection conn = null;
-			if (driverInstance == null) {
-                conn = DriverManager.getConnection(url);
-            } else {
-				conn = driverInstance.connect(url, null);
-            }
-			connectionInfo.setDatabaseName(nowDB);
-			return conn;
-		} catch (Exception e1) {
-			e1.printStackTrace();
-			return null;
-		}
+    /**
+     * 获取指向系统库的SYSDBA辅助连接池，首次使用时创建
+     */
+    public synchronized XuguAuxConnectionPool getSYSDBAPool() {
+        if (sysdbaPool == null) {
+            sysdbaPool = new XuguAuxConnectionPool(
+                getContainer().getName() + " SYSDBA",
+                this::openSYSDBAConnection,
+                XuguConstants.SYSDBA_POOL_MAX_SIZE,
+                XuguConstants.SYSDBA_POOL_MAX_WAIT,
+                XuguConstants.SYSDBA_POOL_IDLE_TIMEOUT);
+            sysdbaPoolEviction = XuguKeepAliveService.getInstance().scheduleTask(sysdbaPool::evictIdle, XuguConstants.SYSDBA_POOL_IDLE_TIMEOUT / 2);
+        }
+        return sysdbaPool;
+    }
+
+    /**
+     * 并行结构加载使用的独立元数据连接，多次加载之间复用，数据源关闭时关闭
+     */
+    synchronized XuguStructureLoader.ContextPool getStructureLoaderContexts() {
+        if (structureLoaderContexts == null) {
+            structureLoaderContexts = new XuguStructureLoader.ContextPool(this, XuguConstants.STRUCTURE_LOADER_CONNECTIONS);
+        }
+        return structureLoaderContexts;
+    }
+
+    //打开一个指向系统库的SYSDBA连接（由辅助连接池调用）
+    private Connection openSYSDBAConnection(DBRProgressMonitor monitor) throws SQLException {
+        DBPConnectionConfiguration connectionInfo = new DBPConnectionConfiguration(getContainer().getActualConnectionConfiguration());
+        connectionInfo.setDatabaseName("SYSTEM");
+        String url = getConnectionURL(connectionInfo)+"?user=SYSDBA&password=SYSDBA";
+        Driver driverInstance;
+        try {
+            driverInstance = getDriverInstance(monitor);
+        } catch (DBException e) {
+            throw new SQLException("Can't load driver for SYSDBA connection", e);
+        }
+        if (driverInstance == null) {
+            return DriverManager.getConnection(url);
+        }
+        return driverInstance.connect(url, null);
     }
     
     public JDBCRemoteInstance getRemoteInstance() {
@@ -171,58 +218,94 @@ public class XuguDataSource extends JDBCDataSource
     	return this.purpose;
     }
     
-    //基本操作为打开连接，但是当第一次执行时，会加载一个守护进程以检查连接状态
+    /**
+     * 获取集群节点路由，连接配置中没有节点列表时返回null
+     */
+    @Nullable
+    public synchronized XuguClusterRouter getClusterRouter() {
+        if (!clusterRouterInitialized) {
+            clusterRouterInitialized = true;
+            DBPConnectionConfiguration connectionInfo = getContainer().getActualConnectionConfiguration();
+            String conTypeProperty = connectionInfo.getProviderProperty(XuguConstants.PROP_CONNECTION_TYPE);
+            if (conTypeProperty == null || XuguConstants.ConnectionType.valueOf(conTypeProperty) != XuguConstants.ConnectionType.CUSTOM) {
+                clusterRouter = XuguClusterRouter.create(
+                    this,
+                    connectionInfo.getHostName(),
+                    connectionInfo.getHostPort(),
+                    connectionInfo.getProviderProperty(XuguConstants.PROP_CLUSTER_NODES));
+                if (clusterRouter != null) {
+                    clusterRouter.start(XuguConstants.CLUSTER_CHECK_INTERVAL);
+                }
+            }
+        }
+        return clusterRouter;
+    }
+
+    //打开连接时若分配了其他集群节点，用该节点的地址和端口生成URL
     @Override
-    protected Connection openConnection(@NotNull DBRProgressMonitor monitor, JDBCRemoteInstance remoteInstance, @NotNull String purpose) {
-        try {
-            this.connection = super.openConnection(monitor, remoteInstance, purpose);
-            this.remoteInstance = remoteInstance;
-            this.purpose = purpose;
-            int max_idle_time = XuguUtils.getDBIdleTime(connection);
-            this.def_time = XuguConstants.DEFAULT_SLEEP_TIME;
-            if(def_time>max_idle_time) {
-            	if(max_idle_time>0) {
-            		def_time = max_idle_time*1000/2;
-            	}else {
-            		log.warn("Max_idle_time setting has error, use default sleep time");
-            	}
+    protected String getConnectionURL(DBPConnectionConfiguration connectionInfo) {
+        XuguClusterRouter.Node node = routedNode.get();
+        if (node == null) {
+            return super.getConnectionURL(connectionInfo);
+        }
+        DBPConnectionConfiguration nodeInfo = new DBPConnectionConfiguration(connectionInfo);
+        nodeInfo.setHostName(node.getHost());
+        nodeInfo.setHostPort(node.getPort());
+        DBPDriver driver = getContainer().getDriver();
+        return driver.getDataSourceProvider().getConnectionURL(driver, nodeInfo);
+    }
+
+    //基本操作为打开连接，第一次打开时按服务器的MAX_IDLE_TIME启动连接保活
+    //连接过之后再次打开（断线重连）时，连接错误按指数退避重试
+    //配置了集群节点时，并行读取连接和只读的SQL编辑器连接分配到延迟最低的健康节点，节点不可用时改用主节点
+    @Override
+    protected Connection openConnection(@NotNull DBRProgressMonitor monitor, JDBCRemoteInstance remoteInstance, @NotNull String purpose) throws DBCException {
+        XuguClusterRouter router = getClusterRouter();
+        XuguClusterRouter.Node node = null;
+        if (router != null && router.isRoutable(purpose)) {
+            node = router.selectNode();
+            if (node == router.getPrimary()) {
+                node = null;
             }
-            if(daemon==null) {
-            	daemon = new Thread(new Runnable() {
-    				@Override
-    				public void run() {
-    					while(true) {
-    						try {
-    							if(metaSession!=null && metaSession.getExecutionContext()!=null) {
-    								Statement stmt = metaSession.getExecutionContext().getConnection(monitor).createStatement();
-        							stmt.executeQuery("select 1 from dual");
-        							stmt.close();
-    							}
-    							if(utilSession!=null && utilSession.getExecutionContext()!=null) {
-    								Statement stmt = utilSession.getExecutionContext().getConnection(monitor).createStatement();
-        							stmt.executeQuery("select 1 from dual");
-        							stmt.close();
-    							}
-    							Thread.sleep(def_time);
-    						} catch (SQLException | InterruptedException e) {
-    							log.debug("Connection is closed!", e);
-    						}finally {
-    							if(metaSession!=null) {
-    								metaSession.close();
-    							}
-    							if(utilSession!=null) {
-    								utilSession.close();
-    							}
-    						}
-    					}
-    				}
-                });
-                daemon.start();
+        }
+        for (int attempt = 0; ; attempt++) {
+            try {
+                long startTime = System.currentTimeMillis();
+                routedNode.set(node);
+                try {
+                    this.connection = super.openConnection(monitor, remoteInstance, purpose);
+                } finally {
+                    routedNode.remove();
+                }
+                recordStartupPhase("connect (" + purpose + ")", startTime);
+                if (node != null) {
+                    router.assign(node, connection);
+                    log.debug("[Xugu] '" + purpose + "' connected to cluster node " + node);
+                }
+                break;
+            } catch (DBCException e) {
+                if (node != null && reconnectManager.isConnectionError(e)) {
+                    router.markDown(node, e);
+                    node = null;
+                    attempt--;
+                    continue;
+                }
+                if (!connectedOnce || attempt + 1 >= XuguConstants.RECONNECT_MAX_ATTEMPTS ||
+                    !reconnectManager.isConnectionError(e) || !XuguReconnectManager.sleepBackoff(monitor, attempt)) {
+                    throw e;
+                }
+                log.debug("Reconnect attempt " + (attempt + 1) + " failed for '" + purpose + "'", e);
+            }
+        }
+        this.remoteInstance = remoteInstance;
+        this.purpose = purpose;
+        synchronized (this) {
+            connectedOnce = true;
+            if (keepAlive == null) {
+                keepAlive = XuguKeepAliveService.getInstance().schedule(this, getKeepAliveInterval(connection));
             }
-            return connection;
-        } catch ( DBCException e) {
-            return null;
         }
+        return connection;
     }
 
 //    private boolean changeExpiredPassword(DBRProgressMonitor monitor, String purpose) {
@@ -265,47 +348,121 @@ public class XuguDataSource extends JDBCDataSource
     protected void initializeContextState(@NotNull DBRProgressMonitor monitor, @NotNull JDBCExecutionContext context, boolean setActiveObject) throws DBCException {
     	
     	if (outputReader == null) {
-            outputReader = new xuguOutputReader();
+            outputReader = new XuguServerOutputReader(this);
         }
         // Enable DBMS output
-        outputReader.enableServerOutput(
-            monitor,
-            context,
-            outputReader.isServerOutputEnabled());
+        // 只在主连接和主节点上的SQL编辑器连接上启用，元数据、并行读取等内部连接不读取输出
+        if (outputReader.isServerOutputEnabled() && isOutputContext(monitor, context)) {
+            outputReader.enableServerOutput(monitor, context);
+        }
         if (setActiveObject) {
             setCurrentSchema(monitor, context, getDefaultObject());
         }
 
-        {
-            try (JDBCSession session = context.openSession(monitor, DBCExecutionPurpose.META, "Set connection parameters")) {
-             // Read charsets and collations
-                {
-                    charsets = new ArrayList<>();
-                    Connection tempSYSConn = getSYSDBAConn(monitor);
-                    try (Statement dbStat = tempSYSConn.createStatement()) {
-                        try (ResultSet dbResult = dbStat.executeQuery("SELECT DISTINCT CHARSET_NAME FROM SYS_CHARSETS")) {
-                            while (dbResult.next()) {
-                                XuguCharset charset = new XuguCharset(this, tempSYSConn, JDBCUtils.safeGetString(dbResult, "CHARSET_NAME"));
-                                charsets.add(charset);
-                            }
+        // 重连时原连接上已准备的元数据语句作废
+        queryRegistry.releaseContext(context);
+        // 重连时恢复该上下文原先的会话状态
+        reconnectManager.replay(monitor, context);
+        // 字符集在后台读取，所有上下文共用一次结果
+        loadCharsets();
+    }
+
+    private boolean isOutputContext(DBRProgressMonitor monitor, JDBCExecutionContext context) {
+        String purpose = context.getContextName();
+        if (!purpose.equals(XuguConstants.CONTEXT_PURPOSE_MAIN) && !purpose.startsWith(XuguConstants.CONTEXT_PURPOSE_SQL_EDITOR)) {
+            return false;
+        }
+        XuguClusterRouter router = clusterRouter;
+        return router == null || !router.isRouted(context.getConnection(monitor));
+    }
+
+    /**
+     * 在后台读取字符集及其排序规则，首次调用时启动，之后返回同一个future
+     * @return 读取结果，读取失败时为空列表
+     */
+    @NotNull
+    public synchronized CompletableFuture<List<XuguCharset>> loadCharsets() {
+        if (charsetsFuture == null) {
+            final CompletableFuture<List<XuguCharset>> future = new CompletableFuture<>();
+            charsetsFuture = future;
+            AbstractJob loadJob = new AbstractJob("Load Xugu charsets") {
+                @Override
+                protected IStatus run(DBRProgressMonitor monitor) {
+                    long startTime = System.currentTimeMillis();
+                    try {
+                        future.complete(readCharsets(monitor));
+                    } finally {
+                        if (!future.isDone()) {
+                            future.complete(new ArrayList<XuguCharset>());
                         }
-                    } catch (SQLException ex) {
-                        // Engines are not supported. Shame on it. Leave this list empty
-                    }finally {
-                    	try {
-							tempSYSConn.close();
-						} catch (SQLException e) {
-							// TODO Auto-generated catch block
-							e.printStackTrace();
-						}
+                        recordStartupPhase("charsets", startTime);
                     }
-                    Collections.sort(charsets, DBUtils.<XuguCharset>nameComparator());
-                    
+                    return Status.OK_STATUS;
+                }
+            };
+            loadJob.setSystem(true);
+            loadJob.schedule();
+        }
+        return charsetsFuture;
+    }
+
+    // Read charsets and collations
+    private List<XuguCharset> readCharsets(DBRProgressMonitor monitor) {
+        List<XuguCharset> result = new ArrayList<>();
+        try (XuguAuxConnectionPool.Lease lease = getSYSDBAPool().borrow(monitor);
+             Statement dbStat = lease.getConnection().createStatement()) {
+            try (ResultSet dbResult = dbStat.executeQuery("SELECT DISTINCT CHARSET_NAME FROM SYS_CHARSETS")) {
+                while (dbResult.next()) {
+                    result.add(new XuguCharset(this, lease.getConnection(), JDBCUtils.safeGetString(dbResult, "CHARSET_NAME")));
+                }
+            }
+        } catch (SQLException ex) {
+            // Engines are not supported. Shame on it. Leave this list empty
+            log.debug("Can't read charsets", ex);
+        }
+        Collections.sort(result, DBUtils.<XuguCharset>nameComparator());
+        return result;
+    }
+
+    /**
+     * 预定义数据类型只在本地构造，首次使用时才创建
+     */
+    private void cachePredefinedTypes() {
+        if (dataTypeCache.isFullyCached()) {
+            return;
+        }
+        synchronized (dataTypeCache) {
+            if (!dataTypeCache.isFullyCached()) {
+                long startTime = System.currentTimeMillis();
+                List<XuguDataType> dtList = new ArrayList<>();
+                for (Map.Entry<String, XuguDataType.TypeDesc> predefinedType : XuguDataType.PREDEFINED_TYPES.entrySet()) {
+                    XuguDataType dataType = new XuguDataType(this, predefinedType.getKey(), true);
+                    dtList.add(dataType);
                 }
+                this.dataTypeCache.setCache(dtList);
+                recordStartupPhase("data types", startTime);
             }
         }
     }
 
+    /**
+     * 记录一个初始化阶段的耗时
+     */
+    private void recordStartupPhase(String phase, long startTime) {
+        long duration = System.currentTimeMillis() - startTime;
+        startupPhases.put(phase, duration);
+        log.debug("[Xugu] Startup phase '" + phase + "': " + duration + "ms");
+    }
+
+    /**
+     * @return 各初始化阶段的耗时（毫秒），按完成顺序排列
+     */
+    public Map<String, Long> getStartupPhases() {
+        synchronized (startupPhases) {
+            return new LinkedHashMap<>(startupPhases);
+        }
+    }
+
     @Override
     protected String getConnectionUserName(@NotNull DBPConnectionConfiguration connectionInfo) {
         final String role = connectionInfo.getProviderProperty(XuguConstants.PROP_INTERNAL_LOGON);
@@ -323,6 +480,9 @@ public class XuguDataSource extends JDBCDataSource
         if (rootCause instanceof SQLException && ((SQLException) rootCause).getErrorCode() == XuguConstants.EC_FEATURE_NOT_SUPPORTED) {
             return ErrorType.FEATURE_UNSUPPORTED;
         }
+        if (reconnectManager.isConnectionError(error)) {
+            return ErrorType.CONNECTION_LOST;
+        }
         return super.discoverErrorType(error);
     }
 
@@ -339,9 +499,162 @@ public class XuguDataSource extends JDBCDataSource
     	return this.roleFlag;
     }
 
+    @NotNull
+    public XuguQueryRegistry getQueryRegistry() {
+        return queryRegistry;
+    }
+
+    @Override
+    public void shutdown(@NotNull DBRProgressMonitor monitor) {
+        queryRegistry.close();
+        synchronized (this) {
+            if (keepAlive != null) {
+                keepAlive.cancel();
+                keepAlive = null;
+            }
+            charsetsFuture = null;
+            if (clusterRouter != null) {
+                clusterRouter.stop();
+                clusterRouter = null;
+            }
+            clusterRouterInitialized = false;
+            if (sysdbaPoolEviction != null) {
+                sysdbaPoolEviction.cancel(false);
+                sysdbaPoolEviction = null;
+            }
+            if (sysdbaPool != null) {
+                sysdbaPool.close();
+                sysdbaPool = null;
+            }
+            if (structureLoaderContexts != null) {
+                structureLoaderContexts.close();
+                structureLoaderContexts = null;
+            }
+        }
+        super.shutdown(monitor);
+    }
+
+    /**
+     * 保活间隔：默认1分钟，服务器空闲超时（MAX_IDLE_TIME，秒）更短时取其一半
+     */
+    private static long getKeepAliveInterval(Connection connection) {
+        long interval = XuguConstants.DEFAULT_SLEEP_TIME;
+        int maxIdleTime = XuguUtils.getDBIdleTime(connection);
+        if (maxIdleTime <= 0) {
+            log.warn("Max_idle_time setting has error, use default sleep time");
+        } else if (maxIdleTime * 1000L / 2 < interval) {
+            interval = maxIdleTime * 1000L / 2;
+        }
+        return interval;
+    }
+
+    @NotNull
+    @Override
+    protected JDBCConnectionImpl createConnection(
+        @NotNull DBRProgressMonitor monitor,
+        @NotNull JDBCExecutionContext context,
+        @NotNull DBCExecutionPurpose purpose,
+        @NotNull String taskTitle)
+    {
+        //会话打开期间连接可能正在执行语句，保活任务跳过该连接，会话关闭后按最近使用时间判断
+        final XuguKeepAliveService.KeepAlive curKeepAlive = keepAlive;
+        if (curKeepAlive != null) {
+            curKeepAlive.sessionOpened(context);
+        }
+        return new JDBCConnectionImpl(context, monitor, purpose, taskTitle) {
+            private boolean closed;
+
+            @Override
+            public void setCatalog(String catalog) throws SQLException
+            {
+                //切换数据库后该连接的库ID改变
+                try {
+                    super.setCatalog(catalog);
+                } finally {
+                    invalidateCatalogContext(context);
+                }
+            }
+
+            @Override
+            public void close()
+            {
+                try {
+                    super.close();
+                } finally {
+                    if (!closed && curKeepAlive != null) {
+                        closed = true;
+                        curKeepAlive.sessionClosed(context);
+                    }
+                }
+            }
+        };
+    }
+
     public Connection getConnection() {
     	return this.connection;
     }
+
+    /**
+     * 获取会话所属执行上下文的目录上下文，首次访问时解析并缓存
+     * @param session 会话
+     * @return 目录上下文
+     * @throws DBException
+     */
+    @NotNull
+    public XuguCatalogContext getCatalogContext(@NotNull JDBCSession session) throws DBException {
+        JDBCExecutionContext context = session.getExecutionContext();
+        synchronized (catalogContexts) {
+            XuguCatalogContext catalogContext = catalogContexts.get(context);
+            if (catalogContext != null) {
+                return catalogContext;
+            }
+        }
+        // 解析过程中不持有锁，并发解析的结果相同
+        XuguCatalogContext catalogContext = readCatalogContext(session);
+        synchronized (catalogContexts) {
+            catalogContexts.put(context, catalogContext);
+        }
+        return catalogContext;
+    }
+
+    private XuguCatalogContext readCatalogContext(JDBCSession session) throws DBException {
+        try (JDBCPreparedStatement dbStat = session.prepareStatement("SELECT CURRENT_DB_ID, CURRENT_DB FROM DUAL")) {
+            try (JDBCResultSet dbResult = dbStat.executeQuery()) {
+                if (dbResult.next()) {
+                    return new XuguCatalogContext(dbResult.getInt(1), dbResult.getString(2));
+                }
+            }
+        } catch (SQLException e) {
+            log.debug("Can't read catalog context from session, use database cache instead", e);
+        }
+        try {
+            String dbName = session.getOriginal().getCatalog();
+            XuguDatabase database = databaseCache.getObject(session.getProgressMonitor(), this, dbName);
+            if (database == null) {
+                throw new DBException("Database '" + dbName + "' not found");
+            }
+            return new XuguCatalogContext(database.getId(), dbName);
+        } catch (SQLException e) {
+            throw new DBException(e, this);
+        }
+    }
+
+    /**
+     * 使指定执行上下文的目录上下文失效（context为空时全部失效）
+     */
+    public void invalidateCatalogContext(@Nullable JDBCExecutionContext context) {
+        synchronized (catalogContexts) {
+            if (context == null) {
+                catalogContexts.clear();
+            } else {
+                catalogContexts.remove(context);
+            }
+        }
+    }
+
+    public XuguReconnectManager getReconnectManager() {
+        return reconnectManager;
+    }
     
     @Association
     public Collection<XuguDatabase> getDatabases(DBRProgressMonitor monitor) throws DBException {
@@ -417,21 +730,50 @@ public class XuguDataSource extends JDBCDataSource
         	this.roleFlag = "ALL";
         }
         this.publicSchema = new XuguSchema(this, 1, XuguConstants.USER_PUBLIC);
-        {
-        	JDBCSession session = DBUtils.openMetaSession(monitor, this, "Check meta connection");
-            this.metaSession = session;
-            JDBCSession session2 = DBUtils.openUtilSession(monitor, this, "Check util connection");
-            this.utilSession = session2;
+        // 数据类型在首次使用时缓存，字符集在第一个上下文初始化时开始后台读取
+        // 刷新数据源时不再使用快照，直接读取最新的元数据
+        if (metadataSnapshot == null && getContainer().getPreferenceStore().getBoolean(XuguConstants.PREF_METADATA_SNAPSHOT)) {
+            long startTime = System.currentTimeMillis();
+            openMetadataSnapshot(monitor);
+            recordStartupPhase("metadata snapshot", startTime);
         }
-        // 真正进行数据类型缓存
-        {
-            List<XuguDataType> dtList = new ArrayList<>();
-            for (Map.Entry<String, XuguDataType.TypeDesc> predefinedType : XuguDataType.PREDEFINED_TYPES.entrySet()) {
-                XuguDataType dataType = new XuguDataType(this, predefinedType.getKey(), true);
-                dtList.add(dataType);
+    }
+
+    /**
+     * 用本地元数据快照填充表缓存，然后在后台按对象修改时间重新校验快照
+     * @param monitor 监控
+     */
+    private void openMetadataSnapshot(@NotNull DBRProgressMonitor monitor) {
+        final XuguMetadataSnapshot snapshot;
+        try {
+            XuguCatalogContext catalog;
+            try (JDBCSession session = DBUtils.openMetaSession(monitor, this, "Read catalog context")) {
+                catalog = getCatalogContext(session);
+            }
+            snapshot = XuguMetadataSnapshot.load(XuguMetadataSnapshot.getSnapshotFile(this, catalog), catalog.getDbId());
+            this.metadataSnapshot = snapshot;
+            if (!snapshot.isEmpty()) {
+                long startTime = System.currentTimeMillis();
+                int hydrated = snapshot.hydrate(monitor, getSchemas(monitor));
+                log.debug("[Xugu] " + hydrated + " schemas hydrated from metadata snapshot in " + (System.currentTimeMillis() - startTime) + "ms");
             }
-            this.dataTypeCache.setCache(dtList);
+        } catch (DBException e) {
+            log.debug("Can't open metadata snapshot", e);
+            return;
         }
+        AbstractJob revalidateJob = new AbstractJob("Revalidate Xugu metadata snapshot") {
+            @Override
+            protected IStatus run(DBRProgressMonitor monitor) {
+                try (JDBCSession session = DBUtils.openMetaSession(monitor, XuguDataSource.this, "Revalidate metadata snapshot")) {
+                    snapshot.revalidate(session, getSchemas(monitor));
+                } catch (Exception e) {
+                    log.debug("Metadata snapshot revalidation failed", e);
+                }
+                return Status.OK_STATUS;
+            }
+        };
+        revalidateJob.setSystem(true);
+        revalidateJob.schedule();
     }
 
 	@Override
@@ -439,6 +781,7 @@ public class XuguDataSource extends JDBCDataSource
         throws DBException {
         super.refreshObject(monitor);
 
+        invalidateCatalogContext(null);
         this.databaseCache.clearCache();
         this.schemaCache.clearCache();
         this.tablespaceCache.clearCache();
@@ -446,6 +789,9 @@ public class XuguDataSource extends JDBCDataSource
         if("SYS".equals(this.roleFlag)) {
         	this.roleCache.clearCache();
         }
+        synchronized (this) {
+            charsetsFuture = null;
+        }
 
         this.initialize(monitor);
 
@@ -470,10 +816,220 @@ public class XuguDataSource extends JDBCDataSource
         return XuguSchema.class;
     }
 
+    /**
+     * 数据库级结构预取
+     * 用少量按库执行的集合查询一次取回全部模式的表、列、索引和约束，按SCHEMA_ID/TABLE_ID分发到各模式的缓存中，
+     * 避免逐模式、逐表发起元数据查询
+     */
     @Override
     public void cacheStructure(@NotNull DBRProgressMonitor monitor, int scope)
         throws DBException {
+        Collection<XuguSchema> schemas = getSchemas(monitor);
+        if (CommonUtils.isEmpty(schemas) || monitor.isCanceled()) {
+            return;
+        }
+        Map<Long, XuguSchema> schemaMap = new HashMap<>();
+        for (XuguSchema schema : schemas) {
+            schemaMap.put(schema.getId(), schema);
+        }
+        long startTime = System.currentTimeMillis();
+        try (JDBCSession session = DBUtils.openMetaSession(monitor, this, "Prefetch database structure")) {
+            int dbId = getCatalogContext(session).getDbId();
+            monitor.subTask("Prefetch tables");
+            Map<Integer, XuguTableBase> tableMap = prefetchTables(session, dbId, schemaMap);
+            //索引和约束解析需要表的列信息
+            if ((scope & (STRUCT_ATTRIBUTES | STRUCT_ASSOCIATIONS)) != 0 && !monitor.isCanceled()) {
+                monitor.subTask("Prefetch columns");
+                prefetchColumns(session, dbId, tableMap, schemaMap.values());
+            }
+            if ((scope & STRUCT_ASSOCIATIONS) != 0 && !monitor.isCanceled()) {
+                monitor.subTask("Prefetch indexes");
+                prefetchIndexes(session, dbId, tableMap, schemaMap.values());
+                if (!monitor.isCanceled()) {
+                    monitor.subTask("Prefetch constraints");
+                    prefetchConstraints(session, dbId, tableMap, schemaMap.values());
+                }
+            }
+        } catch (SQLException e) {
+            throw new DBException(e, this);
+        }
+        log.debug("[Xugu] Prefetched structure of " + schemaMap.size() + " schemas in " + (System.currentTimeMillis() - startTime) + "ms");
+    }
+
+    /**
+     * 读取库中全部表并填充尚未缓存的模式，返回TABLE_ID到表的映射
+     */
+    private Map<Integer, XuguTableBase> prefetchTables(JDBCSession session, int dbId, Map<Long, XuguSchema> schemaMap)
+        throws SQLException, DBException {
+        Map<XuguSchema, List<XuguTableBase>> schemaTables = new HashMap<>();
+        try (JDBCPreparedStatement dbStat = session.prepareStatement(
+            "SELECT T.*, O.LAST_MODI_TIME FROM ALL_TABLES T LEFT JOIN ALL_OBJECTS O ON O.OBJ_ID=T.TABLE_ID AND O.DB_ID=T.DB_ID " +
+            "WHERE T.DB_ID=? ORDER BY T.SCHEMA_ID")) {
+            dbStat.setInt(1, dbId);
+            dbStat.setFetchSize(DBConstants.METADATA_FETCH_SIZE);
+            try (JDBCResultSet dbResult = dbStat.executeQuery()) {
+                while (dbResult.next()) {
+                    if (session.getProgressMonitor().isCanceled()) {
+                        return new HashMap<>();
+                    }
+                    XuguSchema schema = schemaMap.get(JDBCUtils.safeGetLong(dbResult, "SCHEMA_ID"));
+                    if (schema == null || schema.tableCache.isFullyCached()) {
+                        continue;
+                    }
+                    XuguTableBase table = schema.tableCache.readTable(session, schema, dbResult);
+                    if (table != null) {
+                        schemaTables.computeIfAbsent(schema, s -> new ArrayList<>()).add(table);
+                    }
+                }
+            }
+        }
+        Map<Integer, XuguTableBase> tableMap = new HashMap<>();
+        for (XuguSchema schema : schemaMap.values()) {
+            if (!schema.tableCache.isFullyCached()) {
+                List<XuguTableBase> tables = schemaTables.get(schema);
+                schema.tableCache.cacheTables(tables == null ? new ArrayList<>() : tables);
+            }
+            for (XuguTableBase table : schema.tableCache.getCachedObjects()) {
+                tableMap.put(table.getId(), table);
+            }
+        }
+        return tableMap;
+    }
+
+    /**
+     * 一次读取库中全部表的列，按TABLE_ID顺序分组后交给各模式的表缓存
+     */
+    private void prefetchColumns(JDBCSession session, int dbId, Map<Integer, XuguTableBase> tableMap, Collection<XuguSchema> schemas)
+        throws SQLException, DBException {
+        Map<XuguTableBase, List<XuguTableColumn>> columns = new HashMap<>();
+        try (JDBCPreparedStatement dbStat = session.prepareStatement(
+            "SELECT COL.* FROM ALL_COLUMNS COL INNER JOIN ALL_TABLES TAB ON TAB.TABLE_ID=COL.TABLE_ID AND TAB.DB_ID=COL.DB_ID " +
+            "WHERE COL.DB_ID=? ORDER BY COL.TABLE_ID, COL.COL_NO")) {
+            dbStat.setInt(1, dbId);
+            dbStat.setFetchSize(DBConstants.METADATA_FETCH_SIZE);
+            try (JDBCResultSet dbResult = dbStat.executeQuery()) {
+                int curTableId = Integer.MIN_VALUE;
+                XuguTableBase curTable = null;
+                List<XuguTableColumn> curColumns = null;
+                while (dbResult.next()) {
+                    if (session.getProgressMonitor().isCanceled()) {
+                        return;
+                    }
+                    int tableId = JDBCUtils.safeGetInt(dbResult, "TABLE_ID");
+                    if (tableId != curTableId) {
+                        curTableId = tableId;
+                        curTable = tableMap.get(tableId);
+                        if (curTable == null || curTable.getSchema().tableCache.isChildrenCached(curTable)) {
+                            curTable = null;
+                            curColumns = null;
+                        } else {
+                            curColumns = new ArrayList<>();
+                            columns.put(curTable, curColumns);
+                        }
+                    }
+                    if (curTable != null) {
+                        curColumns.add(new XuguTableColumn(session.getProgressMonitor(), curTable, dbResult));
+                    }
+                }
+            }
+        }
+        for (XuguSchema schema : schemas) {
+            schema.tableCache.cacheColumns(columns);
+        }
+    }
 
+    /**
+     * 一次读取库中全部索引，按表所属模式分发到索引缓存
+     */
+    private void prefetchIndexes(JDBCSession session, int dbId, Map<Integer, XuguTableBase> tableMap, Collection<XuguSchema> schemas)
+        throws SQLException, DBException {
+        Map<XuguSchema, List<XuguTableIndex>> schemaIndexes = new HashMap<>();
+        try (JDBCPreparedStatement dbStat = queryRegistry.prepare(session, XuguQueryRegistry.Query.DATABASE_INDEXES)) {
+            dbStat.setInt(1, dbId);
+            dbStat.setFetchSize(DBConstants.METADATA_FETCH_SIZE);
+            try (JDBCResultSet dbResult = dbStat.executeQuery()) {
+                while (dbResult.next()) {
+                    if (session.getProgressMonitor().isCanceled()) {
+                        break;
+                    }
+                    XuguTableBase table = tableMap.get(JDBCUtils.safeGetInt(dbResult, "TABLE_ID"));
+                    if (!(table instanceof XuguTablePhysical) || table.getSchema().indexCache.isFullyCached()) {
+                        continue;
+                    }
+                    XuguSchema schema = table.getSchema();
+                    XuguTablePhysical physical = (XuguTablePhysical) table;
+                    XuguTableIndex index = new XuguTableIndex(schema, physical, JDBCUtils.safeGetString(dbResult, "INDEX_NAME"), dbResult);
+                    XuguTableIndexColumn[] indexColumns = schema.indexCache.readColumns(session, physical, index, dbResult);
+                    index.setColumns(indexColumns == null ? new ArrayList<>() : new ArrayList<>(Arrays.asList(indexColumns)));
+                    schemaIndexes.computeIfAbsent(schema, s -> new ArrayList<>()).add(index);
+                }
+            }
+        } finally {
+            //无论是否完成都丢弃读取期间构建的列映射
+            for (XuguSchema schema : schemas) {
+                schema.indexCache.endRead();
+            }
+        }
+        //取消时不填充任何模式的索引缓存，未读完的结果丢弃
+        if (session.getProgressMonitor().isCanceled()) {
+            return;
+        }
+        Map<XuguSchema, List<XuguTablePhysical>> schemaTables = new HashMap<>();
+        for (XuguTableBase table : tableMap.values()) {
+            if (table instanceof XuguTablePhysical) {
+                schemaTables.computeIfAbsent(table.getSchema(), s -> new ArrayList<>()).add((XuguTablePhysical) table);
+            }
+        }
+        for (XuguSchema schema : schemas) {
+            if (!schema.indexCache.isFullyCached()) {
+                List<XuguTableIndex> indexes = schemaIndexes.get(schema);
+                List<XuguTablePhysical> tables = schemaTables.get(schema);
+                schema.indexCache.cacheIndexes(
+                    indexes == null ? new ArrayList<>() : indexes,
+                    tables == null ? Collections.<XuguTablePhysical>emptyList() : tables);
+            }
+        }
+    }
+
+    /**
+     * 一次读取库中全部约束，按表所属模式分发到约束缓存
+     */
+    private void prefetchConstraints(JDBCSession session, int dbId, Map<Integer, XuguTableBase> tableMap, Collection<XuguSchema> schemas)
+        throws SQLException, DBException {
+        Map<XuguSchema, List<XuguTableConstraint>> schemaConstraints = new HashMap<>();
+        try (JDBCPreparedStatement dbStat = queryRegistry.prepare(session, XuguQueryRegistry.Query.DATABASE_CONSTRAINTS)) {
+            dbStat.setInt(1, dbId);
+            dbStat.setFetchSize(DBConstants.METADATA_FETCH_SIZE);
+            try (JDBCResultSet dbResult = dbStat.executeQuery()) {
+                while (dbResult.next()) {
+                    if (session.getProgressMonitor().isCanceled()) {
+                        return;
+                    }
+                    XuguTableBase table = tableMap.get(JDBCUtils.safeGetInt(dbResult, "TABLE_ID"));
+                    if (table == null || table.getSchema().constraintCache.isFullyCached()) {
+                        continue;
+                    }
+                    XuguSchema schema = table.getSchema();
+                    XuguTableConstraint constraint = new XuguTableConstraint(table, dbResult);
+                    XuguTableConstraintColumn[] constraintColumns = schema.constraintCache.readColumns(session, table, constraint, dbResult);
+                    constraint.setColumns(constraintColumns == null ? new ArrayList<>() : new ArrayList<>(Arrays.asList(constraintColumns)));
+                    schemaConstraints.computeIfAbsent(schema, s -> new ArrayList<>()).add(constraint);
+                }
+            }
+        }
+        Map<XuguSchema, List<XuguTableBase>> schemaTables = new HashMap<>();
+        for (XuguTableBase table : tableMap.values()) {
+            schemaTables.computeIfAbsent(table.getSchema(), s -> new ArrayList<>()).add(table);
+        }
+        for (XuguSchema schema : schemas) {
+            if (!schema.constraintCache.isFullyCached()) {
+                List<XuguTableConstraint> constraints = schemaConstraints.get(schema);
+                List<XuguTableBase> tables = schemaTables.get(schema);
+                schema.constraintCache.cacheConstraints(
+                    constraints == null ? new ArrayList<>() : constraints,
+                    tables == null ? Collections.<XuguTableBase>emptyList() : tables);
+            }
+        }
     }
 
     @Override
@@ -510,6 +1066,8 @@ public class XuguDataSource extends JDBCDataSource
 
     @Override
     public boolean refreshDefaultObject(@NotNull DBCSession session) throws DBException {
+        //执行的语句可能用USE切换了数据库，该连接的目录上下文在下次使用时重新解析
+        invalidateCatalogContext(((JDBCSession) session).getExecutionContext());
         try {
             final String currentSchema = XuguUtils.getCurrentSchema((JDBCSession) session, this.userRole);
             if (currentSchema != null && !CommonUtils.equalObjects(currentSchema, getActiveSchemaName())) {
@@ -532,6 +1090,7 @@ public class XuguDataSource extends JDBCDataSource
         }
         try (JDBCSession session = executionContext.openSession(monitor, DBCExecutionPurpose.UTIL, "Set active schema")) {
             XuguUtils.setCurrentSchema(session, object.getName());
+            reconnectManager.recordSchema(executionContext, object.getName());
         } catch (SQLException e) {
             throw new DBCException(e, this);
         }
@@ -589,11 +1148,13 @@ public class XuguDataSource extends JDBCDataSource
 
     @Override
     public Collection<? extends DBSDataType> getLocalDataTypes() {
+        cachePredefinedTypes();
         return dataTypeCache.getCachedObjects();
     }
 
     @Override
     public DBSDataType getLocalDataType(String typeName) {
+        cachePredefinedTypes();
         return dataTypeCache.getCachedObject(typeName);
     }
 
@@ -613,7 +1174,7 @@ public class XuguDataSource extends JDBCDataSource
     @Override
     public DBCQueryTransformer createQueryTransformer(@NotNull DBCQueryTransformType type) {
         if (type == DBCQueryTransformType.RESULT_SET_LIMIT) {
-            //return new QueryTransformerRowNum();
+            return new XuguQueryTransformerLimit();
         }
         return super.createQueryTransformer(type);
     }
@@ -713,34 +1274,6 @@ public class XuguDataSource extends JDBCDataSource
         return null;
     }
 
-    private class xuguOutputReader implements DBCServerOutputReader {
-        @Override
-        public boolean isServerOutputEnabled() {
-            return getContainer().getPreferenceStore().getBoolean(XuguConstants.PREF_DBMS_OUTPUT);
-        }
-
-        @Override
-        public boolean isAsyncOutputReadSupported() {
-            return false;
-        }
-
-        public void enableServerOutput(DBRProgressMonitor monitor, DBCExecutionContext context, boolean enable) throws DBCException {
-//            String sql = enable ?
-//                "BEGIN DBMS_OUTPUT.ENABLE(" + XuguConstants.MAXIMUM_DBMS_OUTPUT_SIZE + "); END;" :
-//                "BEGIN DBMS_OUTPUT.DISABLE; END;";
-//            try (DBCSession session = context.openSession(monitor, DBCExecutionPurpose.UTIL, (enable ? "Enable" : "Disable ") + "DBMS output")) {
-//                JDBCUtils.executeSQL((JDBCSession) session, sql);
-//            } catch (SQLException e) {
-//                throw new DBCException(e, XuguDataSource.this);
-//            }
-        }
-
-        @Override
-        public void readServerOutput(@NotNull DBRProgressMonitor monitor, @NotNull DBCExecutionContext context, @Nullable SQLQueryResult queryResult, @Nullable DBCStatement statement, @NotNull PrintWriter output) throws DBCException {
-        	//do nothing
-        }
-    }
-
     @Nullable
 //  public String getPlanTableName(JDBCSession session)
 //      throws DBException
@@ -810,8 +1343,9 @@ public class XuguDataSource extends JDBCDataSource
         @Override
 		public JDBCStatement prepareLookupStatement(JDBCSession session, XuguDataSource owner, XuguDatabase object,
 				String objectName) throws SQLException {
-        	String sql = "SELECT * FROM "+owner.roleFlag+"_DATABASES" + " WHERE DB_NAME='"+owner.getConnection().getCatalog()+"'";
-        	return session.prepareStatement(sql);
+        	JDBCPreparedStatement dbStat = owner.getQueryRegistry().prepare(session, XuguQueryRegistry.Query.DATABASE);
+        	dbStat.setString(1, owner.getConnection().getCatalog());
+        	return dbStat;
 		}
         
         @Override
@@ -823,25 +1357,13 @@ public class XuguDataSource extends JDBCDataSource
 		@Override
 		protected JDBCStatement prepareChildrenStatement(JDBCSession session, XuguDataSource owner,
 				XuguDatabase forDB) throws SQLException {
-			//xfc 修改了获取列信息的sql
-            StringBuilder sql = new StringBuilder(500);
-        	
-        	sql.append("select s.schema_id,s.schema_name,u.user_name,s.comments from ");
-        	sql.append(owner.roleFlag);
-        	sql.append("_SCHEMAS s");
-        	sql.append(",");
-        	sql.append(owner.roleFlag);
-        	sql.append("_USERS s");
-        	sql.append(" where s.user_id=u.user_id ");
-        	if (forDB != null) {
-                sql.append(" and s.db_id=");
-                sql.append(forDB.getId());
-                sql.append(" and u.db_id=");
-                sql.append(forDB.getId());
-            }
-        	sql.append(" order by s.schema_id asc");
-        	
-        	JDBCStatement dbStat = session.prepareStatement(sql.toString());
+			//xfc 修改了获取模式信息的sql
+			if (forDB == null) {
+				return owner.getQueryRegistry().prepare(session, XuguQueryRegistry.Query.ALL_DATABASE_SCHEMAS);
+			}
+			JDBCPreparedStatement dbStat = owner.getQueryRegistry().prepare(session, XuguQueryRegistry.Query.DATABASE_SCHEMAS);
+			dbStat.setInt(1, forDB.getId());
+			dbStat.setInt(2, forDB.getId());
 			return dbStat;
 		}
 
@@ -861,39 +1383,18 @@ public class XuguDataSource extends JDBCDataSource
         
         @Override
 		public JDBCStatement prepareLookupStatement(@NotNull JDBCSession session, @NotNull XuguDataSource owner, XuguSchema schema, String name) throws SQLException {
-            StringBuilder schemasQuery = new StringBuilder();
-            String dbName = owner.connection.getCatalog();
         	//xfc 根据owner的用户角色选取不同的语句来查询schema
-        	schemasQuery.append("select s.schema_id,s.schema_name,u.user_name,s.comments from ");
-        	try {
-//	        	if(owner.getRoleFlag()!=null && !"NULL".equals(owner.getRoleFlag())) {
-//	        		schemasQuery.append(owner.getRoleFlag());
-//	        	}else {
-	        		schemasQuery.append("ALL");
-//	        	}
-	        	schemasQuery.append("_SCHEMAS s");
-	        	schemasQuery.append(",");
-//	        	if(owner.getRoleFlag()!=null && !"NULL".equals(owner.getRoleFlag())) {
-//	        		schemasQuery.append(owner.getRoleFlag());
-//	        	}else {
-	        		schemasQuery.append("ALL");
-//	        	}
-	        	schemasQuery.append("_USERS u");
-	        	schemasQuery.append(" where s.user_id=u.user_id and s.db_id=");
-				schemasQuery.append(owner.databaseCache.getObject(session.getProgressMonitor(), owner, dbName).getId());
-				if(schema!=null) {
-					schemasQuery.append(" and s.schema_name =");
-					schemasQuery.append(SQLUtils.quoteString(schema, schema.getName()));
-				}
-				schemasQuery.append(" order by s.schema_id asc");
-				log.debug("模式信息："+schemasQuery.toString());
-			} catch (DBException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			}
-        	
-            JDBCPreparedStatement dbStat = session.prepareStatement(schemasQuery.toString());
-            
+            JDBCPreparedStatement dbStat = owner.getQueryRegistry().prepare(session,
+                schema == null ? XuguQueryRegistry.Query.SCHEMAS : XuguQueryRegistry.Query.SCHEMA_BY_NAME);
+            try {
+                dbStat.setInt(1, owner.getCatalogContext(session).getDbId());
+            } catch (DBException e) {
+                dbStat.close();
+                throw new SQLException("Can't resolve current database", e);
+            }
+            if (schema != null) {
+                dbStat.setString(2, schema.getName());
+            }
             return dbStat;
         }
 
@@ -949,8 +1450,7 @@ public class XuguDataSource extends JDBCDataSource
         @Override
         protected JDBCStatement prepareObjectsStatement(@NotNull JDBCSession session, @NotNull XuguDataSource owner) throws SQLException {
             //xfc 修改了获取表空间信息的sql语句
-        	return session.prepareStatement(
-                "SELECT * FROM "+owner.roleFlag+"_TABLESPACES");
+        	return owner.getQueryRegistry().prepare(session, XuguQueryRegistry.Query.TABLESPACES);
         }
 
         @Override
@@ -975,23 +1475,18 @@ public class XuguDataSource extends JDBCDataSource
 		public JDBCStatement prepareLookupStatement(JDBCSession session, XuguDataSource owner, XuguUser user,
 				String objectName) throws SQLException {
 			
-			StringBuilder sql = new StringBuilder("SELECT * FROM ");
-			String dbName = owner.connection.getCatalog();
+			JDBCPreparedStatement dbStat = owner.getQueryRegistry().prepare(session,
+			    user == null ? XuguQueryRegistry.Query.USERS : XuguQueryRegistry.Query.USER_BY_ID);
 			try {
-				sql.append(owner.getRoleFlag());
-	        	sql.append("_USERS");
-	        	sql.append(" WHERE IS_ROLE=FALSE AND DB_ID=");
-				sql.append(owner.databaseCache.getObject(session.getProgressMonitor(), owner, dbName).getId());
+				dbStat.setInt(1, owner.getCatalogContext(session).getDbId());
 			} catch (DBException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
+				dbStat.close();
+				throw new SQLException("Can't resolve current database", e);
 			}
-        	if(user!=null) {
-        		sql.append(" AND USER_ID =");
-        		sql.append(user.getUser_id());
+        	if (user != null) {
+        		dbStat.setInt(2, user.getUser_id());
         	}
-        	
-        	return session.prepareStatement(sql.toString());
+        	return dbStat;
 		}
 
 		@Override
@@ -1013,19 +1508,14 @@ public class XuguDataSource extends JDBCDataSource
     public class RoleCache extends JDBCObjectCache<XuguDataSource, XuguRole> {
         @Override
         protected JDBCStatement prepareObjectsStatement(@NotNull JDBCSession session, @NotNull XuguDataSource owner) throws SQLException {
-        	StringBuilder sql = new StringBuilder();
-        	String dbName = owner.connection.getCatalog();
+        	JDBCPreparedStatement dbStat = owner.getQueryRegistry().prepare(session, XuguQueryRegistry.Query.ROLES);
         	try {
-	        	sql.append("SELECT * FROM ");
-	        	sql.append(owner.getRoleFlag());
-	        	sql.append("_USERS WHERE IS_ROLE=true");
-	        	sql.append(" AND DB_ID=");
-				sql.append(owner.databaseCache.getObject(session.getProgressMonitor(), owner, dbName).getId());
+				dbStat.setInt(1, owner.getCatalogContext(session).getDbId());
 			} catch (DBException e) {
-				// TODO Auto-generated catch block
-				log.debug("Error in XuguDataSource.RoleCache.prepareObjectsStatement()", e);
+				dbStat.close();
+				throw new SQLException("Can't resolve current database", e);
 			}
-        	return session.prepareStatement(sql.toString());      
+        	return dbStat;
         }
 
         @Override
@@ -1038,14 +1528,27 @@ public class XuguDataSource extends JDBCDataSource
         }
     }
 
+    /**
+     * 字符集列表，后台读取未完成时最多等待CHARSETS_WAIT_TIMEOUT，仍未完成返回空列表；
+     * 不能阻塞的调用方使用{@link #loadCharsets()}
+     */
     public Collection<XuguCharset> getCharsets()
     {
-        return charsets;
+        try {
+            return loadCharsets().get(CHARSETS_WAIT_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.debug("Charsets are still loading");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.debug("Can't read charsets", e.getCause());
+        }
+        return Collections.emptyList();
     }
 
     public XuguCharset getCharset(String name)
     {
-        for (XuguCharset charset : charsets) {
+        for (XuguCharset charset : getCharsets()) {
             if (charset.getName().equals(name)) {
                 return charset;
             }
@@ -0,0 +1,241 @@
+/*
+ * DBeaver - Universal Database Manager
+ * Copyright (C) 2010-2018 Serge Rider (serge@jkiss.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jkiss.dbeaver.ext.xugu.model;
+
+import org.jkiss.code.NotNull;
+import org.jkiss.code.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ALL_INDEXES.KEYS字段的解析结果（不可变）
+ * 同一KEYS字符串只解析一次，解析结果在所有索引间共享
+ */
+public final class XuguIndexKeys {
+
+    private static final int MAX_CACHED_KEYS = 4096;
+
+    private static final Map<String, XuguIndexKeys> keysCache = new ConcurrentHashMap<>();
+
+    /**
+     * 索引键的一项：普通列或表达式
+     */
+    public static final class Key {
+        private final String columnName;
+        private final String expression;
+        private final boolean ascending;
+
+        Key(@Nullable String columnName, @NotNull String expression, boolean ascending)
+        {
+            this.columnName = columnName;
+            this.expression = expression;
+            this.ascending = ascending;
+        }
+
+        /**
+         * @return 列名（已去除引号），表达式键返回null
+         */
+        @Nullable
+        public String getColumnName()
+        {
+            return columnName;
+        }
+
+        /**
+         * @return 去除排序关键字后的原始文本
+         */
+        @NotNull
+        public String getExpression()
+        {
+            return expression;
+        }
+
+        public boolean isAscending()
+        {
+            return ascending;
+        }
+
+        @Override
+        public String toString()
+        {
+            return ascending ? expression : expression + " DESC";
+        }
+    }
+
+    private final List<Key> keys;
+
+    private XuguIndexKeys(Key[] keys)
+    {
+        this.keys = Collections.unmodifiableList(Arrays.asList(keys));
+    }
+
+    @NotNull
+    public List<Key> getKeys()
+    {
+        return keys;
+    }
+
+    /**
+     * 取KEYS字符串对应的解析结果，已解析过的直接返回缓存
+     * @param rawKeys ALL_INDEXES.KEYS
+     */
+    @NotNull
+    public static XuguIndexKeys forKeys(@Nullable String rawKeys)
+    {
+        if (rawKeys == null) {
+            rawKeys = "";
+        }
+        XuguIndexKeys indexKeys = keysCache.get(rawKeys);
+        if (indexKeys == null) {
+            indexKeys = parse(rawKeys);
+            if (keysCache.size() >= MAX_CACHED_KEYS) {
+                keysCache.clear();
+            }
+            XuguIndexKeys prev = keysCache.putIfAbsent(rawKeys, indexKeys);
+            if (prev != null) {
+                indexKeys = prev;
+            }
+        }
+        return indexKeys;
+    }
+
+    /**
+     * 一次扫描完成拆分：顶层逗号分隔各键，引号和括号内的逗号不拆分，每项末尾的ASC/DESC作为排序方向，
+     * 其后的NULLS FIRST/NULLS LAST不属于键表达式
+     */
+    static XuguIndexKeys parse(@NotNull String rawKeys)
+    {
+        List<Key> keys = new ArrayList<>();
+        int length = rawKeys.length();
+        int keyStart = 0;
+        int depth = 0;
+        //当前键中最后三个顶层单词的起始位置（最后一个在前）及单词数
+        int[] tokenStarts = new int[3];
+        int tokenCount = 0;
+        boolean prevSpace = true;
+        for (int i = 0; i <= length; i++) {
+            char c = i < length ? rawKeys.charAt(i) : ',';
+            if (c == ',' && (depth == 0 || i == length)) {
+                addKey(keys, rawKeys, keyStart, i, tokenStarts, tokenCount);
+                keyStart = i + 1;
+                tokenCount = 0;
+                depth = 0;
+                prevSpace = true;
+                continue;
+            }
+            boolean space = Character.isWhitespace(c);
+            if (!space && prevSpace && depth == 0) {
+                tokenStarts[2] = tokenStarts[1];
+                tokenStarts[1] = tokenStarts[0];
+                tokenStarts[0] = i;
+                tokenCount++;
+            }
+            prevSpace = space;
+            if (c == '"' || c == '\'') {
+                //跳过引号内容，连续两个引号表示转义
+                int end = i + 1;
+                while (end < length) {
+                    if (rawKeys.charAt(end) == c) {
+                        if (end + 1 < length && rawKeys.charAt(end + 1) == c) {
+                            end += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    end++;
+                }
+                i = Math.min(end, length - 1);
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')' && depth > 0) {
+                depth--;
+            }
+        }
+        return new XuguIndexKeys(keys.toArray(new Key[keys.size()]));
+    }
+
+    private static void addKey(List<Key> keys, String rawKeys, int start, int end, int[] tokenStarts, int tokenCount)
+    {
+        int tokenStart = tokenStarts[0];
+        if (tokenCount > 2) {
+            String nulls = rawKeys.substring(tokenStarts[1], tokenStart).trim();
+            String position = rawKeys.substring(tokenStart, end).trim();
+            if (nulls.equalsIgnoreCase("NULLS") && (position.equalsIgnoreCase("FIRST") || position.equalsIgnoreCase("LAST"))) {
+                end = tokenStarts[1];
+                tokenStart = tokenStarts[2];
+                tokenCount -= 2;
+            }
+        }
+        boolean ascending = true;
+        if (tokenCount > 1) {
+            String order = rawKeys.substring(tokenStart, end).trim();
+            if (order.equalsIgnoreCase("DESC")) {
+                ascending = false;
+                end = tokenStart;
+            } else if (order.equalsIgnoreCase("ASC")) {
+                end = tokenStart;
+            }
+        }
+        String expression = rawKeys.substring(start, end).trim();
+        if (expression.isEmpty()) {
+            return;
+        }
+        keys.add(new Key(getColumnName(expression), expression, ascending));
+    }
+
+    /**
+     * 单个标识符返回列名（带引号的去除引号），其余视为表达式返回null
+     */
+    @Nullable
+    private static String getColumnName(String expression)
+    {
+        int length = expression.length();
+        if (length >= 2 && expression.charAt(0) == '"' && expression.charAt(length - 1) == '"') {
+            StringBuilder name = new StringBuilder(length - 2);
+            for (int i = 1; i < length - 1; i++) {
+                char c = expression.charAt(i);
+                if (c == '"') {
+                    if (i + 1 < length - 1 && expression.charAt(i + 1) == '"') {
+                        i++;
+                    } else {
+                        return null;
+                    }
+                }
+                name.append(c);
+            }
+            return name.toString();
+        }
+        for (int i = 0; i < length; i++) {
+            char c = expression.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '_' && c != '$' && c != '#') {
+                return null;
+            }
+        }
+        return expression;
+    }
+
+    @Override
+    public String toString()
+    {
+        return keys.toString();
+    }
+}
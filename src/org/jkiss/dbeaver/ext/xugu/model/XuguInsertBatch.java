@@ -0,0 +1,264 @@
+/*
+ * DBeaver - Universal Database Manager
+ * Copyright (C) 2010-2018 Serge Rider (serge@jkiss.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jkiss.dbeaver.ext.xugu.model;
+
+import org.jkiss.code.NotNull;
+import org.jkiss.dbeaver.Log;
+import org.jkiss.dbeaver.model.DBPEvaluationContext;
+import org.jkiss.dbeaver.model.DBUtils;
+import org.jkiss.dbeaver.model.data.DBDValueHandler;
+import org.jkiss.dbeaver.model.edit.DBEPersistAction;
+import org.jkiss.dbeaver.model.exec.DBCException;
+import org.jkiss.dbeaver.model.exec.DBCSession;
+import org.jkiss.dbeaver.model.exec.DBCStatistics;
+import org.jkiss.dbeaver.model.exec.DBCTransactionManager;
+import org.jkiss.dbeaver.model.exec.jdbc.JDBCPreparedStatement;
+import org.jkiss.dbeaver.model.exec.jdbc.JDBCSession;
+import org.jkiss.dbeaver.model.impl.sql.SQLDatabasePersistAction;
+import org.jkiss.dbeaver.model.sql.SQLDialect;
+import org.jkiss.dbeaver.model.sql.SQLUtils;
+import org.jkiss.dbeaver.model.struct.DBSAttributeBase;
+import org.jkiss.dbeaver.model.struct.DBSDataManipulator;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 批量插入
+ * 驱动支持批量更新时按批大小累积参数后一次执行（executeBatch），否则按方言的多值插入方式合并为一条多行VALUES语句；
+ * 手动提交模式下可按行数间隔提交，每批的行数和耗时写入调试日志
+ */
+public class XuguInsertBatch implements DBSDataManipulator.ExecuteBatch {
+
+    private static final Log log = Log.getLog(XuguInsertBatch.class);
+
+    //多行VALUES语句最多绑定的参数个数
+    private static final int MAX_BIND_PARAMETERS = 32767;
+
+    private final XuguTableBase table;
+    private final DBSAttributeBase[] attributes;
+    private final int batchSize;
+    private final int commitInterval;
+    private final List<Object[]> rows = new ArrayList<>();
+    //上次提交后插入的行数，跨多次execute累计
+    private long uncommittedRows;
+    private long batchNumber;
+
+    /**
+     * @param batchSize 每批的行数
+     * @param commitInterval 提交间隔（行数），不大于0时不在批量插入中提交
+     */
+    XuguInsertBatch(@NotNull XuguTableBase table, @NotNull DBSAttributeBase[] attributes, int batchSize, int commitInterval)
+    {
+        this.table = table;
+        List<DBSAttributeBase> insertAttributes = new ArrayList<>(attributes.length);
+        for (DBSAttributeBase attribute : attributes) {
+            if (!DBUtils.isPseudoAttribute(attribute)) {
+                insertAttributes.add(attribute);
+            }
+        }
+        this.attributes = insertAttributes.toArray(new DBSAttributeBase[insertAttributes.size()]);
+        this.batchSize = Math.max(1, batchSize);
+        this.commitInterval = commitInterval;
+    }
+
+    @Override
+    public void add(@NotNull Object[] attributeValues) throws DBCException
+    {
+        if (attributeValues.length != attributes.length) {
+            throw new DBCException("Bad attribute values: " + attributeValues.length + " values for " + attributes.length + " attributes");
+        }
+        rows.add(attributeValues);
+    }
+
+    @NotNull
+    @Override
+    public DBCStatistics execute(@NotNull DBCSession session) throws DBCException
+    {
+        DBCStatistics statistics = new DBCStatistics();
+        if (rows.isEmpty()) {
+            return statistics;
+        }
+        JDBCSession jdbcSession = (JDBCSession) session;
+        DBDValueHandler[] handlers = new DBDValueHandler[attributes.length];
+        for (int i = 0; i < attributes.length; i++) {
+            handlers[i] = DBUtils.findValueHandler(session, attributes[i]);
+        }
+        try {
+            if (session.getDataSource().getInfo().supportsBatchUpdates()) {
+                executeBatched(jdbcSession, handlers, statistics);
+            } else if (session.getDataSource().getSQLDialect().getMultiValueInsertMode() == SQLDialect.MultiValueInsertMode.GROUP_ROWS) {
+                executeMultiRow(jdbcSession, handlers, statistics, Math.max(1, Math.min(batchSize, MAX_BIND_PARAMETERS / Math.max(1, attributes.length))));
+            } else {
+                executeMultiRow(jdbcSession, handlers, statistics, 1);
+            }
+        } catch (SQLException e) {
+            throw new DBCException(e, session.getDataSource());
+        } finally {
+            rows.clear();
+        }
+        return statistics;
+    }
+
+    private void executeBatched(JDBCSession session, DBDValueHandler[] handlers, DBCStatistics statistics)
+        throws SQLException, DBCException
+    {
+        String sql = getInsertSQL(1);
+        statistics.setQueryText(sql);
+        try (JDBCPreparedStatement dbStat = session.prepareStatement(sql)) {
+            int batchRows = 0;
+            for (int rowIndex = 0; rowIndex < rows.size(); rowIndex++) {
+                bindRow(session, dbStat, handlers, rows.get(rowIndex), 0);
+                dbStat.addBatch();
+                batchRows++;
+                if (batchRows >= batchSize || rowIndex == rows.size() - 1) {
+                    long startTime = System.currentTimeMillis();
+                    int[] updateCounts = dbStat.executeBatch();
+                    long rowsUpdated = 0;
+                    for (int count : updateCounts) {
+                        rowsUpdated += count == Statement.SUCCESS_NO_INFO ? 1 : Math.max(count, 0);
+                    }
+                    finishBatch(session, statistics, batchRows, rowsUpdated, startTime);
+                    batchRows = 0;
+                }
+            }
+        }
+    }
+
+    private void executeMultiRow(JDBCSession session, DBDValueHandler[] handlers, DBCStatistics statistics, int rowsPerStatement)
+        throws SQLException, DBCException
+    {
+        JDBCPreparedStatement dbStat = null;
+        int statementRows = 0;
+        try {
+            for (int offset = 0; offset < rows.size(); offset += rowsPerStatement) {
+                int chunkRows = Math.min(rowsPerStatement, rows.size() - offset);
+                //行数相同的语句复用，只有最后一组可能需要重新准备
+                if (dbStat == null || chunkRows != statementRows) {
+                    if (dbStat != null) {
+                        dbStat.close();
+                    }
+                    String sql = getInsertSQL(chunkRows);
+                    dbStat = session.prepareStatement(sql);
+                    statementRows = chunkRows;
+                    if (statistics.getQueryText() == null) {
+                        statistics.setQueryText(sql);
+                    }
+                }
+                for (int i = 0; i < chunkRows; i++) {
+                    bindRow(session, dbStat, handlers, rows.get(offset + i), i * attributes.length);
+                }
+                long startTime = System.currentTimeMillis();
+                int updateCount = dbStat.executeUpdate();
+                finishBatch(session, statistics, chunkRows, Math.max(updateCount, 0), startTime);
+            }
+        } finally {
+            if (dbStat != null) {
+                dbStat.close();
+            }
+        }
+    }
+
+    private void bindRow(JDBCSession session, JDBCPreparedStatement dbStat, DBDValueHandler[] handlers, Object[] values, int paramOffset)
+        throws DBCException
+    {
+        for (int i = 0; i < attributes.length; i++) {
+            handlers[i].bindValueObject(session, dbStat, attributes[i], paramOffset + i, values[i]);
+        }
+    }
+
+    private void finishBatch(JDBCSession session, DBCStatistics statistics, int batchRows, long rowsUpdated, long startTime)
+        throws DBCException
+    {
+        long executeTime = System.currentTimeMillis() - startTime;
+        statistics.addExecuteTime(executeTime);
+        statistics.addStatementsCount();
+        statistics.addRowsUpdated(rowsUpdated);
+        batchNumber++;
+        log.debug("[Xugu] Insert batch " + batchNumber + " into " + table.getName() + ": " + batchRows + " rows in " + executeTime + "ms");
+
+        uncommittedRows += batchRows;
+        if (commitInterval > 0 && uncommittedRows >= commitInterval) {
+            DBCTransactionManager txnManager = DBUtils.getTransactionManager(session.getExecutionContext());
+            if (txnManager != null && !txnManager.isAutoCommit()) {
+                long commitStart = System.currentTimeMillis();
+                txnManager.commit(session);
+                log.debug("[Xugu] Committed " + uncommittedRows + " rows into " + table.getName() + " in " + (System.currentTimeMillis() - commitStart) + "ms");
+            }
+            uncommittedRows = 0;
+        }
+    }
+
+    private String getInsertSQL(int rowCount)
+    {
+        StringBuilder sql = new StringBuilder(64 + attributes.length * 16 + rowCount * attributes.length * 2);
+        sql.append("INSERT INTO ").append(table.getFullyQualifiedName(DBPEvaluationContext.DML)).append(" (");
+        for (int i = 0; i < attributes.length; i++) {
+            if (i > 0) {
+                sql.append(',');
+            }
+            sql.append(DBUtils.getQuotedIdentifier(table.getDataSource(), attributes[i].getName()));
+        }
+        sql.append(") VALUES ");
+        for (int row = 0; row < rowCount; row++) {
+            if (row > 0) {
+                sql.append(',');
+            }
+            sql.append('(');
+            for (int i = 0; i < attributes.length; i++) {
+                if (i > 0) {
+                    sql.append(',');
+                }
+                sql.append('?');
+            }
+            sql.append(')');
+        }
+        return sql.toString();
+    }
+
+    @Override
+    public void generatePersistActions(@NotNull DBCSession session, @NotNull List<DBEPersistAction> actions) throws DBCException
+    {
+        for (Object[] values : rows) {
+            StringBuilder sql = new StringBuilder();
+            sql.append("INSERT INTO ").append(table.getFullyQualifiedName(DBPEvaluationContext.DML)).append(" (");
+            for (int i = 0; i < attributes.length; i++) {
+                if (i > 0) {
+                    sql.append(',');
+                }
+                sql.append(DBUtils.getQuotedIdentifier(table.getDataSource(), attributes[i].getName()));
+            }
+            sql.append(") VALUES (");
+            for (int i = 0; i < attributes.length; i++) {
+                if (i > 0) {
+                    sql.append(',');
+                }
+                sql.append(SQLUtils.convertValueToSQL(table.getDataSource(), attributes[i], values[i]));
+            }
+            sql.append(')');
+            actions.add(new SQLDatabasePersistAction("Insert data", sql.toString()));
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        rows.clear();
+    }
+}
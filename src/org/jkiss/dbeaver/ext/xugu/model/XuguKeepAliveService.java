@@ -0,0 +1,283 @@
+/*
+ * DBeaver - Universal Database Manager
+ * Copyright (C) 2010-2018 Serge Rider (serge@jkiss.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jkiss.dbeaver.ext.xugu.model;
+
+import org.jkiss.code.NotNull;
+import org.jkiss.dbeaver.Log;
+import org.jkiss.dbeaver.model.exec.jdbc.JDBCExecutionContext;
+import org.jkiss.dbeaver.model.runtime.VoidProgressMonitor;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 连接保活服务
+ * 所有虚谷数据源共用一个调度线程，按各自服务器的MAX_IDLE_TIME定时检查连接，最近使用过的连接跳过本次检查。
+ * 检查在上下文状态锁内进行，有会话打开（可能正在执行语句）的连接不检查，检查期间新会话等待检查结束
+ */
+public final class XuguKeepAliveService {
+
+    private static final Log log = Log.getLog(XuguKeepAliveService.class);
+
+    private static final String PING_QUERY = "select 1 from dual";
+    private static final int PING_TIMEOUT_SECONDS = 10;
+
+    private static final XuguKeepAliveService instance = new XuguKeepAliveService();
+
+    public static XuguKeepAliveService getInstance()
+    {
+        return instance;
+    }
+
+    private final ScheduledExecutorService scheduler;
+
+    private XuguKeepAliveService()
+    {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "Xugu keep-alive");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        this.scheduler = executor;
+    }
+
+    /**
+     * 为数据源启动保活任务
+     * @param dataSource 数据源
+     * @param intervalMs 检查间隔（毫秒）
+     */
+    @NotNull
+    public KeepAlive schedule(@NotNull XuguDataSource dataSource, long intervalMs)
+    {
+        KeepAlive keepAlive = new KeepAlive(dataSource, intervalMs);
+        keepAlive.future = scheduler.scheduleWithFixedDelay(keepAlive, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        return keepAlive;
+    }
+
+    /**
+     * 在保活线程上定时执行其他轻量的检查任务（如集群节点健康检查），任务立即执行一次
+     */
+    @NotNull
+    ScheduledFuture<?> scheduleTask(@NotNull Runnable task, long intervalMs)
+    {
+        return scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                task.run();
+            } catch (Throwable e) {
+                log.debug("Scheduled task error", e);
+            }
+        }, 0, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 单个数据源的保活任务及统计
+     */
+    public static final class KeepAlive implements Runnable {
+        private final XuguDataSource dataSource;
+        private final long intervalMs;
+        //各执行上下文的使用状态
+        private final Map<JDBCExecutionContext, ContextState> contexts = new ConcurrentHashMap<>();
+        private volatile ScheduledFuture<?> future;
+
+        private final AtomicLong pings = new AtomicLong();
+        private final AtomicLong skipped = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong totalRoundTripNanos = new AtomicLong();
+        private volatile long minRoundTripNanos = Long.MAX_VALUE;
+        private volatile long maxRoundTripNanos;
+
+        private KeepAlive(XuguDataSource dataSource, long intervalMs)
+        {
+            this.dataSource = dataSource;
+            this.intervalMs = intervalMs;
+        }
+
+        /**
+         * 记录执行上下文打开了会话，会话关闭前不检查该连接
+         */
+        public void sessionOpened(@NotNull JDBCExecutionContext context)
+        {
+            ContextState state = contexts.computeIfAbsent(context, c -> new ContextState());
+            synchronized (state) {
+                state.openSessions++;
+                state.lastActivity = System.currentTimeMillis();
+            }
+        }
+
+        /**
+         * 记录会话关闭，间隔内使用过的连接不需要检查
+         */
+        public void sessionClosed(@NotNull JDBCExecutionContext context)
+        {
+            ContextState state = contexts.get(context);
+            if (state == null) {
+                return;
+            }
+            synchronized (state) {
+                if (state.openSessions > 0) {
+                    state.openSessions--;
+                }
+                state.lastActivity = System.currentTimeMillis();
+            }
+        }
+
+        @Override
+        public void run()
+        {
+            try {
+                Set<JDBCExecutionContext> liveContexts = Collections.newSetFromMap(new IdentityHashMap<JDBCExecutionContext, Boolean>());
+                for (JDBCExecutionContext context : dataSource.getDefaultInstance().getAllContexts()) {
+                    liveContexts.add(context);
+                    if (!context.isConnected()) {
+                        contexts.remove(context);
+                        continue;
+                    }
+                    ContextState state = contexts.computeIfAbsent(context, c -> new ContextState());
+                    synchronized (state) {
+                        if (state.openSessions > 0 || System.currentTimeMillis() - state.lastActivity < intervalMs) {
+                            skipped.incrementAndGet();
+                            continue;
+                        }
+                        if (ping(context)) {
+                            state.lastActivity = System.currentTimeMillis();
+                        }
+                    }
+                }
+                //已关闭的独立上下文不再出现在上下文列表中，没有打开的会话时移除其状态
+                for (Iterator<Map.Entry<JDBCExecutionContext, ContextState>> iter = contexts.entrySet().iterator(); iter.hasNext(); ) {
+                    Map.Entry<JDBCExecutionContext, ContextState> entry = iter.next();
+                    if (!liveContexts.contains(entry.getKey())) {
+                        synchronized (entry.getValue()) {
+                            if (entry.getValue().openSessions == 0) {
+                                iter.remove();
+                            }
+                        }
+                    }
+                }
+            } catch (Throwable e) {
+                //调度任务抛出异常后不会再执行
+                log.debug("Keep-alive error for '" + dataSource.getContainer().getName() + "'", e);
+            }
+        }
+
+        private boolean ping(JDBCExecutionContext context)
+        {
+            long startTime = System.nanoTime();
+            try (Statement stmt = context.getConnection(new VoidProgressMonitor()).createStatement()) {
+                stmt.setQueryTimeout(PING_TIMEOUT_SECONDS);
+                stmt.executeQuery(PING_QUERY).close();
+                long roundTrip = System.nanoTime() - startTime;
+                pings.incrementAndGet();
+                totalRoundTripNanos.addAndGet(roundTrip);
+                if (roundTrip < minRoundTripNanos) {
+                    minRoundTripNanos = roundTrip;
+                }
+                if (roundTrip > maxRoundTripNanos) {
+                    maxRoundTripNanos = roundTrip;
+                }
+                return true;
+            } catch (SQLException e) {
+                failures.incrementAndGet();
+                log.debug("Keep-alive ping failed for '" + context.getContextName() + "'", e);
+                return false;
+            }
+        }
+
+        /**
+         * 停止保活任务
+         */
+        public void cancel()
+        {
+            ScheduledFuture<?> curFuture = future;
+            if (curFuture != null) {
+                curFuture.cancel(false);
+            }
+            contexts.clear();
+            if (pings.get() > 0 || failures.get() > 0) {
+                log.debug("[Xugu] Keep-alive of '" + dataSource.getContainer().getName() + "': " + this);
+            }
+        }
+
+        public long getIntervalMs()
+        {
+            return intervalMs;
+        }
+
+        public long getPingCount()
+        {
+            return pings.get();
+        }
+
+        public long getSkippedCount()
+        {
+            return skipped.get();
+        }
+
+        public long getFailureCount()
+        {
+            return failures.get();
+        }
+
+        /**
+         * @return 平均往返时间（毫秒）
+         */
+        public double getAverageRoundTrip()
+        {
+            long count = pings.get();
+            return count == 0 ? 0 : totalRoundTripNanos.get() / 1000000.0 / count;
+        }
+
+        public double getMinRoundTrip()
+        {
+            return pings.get() == 0 ? 0 : minRoundTripNanos / 1000000.0;
+        }
+
+        public double getMaxRoundTrip()
+        {
+            return maxRoundTripNanos / 1000000.0;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "interval=" + intervalMs + "ms, pings=" + pings.get() + ", skipped=" + skipped.get() + ", failures=" + failures.get() +
+                String.format(", rtt min/avg/max=%.2f/%.2f/%.2fms", getMinRoundTrip(), getAverageRoundTrip(), getMaxRoundTrip());
+        }
+    }
+
+    /**
+     * 执行上下文的使用状态，读写及连接检查都在该对象的锁内进行
+     */
+    private static final class ContextState {
+        //最近一次使用的时间
+        long lastActivity;
+        //当前打开的会话数
+        int openSessions;
+    }
+}
@@ -0,0 +1,727 @@
+/*
+ * DBeaver - Universal Database Manager
+ * Copyright (C) 2010-2018 Serge Rider (serge@jkiss.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jkiss.dbeaver.ext.xugu.model;
+
+import org.jkiss.code.NotNull;
+import org.jkiss.code.Nullable;
+import org.jkiss.dbeaver.DBException;
+import org.jkiss.dbeaver.Log;
+import org.jkiss.dbeaver.model.DBConstants;
+import org.jkiss.dbeaver.model.exec.jdbc.JDBCPreparedStatement;
+import org.jkiss.dbeaver.model.exec.jdbc.JDBCResultSet;
+import org.jkiss.dbeaver.model.exec.jdbc.JDBCSession;
+import org.jkiss.dbeaver.model.impl.jdbc.JDBCUtils;
+import org.jkiss.dbeaver.model.runtime.DBRProgressMonitor;
+import org.jkiss.dbeaver.utils.GeneralUtils;
+import org.jkiss.utils.CommonUtils;
+
+import java.io.*;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 元数据快照
+ * 按连接和数据库把表和列的字典行保存为压缩二进制文件，连接时用它直接填充模式的表缓存，
+ * 随后在后台根据ALL_OBJECTS中的修改时间只重新读取发生变化的表，并写回快照
+ */
+public class XuguMetadataSnapshot {
+
+    private static final Log log = Log.getLog(XuguMetadataSnapshot.class);
+
+    private static final int MAGIC = 0x58475353;
+    private static final int VERSION = 3;
+    private static final String SNAPSHOT_FOLDER = "xugu-snapshots";
+
+    private static final byte T_NULL = 0;
+    private static final byte T_STRING = 1;
+    private static final byte T_INT = 2;
+    private static final byte T_LONG = 3;
+    private static final byte T_DOUBLE = 4;
+    private static final byte T_BOOLEAN = 5;
+    private static final byte T_TIMESTAMP = 6;
+
+    //OBJ_TYPE=5 表示表
+    private static final int OBJ_TYPE_TABLE = 5;
+
+    /**
+     * 一类字典行共享的列名
+     */
+    private static class RowHeader {
+        final String[] names;
+        final Map<String, Integer> index = new HashMap<>();
+
+        RowHeader(String[] names)
+        {
+            this.names = names;
+            for (int i = 0; i < names.length; i++) {
+                index.put(names[i].toUpperCase(Locale.ENGLISH), i);
+            }
+        }
+    }
+
+    /**
+     * 一张表的快照：ALL_TABLES行、ALL_COLUMNS行及修改标记
+     */
+    private static class TableEntry {
+        final long schemaId;
+        final Object[] row;
+        final List<Object[]> columns;
+        long modified;
+
+        TableEntry(long schemaId, Object[] row, List<Object[]> columns, long modified)
+        {
+            this.schemaId = schemaId;
+            this.row = row;
+            this.columns = columns;
+            this.modified = modified;
+        }
+    }
+
+    private final File file;
+    private final int dbId;
+    private RowHeader tableHeader;
+    private RowHeader columnHeader;
+    private final Map<Integer, TableEntry> tables = new HashMap<>();
+
+    private XuguMetadataSnapshot(@NotNull File file, int dbId)
+    {
+        this.file = file;
+        this.dbId = dbId;
+    }
+
+    public boolean isEmpty()
+    {
+        return tables.isEmpty();
+    }
+
+    /**
+     * 快照文件位于工作空间元数据目录下，按连接ID和数据库名区分
+     */
+    @NotNull
+    public static File getSnapshotFile(@NotNull XuguDataSource dataSource, @NotNull XuguCatalogContext catalog)
+    {
+        File folder = new File(GeneralUtils.getMetadataFolder(), SNAPSHOT_FOLDER);
+        return new File(folder, CommonUtils.escapeFileName(dataSource.getContainer().getId() + "_" + catalog.getDbName()) + ".snapshot");
+    }
+
+    /**
+     * 读取快照，文件不存在、版本或库不匹配时返回空快照
+     */
+    @NotNull
+    public static XuguMetadataSnapshot load(@NotNull File file, int dbId)
+    {
+        XuguMetadataSnapshot snapshot = new XuguMetadataSnapshot(file, dbId);
+        if (!file.exists()) {
+            return snapshot;
+        }
+        long startTime = System.currentTimeMillis();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readInt() != dbId) {
+                log.debug("[Xugu] Metadata snapshot '" + file.getName() + "' is outdated, ignore it");
+                return snapshot;
+            }
+            snapshot.tableHeader = readHeader(in);
+            snapshot.columnHeader = readHeader(in);
+            int tableCount = in.readInt();
+            for (int i = 0; i < tableCount; i++) {
+                long schemaId = in.readLong();
+                long modified = in.readLong();
+                Object[] row = readRow(in, snapshot.tableHeader);
+                int columnCount = in.readInt();
+                List<Object[]> columns = new ArrayList<>(columnCount);
+                for (int k = 0; k < columnCount; k++) {
+                    columns.add(readRow(in, snapshot.columnHeader));
+                }
+                snapshot.tables.put(snapshot.getTableId(row), new TableEntry(schemaId, row, columns, modified));
+            }
+        } catch (IOException e) {
+            log.debug("[Xugu] Can't read metadata snapshot '" + file.getName() + "'", e);
+            snapshot.tables.clear();
+            return snapshot;
+        }
+        log.debug("[Xugu] Metadata snapshot loaded: " + snapshot.tables.size() + " tables in " + (System.currentTimeMillis() - startTime) + "ms");
+        return snapshot;
+    }
+
+    /**
+     * 写入快照，先写临时文件再替换，避免中断后留下损坏的文件
+     */
+    public synchronized void save()
+    {
+        if (tableHeader == null || columnHeader == null) {
+            return;
+        }
+        File folder = file.getParentFile();
+        if (!folder.exists() && !folder.mkdirs()) {
+            log.debug("[Xugu] Can't create snapshot folder '" + folder.getAbsolutePath() + "'");
+            return;
+        }
+        File tmpFile = new File(folder, file.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tmpFile))))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(dbId);
+            writeHeader(out, tableHeader);
+            writeHeader(out, columnHeader);
+            out.writeInt(tables.size());
+            for (TableEntry entry : tables.values()) {
+                out.writeLong(entry.schemaId);
+                out.writeLong(entry.modified);
+                writeRow(out, entry.row);
+                out.writeInt(entry.columns.size());
+                for (Object[] column : entry.columns) {
+                    writeRow(out, column);
+                }
+            }
+        } catch (IOException e) {
+            log.debug("[Xugu] Can't write metadata snapshot '" + file.getName() + "'", e);
+            tmpFile.delete();
+            return;
+        }
+        if (file.exists() && !file.delete()) {
+            log.debug("[Xugu] Can't replace metadata snapshot '" + file.getName() + "'");
+            tmpFile.delete();
+            return;
+        }
+        if (!tmpFile.renameTo(file)) {
+            log.debug("[Xugu] Can't rename metadata snapshot '" + tmpFile.getName() + "'");
+        }
+    }
+
+    /**
+     * 用快照填充尚未加载的模式表缓存
+     * 含视图行的模式不填充（视图对象需要在线读取定义）
+     * @return 填充的模式数
+     */
+    public synchronized int hydrate(@NotNull DBRProgressMonitor monitor, @NotNull Collection<XuguSchema> schemas)
+    {
+        if (tables.isEmpty()) {
+            return 0;
+        }
+        Map<Long, List<TableEntry>> schemaTables = new HashMap<>();
+        for (TableEntry entry : tables.values()) {
+            schemaTables.computeIfAbsent(entry.schemaId, id -> new ArrayList<>()).add(entry);
+        }
+        int hydrated = 0;
+        for (XuguSchema schema : schemas) {
+            List<TableEntry> entries = schemaTables.get(schema.getId());
+            if (entries == null || schema.tableCache.isFullyCached() || !isHydratable(entries)) {
+                continue;
+            }
+            Map<XuguTableBase, List<XuguTableColumn>> columns = new HashMap<>();
+            List<XuguTableBase> schemaTableList = new ArrayList<>(entries.size());
+            for (TableEntry entry : entries) {
+                XuguTable table = createTable(monitor, schema, entry);
+                schemaTableList.add(table);
+                columns.put(table, createColumns(monitor, table, entry));
+            }
+            schema.tableCache.cacheTables(schemaTableList);
+            schema.tableCache.cacheColumns(columns);
+            hydrated++;
+        }
+        return hydrated;
+    }
+
+    /**
+     * 后台重新校验
+     * 比较ALL_OBJECTS中表的修改时间，只重新读取新增或变化的表及其列，删除已不存在的表，
+     * 并就地修补已缓存的模式（未变化的表对象保持不变），最后写回快照
+     * @return 变化的表数
+     */
+    public int revalidate(@NotNull JDBCSession session, @NotNull Collection<XuguSchema> schemas) throws SQLException, DBException
+    {
+        long startTime = System.currentTimeMillis();
+        Map<Integer, Long> markers = readMarkers(session);
+        Set<Integer> changed = new HashSet<>();
+        Set<Integer> removed = new HashSet<>();
+        synchronized (this) {
+            if (markers == null) {
+                //无法读取修改时间时整体重新读取
+                changed = null;
+            } else {
+                for (Map.Entry<Integer, Long> marker : markers.entrySet()) {
+                    TableEntry entry = tables.get(marker.getKey());
+                    if (entry == null || entry.modified != marker.getValue()) {
+                        changed.add(marker.getKey());
+                    }
+                }
+                for (Integer tableId : tables.keySet()) {
+                    if (!markers.containsKey(tableId)) {
+                        removed.add(tableId);
+                    }
+                }
+            }
+        }
+        if (changed != null && changed.isEmpty() && removed.isEmpty()) {
+            log.debug("[Xugu] Metadata snapshot is up to date (" + (System.currentTimeMillis() - startTime) + "ms)");
+            return 0;
+        }
+
+        Map<Integer, TableEntry> fetched = fetchTables(session, changed, markers);
+        if (session.getProgressMonitor().isCanceled()) {
+            return 0;
+        }
+        if (changed == null) {
+            synchronized (this) {
+                for (Integer tableId : tables.keySet()) {
+                    if (!fetched.containsKey(tableId)) {
+                        removed.add(tableId);
+                    }
+                }
+            }
+        }
+        Set<Long> affectedSchemas = new HashSet<>();
+        synchronized (this) {
+            for (Integer tableId : removed) {
+                TableEntry entry = tables.remove(tableId);
+                if (entry != null) {
+                    affectedSchemas.add(entry.schemaId);
+                }
+            }
+            for (TableEntry entry : fetched.values()) {
+                tables.put(getTableId(entry.row), entry);
+                affectedSchemas.add(entry.schemaId);
+            }
+        }
+        for (XuguSchema schema : schemas) {
+            if (affectedSchemas.contains(schema.getId())) {
+                patchSchema(session.getProgressMonitor(), schema, fetched.keySet(), removed);
+            }
+        }
+        save();
+        log.debug("[Xugu] Metadata snapshot revalidated: " + fetched.size() + " changed, " + removed.size() + " removed in " + (System.currentTimeMillis() - startTime) + "ms");
+        return fetched.size() + removed.size();
+    }
+
+    /**
+     * 读取库中各表的修改时间，字典不支持时返回null
+     */
+    @Nullable
+    private Map<Integer, Long> readMarkers(JDBCSession session)
+    {
+        Map<Integer, Long> markers = new HashMap<>();
+        try (JDBCPreparedStatement dbStat = session.prepareStatement(
+            "SELECT OBJ_ID, LAST_MODI_TIME FROM ALL_OBJECTS WHERE DB_ID=? AND OBJ_TYPE=?")) {
+            dbStat.setInt(1, dbId);
+            dbStat.setInt(2, OBJ_TYPE_TABLE);
+            dbStat.setFetchSize(DBConstants.METADATA_FETCH_SIZE);
+            try (JDBCResultSet dbResult = dbStat.executeQuery()) {
+                while (dbResult.next()) {
+                    Timestamp modified = JDBCUtils.safeGetTimestamp(dbResult, "LAST_MODI_TIME");
+                    markers.put(JDBCUtils.safeGetInt(dbResult, "OBJ_ID"), modified == null ? 0L : modified.getTime());
+                }
+            }
+        } catch (SQLException e) {
+            log.debug("[Xugu] Can't read object modification times, reload whole snapshot", e);
+            return null;
+        }
+        return markers;
+    }
+
+    /**
+     * 读取指定表（tableIds为null时为库中全部表）的字典行及列
+     */
+    private Map<Integer, TableEntry> fetchTables(JDBCSession session, @Nullable Set<Integer> tableIds, @Nullable Map<Integer, Long> markers)
+        throws SQLException
+    {
+        Map<Integer, TableEntry> fetched = new HashMap<>();
+        if (tableIds != null && tableIds.isEmpty()) {
+            return fetched;
+        }
+        //表较多时直接按库读取，避免过长的IN列表
+        boolean byDatabase = tableIds == null || tableIds.size() > 500;
+        String idList = byDatabase ? null : joinIds(tableIds);
+        try (JDBCPreparedStatement dbStat = session.prepareStatement(
+            "SELECT T.*, O.LAST_MODI_TIME FROM ALL_TABLES T LEFT JOIN ALL_OBJECTS O ON O.OBJ_ID=T.TABLE_ID AND O.DB_ID=T.DB_ID " +
+            "WHERE T.DB_ID=?" + (byDatabase ? "" : " AND T.TABLE_ID IN (" + idList + ")"))) {
+            dbStat.setInt(1, dbId);
+            dbStat.setFetchSize(DBConstants.METADATA_FETCH_SIZE);
+            try (JDBCResultSet dbResult = dbStat.executeQuery()) {
+                RowHeader header = createHeader(dbResult.getMetaData());
+                synchronized (this) {
+                    if (tableHeader != null && !Arrays.equals(tableHeader.names, header.names)) {
+                        //字典结构变化后旧行不再可用，未重新读取的表在下次校验时补齐
+                        tables.clear();
+                    }
+                    tableHeader = header;
+                }
+                while (dbResult.next()) {
+                    int tableId = JDBCUtils.safeGetInt(dbResult, "TABLE_ID");
+                    if (tableIds != null && !tableIds.contains(tableId)) {
+                        continue;
+                    }
+                    Long modified = markers == null ? null : markers.get(tableId);
+                    fetched.put(tableId, new TableEntry(
+                        JDBCUtils.safeGetLong(dbResult, "SCHEMA_ID"),
+                        readRow(dbResult, header),
+                        new ArrayList<>(),
+                        modified == null ? 0L : modified));
+                }
+            }
+        }
+        try (JDBCPreparedStatement dbStat = session.prepareStatement(
+            "SELECT * FROM ALL_COLUMNS WHERE DB_ID=?" + (byDatabase ? "" : " AND TABLE_ID IN (" + idList + ")") + " ORDER BY TABLE_ID, COL_NO")) {
+            dbStat.setInt(1, dbId);
+            dbStat.setFetchSize(DBConstants.METADATA_FETCH_SIZE);
+            try (JDBCResultSet dbResult = dbStat.executeQuery()) {
+                RowHeader header = createHeader(dbResult.getMetaData());
+                synchronized (this) {
+                    if (columnHeader != null && !Arrays.equals(columnHeader.names, header.names)) {
+                        tables.clear();
+                    }
+                    columnHeader = header;
+                }
+                while (dbResult.next()) {
+                    if (session.getProgressMonitor().isCanceled()) {
+                        break;
+                    }
+                    TableEntry entry = fetched.get(JDBCUtils.safeGetInt(dbResult, "TABLE_ID"));
+                    if (entry != null) {
+                        entry.columns.add(readRow(dbResult, header));
+                    }
+                }
+            }
+        }
+        return fetched;
+    }
+
+    /**
+     * 修补已加载的模式表缓存：保留未变化的表对象，替换变化的表，移除已删除的表
+     */
+    private synchronized void patchSchema(DBRProgressMonitor monitor, XuguSchema schema, Set<Integer> changed, Set<Integer> removed)
+    {
+        if (!schema.tableCache.isFullyCached()) {
+            return;
+        }
+        List<XuguTableBase> schemaTableList = new ArrayList<>();
+        Set<Integer> present = new HashSet<>();
+        List<XuguTableBase> replacedTables = new ArrayList<>();
+        for (XuguTableBase table : schema.tableCache.getCachedObjects()) {
+            if (removed.contains(table.getId()) || changed.contains(table.getId())) {
+                replacedTables.add(table);
+                continue;
+            }
+            schemaTableList.add(table);
+            present.add(table.getId());
+        }
+        Map<XuguTableBase, List<XuguTableColumn>> columns = new HashMap<>();
+        for (Integer tableId : changed) {
+            TableEntry entry = tables.get(tableId);
+            if (entry == null || entry.schemaId != schema.getId() || present.contains(tableId) || !isHydratable(Collections.singletonList(entry))) {
+                continue;
+            }
+            XuguTable table = createTable(monitor, schema, entry);
+            schemaTableList.add(table);
+            columns.put(table, createColumns(monitor, table, entry));
+        }
+        schema.tableCache.cacheTables(schemaTableList);
+        schema.tableCache.cacheColumns(columns);
+        //被替换或删除的表上缓存的索引、约束和外键不再有效，整体缓存时整体清除
+        if (replacedTables.isEmpty()) {
+            return;
+        }
+        if (schema.indexCache.isFullyCached()) {
+            schema.indexCache.clearCache();
+        }
+        if (schema.constraintCache.isFullyCached()) {
+            schema.constraintCache.clearCache();
+        }
+        if (schema.foreignKeyCache.isFullyCached()) {
+            schema.foreignKeyCache.clearCache();
+        }
+        for (XuguTableBase table : replacedTables) {
+            schema.constraintCache.clearObjectCache(table);
+            if (table instanceof XuguTablePhysical) {
+                schema.indexCache.clearObjectCache((XuguTablePhysical) table);
+            }
+            if (table instanceof XuguTable) {
+                schema.foreignKeyCache.clearObjectCache((XuguTable) table);
+            }
+        }
+    }
+
+    private boolean isHydratable(List<TableEntry> entries)
+    {
+        if (tableHeader == null || columnHeader == null) {
+            return false;
+        }
+        for (TableEntry entry : entries) {
+            if (JDBCUtils.safeGetInt(createResultSet(tableHeader, entry.row), "TABLE_TYPE") != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private XuguTable createTable(DBRProgressMonitor monitor, XuguSchema schema, TableEntry entry)
+    {
+        return new XuguTable(monitor, schema, createResultSet(tableHeader, entry.row));
+    }
+
+    private List<XuguTableColumn> createColumns(DBRProgressMonitor monitor, XuguTable table, TableEntry entry)
+    {
+        List<XuguTableColumn> columns = new ArrayList<>(entry.columns.size());
+        for (Object[] column : entry.columns) {
+            columns.add(new XuguTableColumn(monitor, table, createResultSet(columnHeader, column)));
+        }
+        return columns;
+    }
+
+    private int getTableId(Object[] row)
+    {
+        return JDBCUtils.safeGetInt(createResultSet(tableHeader, row), "TABLE_ID");
+    }
+
+    private static String joinIds(Set<Integer> ids)
+    {
+        StringBuilder sql = new StringBuilder(ids.size() * 6);
+        for (Integer id : ids) {
+            if (sql.length() > 0) {
+                sql.append(',');
+            }
+            sql.append(id);
+        }
+        return sql.toString();
+    }
+
+    //------------------------------------------------------------------
+    // 行的读写
+
+    private static RowHeader createHeader(ResultSetMetaData metaData) throws SQLException
+    {
+        String[] names = new String[metaData.getColumnCount()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = metaData.getColumnLabel(i + 1).toUpperCase(Locale.ENGLISH);
+        }
+        return new RowHeader(names);
+    }
+
+    private static Object[] readRow(ResultSet dbResult, RowHeader header) throws SQLException
+    {
+        Object[] row = new Object[header.names.length];
+        for (int i = 0; i < row.length; i++) {
+            Object value = dbResult.getObject(i + 1);
+            if (value instanceof Timestamp || value instanceof Boolean || value instanceof Integer || value instanceof Long
+                || value instanceof Double || value == null) {
+                row[i] = value;
+            } else if (value instanceof java.util.Date) {
+                row[i] = new Timestamp(((java.util.Date) value).getTime());
+            } else if (value instanceof Short || value instanceof Byte) {
+                row[i] = ((Number) value).intValue();
+            } else if (value instanceof BigDecimal && ((BigDecimal) value).scale() <= 0) {
+                row[i] = ((BigDecimal) value).longValue();
+            } else if (value instanceof Number) {
+                row[i] = ((Number) value).doubleValue();
+            } else {
+                row[i] = value.toString();
+            }
+        }
+        return row;
+    }
+
+    private static RowHeader readHeader(DataInputStream in) throws IOException
+    {
+        String[] names = new String[in.readInt()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = readString(in).intern();
+        }
+        return new RowHeader(names);
+    }
+
+    private static void writeHeader(DataOutputStream out, RowHeader header) throws IOException
+    {
+        out.writeInt(header.names.length);
+        for (String name : header.names) {
+            writeString(out, name);
+        }
+    }
+
+    private static Object[] readRow(DataInputStream in, RowHeader header) throws IOException
+    {
+        Object[] row = new Object[header.names.length];
+        for (int i = 0; i < row.length; i++) {
+            byte type = in.readByte();
+            switch (type) {
+                case T_NULL: row[i] = null; break;
+                case T_STRING: row[i] = readString(in); break;
+                case T_INT: row[i] = in.readInt(); break;
+                case T_LONG: row[i] = in.readLong(); break;
+                case T_DOUBLE: row[i] = in.readDouble(); break;
+                case T_BOOLEAN: row[i] = in.readBoolean(); break;
+                case T_TIMESTAMP: row[i] = new Timestamp(in.readLong()); break;
+                default:
+                    throw new IOException("Bad snapshot value type: " + type);
+            }
+        }
+        return row;
+    }
+
+    private static void writeRow(DataOutputStream out, Object[] row) throws IOException
+    {
+        for (Object value : row) {
+            if (value == null) {
+                out.writeByte(T_NULL);
+            } else if (value instanceof Integer) {
+                out.writeByte(T_INT);
+                out.writeInt((Integer) value);
+            } else if (value instanceof Long) {
+                out.writeByte(T_LONG);
+                out.writeLong((Long) value);
+            } else if (value instanceof Double) {
+                out.writeByte(T_DOUBLE);
+                out.writeDouble((Double) value);
+            } else if (value instanceof Boolean) {
+                out.writeByte(T_BOOLEAN);
+                out.writeBoolean((Boolean) value);
+            } else if (value instanceof Timestamp) {
+                out.writeByte(T_TIMESTAMP);
+                out.writeLong(((Timestamp) value).getTime());
+            } else {
+                out.writeByte(T_STRING);
+                writeString(out, value.toString());
+            }
+        }
+    }
+
+    /**
+     * 字符串按UTF-8字节数组加长度前缀保存，不受writeUTF的64KB限制（长默认值、注释）
+     */
+    private static String readString(DataInputStream in) throws IOException
+    {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Bad snapshot string length: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException
+    {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * 以只读ResultSet的形式暴露快照行，使表和列对象可以沿用基于结果集的构造方法
+     * 只支持按列名读取
+     */
+    private static ResultSet createResultSet(RowHeader header, Object[] row)
+    {
+        return (ResultSet) Proxy.newProxyInstance(
+            XuguMetadataSnapshot.class.getClassLoader(),
+            new Class[] { ResultSet.class },
+            new RowHandler(header, row));
+    }
+
+    private static class RowHandler implements InvocationHandler {
+        private final RowHeader header;
+        private final Object[] row;
+        private boolean wasNull;
+
+        RowHandler(RowHeader header, Object[] row)
+        {
+            this.header = header;
+            this.row = row;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+        {
+            String name = method.getName();
+            switch (name) {
+                case "wasNull": return wasNull;
+                case "close": return null;
+                case "isClosed": return false;
+                case "hashCode": return System.identityHashCode(proxy);
+                case "equals": return proxy == args[0];
+                case "toString": return "Snapshot row " + Arrays.toString(row);
+            }
+            if (args == null || args.length != 1 || !(args[0] instanceof String)) {
+                throw new SQLFeatureNotSupportedException("Snapshot row doesn't support " + name);
+            }
+            Integer index = header.index.get(((String) args[0]).toUpperCase(Locale.ENGLISH));
+            if (index == null || index >= row.length) {
+                throw new SQLException("Column '" + args[0] + "' not found in snapshot");
+            }
+            if ("findColumn".equals(name)) {
+                return index + 1;
+            }
+            Object value = row[index];
+            wasNull = value == null;
+            switch (name) {
+                case "getObject": return value;
+                case "getString": return value == null ? null : value.toString();
+                case "getBoolean": return toBoolean(value);
+                case "getInt": return toNumber(value).intValue();
+                case "getLong": return toNumber(value).longValue();
+                case "getShort": return toNumber(value).shortValue();
+                case "getByte": return toNumber(value).byteValue();
+                case "getDouble": return toNumber(value).doubleValue();
+                case "getFloat": return toNumber(value).floatValue();
+                case "getBigDecimal": return value == null ? null : new BigDecimal(value.toString());
+                case "getTimestamp": return value instanceof Timestamp ? value : null;
+                case "getDate": return value instanceof Timestamp ? new java.sql.Date(((Timestamp) value).getTime()) : null;
+                case "getTime": return value instanceof Timestamp ? new Time(((Timestamp) value).getTime()) : null;
+                default:
+                    throw new SQLFeatureNotSupportedException("Snapshot row doesn't support " + name);
+            }
+        }
+
+        private static Number toNumber(@Nullable Object value) throws SQLException
+        {
+            if (value == null) {
+                return 0;
+            }
+            if (value instanceof Number) {
+                return (Number) value;
+            }
+            if (value instanceof Boolean) {
+                return (Boolean) value ? 1 : 0;
+            }
+            try {
+                return new BigDecimal(value.toString().trim());
+            } catch (NumberFormatException e) {
+                throw new SQLException("Bad numeric value '" + value + "'");
+            }
+        }
+
+        private static boolean toBoolean(@Nullable Object value)
+        {
+            if (value == null) {
+                return false;
+            }
+            if (value instanceof Boolean) {
+                return (Boolean) value;
+            }
+            if (value instanceof Number) {
+                return ((Number) value).intValue() != 0;
+            }
+            String str = value.toString().trim();
+            return "T".equalsIgnoreCase(str) || "1".equals(str) || Boolean.parseBoolean(str);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * DBeaver - Universal Database Manager
+ * Copyright (C) 2010-2018 Serge Rider (serge@jkiss.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jkiss.dbeaver.ext.xugu.model;
+
+import org.jkiss.code.NotNull;
+import org.jkiss.code.Nullable;
+import org.jkiss.dbeaver.DBException;
+import org.jkiss.dbeaver.Log;
+import org.jkiss.dbeaver.model.DBConstants;
+import org.jkiss.dbeaver.model.exec.jdbc.JDBCPreparedStatement;
+import org.jkiss.dbeaver.model.exec.jdbc.JDBCResultSet;
+import org.jkiss.dbeaver.model.exec.jdbc.JDBCSession;
+import org.jkiss.dbeaver.model.runtime.DBRProgressMonitor;
+import org.jkiss.dbeaver.model.sql.SQLUtils;
+import org.jkiss.dbeaver.model.struct.DBSObjectFilter;
+import org.jkiss.utils.CommonUtils;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按名称分页读取模式对象
+ * 每页按(名称, ID)排序，从上一页最后一行之后继续读取（键集分页），每次往返的数据量固定，页与页之间响应取消；
+ * 导航器的名称过滤条件在服务端执行
+ */
+final class XuguPagedQuery {
+
+    private static final Log log = Log.getLog(XuguPagedQuery.class);
+
+    /**
+     * 绑定基础查询的参数
+     */
+    interface Binder {
+        void bind(JDBCPreparedStatement dbStat) throws SQLException;
+    }
+
+    private final String baseSql;
+    private final int baseParamCount;
+    private final String nameColumn;
+    private final String idColumn;
+    private final List<String> filterMasks = new ArrayList<>();
+    private String filterSql = "";
+
+    /**
+     * @param baseQuery 基础查询，不能包含ORDER BY
+     * @param baseParamCount 基础查询的参数个数
+     * @param nameColumn 名称列（可带表别名）
+     * @param idColumn 名称相同时用于区分的列
+     */
+    XuguPagedQuery(@NotNull XuguDataSource dataSource, @NotNull XuguQueryRegistry.Query baseQuery, int baseParamCount, @NotNull String nameColumn, @NotNull String idColumn)
+    {
+        this.baseSql = baseQuery.getSql(dataSource.getRoleFlag());
+        this.baseParamCount = baseParamCount;
+        this.nameColumn = nameColumn;
+        this.idColumn = idColumn;
+    }
+
+    /**
+     * 设置名称过滤
+     * @param filter 导航器对象过滤
+     * @param bypassCondition 满足该条件的行不受过滤限制，可为null
+     */
+    XuguPagedQuery setFilter(@Nullable DBSObjectFilter filter, @Nullable String bypassCondition)
+    {
+        filterMasks.clear();
+        filterSql = "";
+        if (filter == null || filter.isNotApplicable()) {
+            return this;
+        }
+        StringBuilder condition = new StringBuilder();
+        List<String> include = filter.getInclude();
+        if (!CommonUtils.isEmpty(include)) {
+            condition.append('(');
+            for (int i = 0; i < include.size(); i++) {
+                if (i > 0) {
+                    condition.append(" OR ");
+                }
+                condition.append(nameColumn).append(" LIKE ?");
+                filterMasks.add(SQLUtils.makeSQLLike(include.get(i)));
+            }
+            condition.append(')');
+        }
+        List<String> exclude = filter.getExclude();
+        if (!CommonUtils.isEmpty(exclude)) {
+            for (String mask : exclude) {
+                if (condition.length() > 0) {
+                    condition.append(" AND ");
+                }
+                condition.append(nameColumn).append(" NOT LIKE ?");
+                filterMasks.add(SQLUtils.makeSQLLike(mask));
+            }
+        }
+        if (condition.length() > 0) {
+            filterSql = bypassCondition == null ?
+                " AND (" + condition + ")" :
+                " AND (" + bypassCondition + " OR (" + condition + "))";
+        }
+        return this;
+    }
+
+    /**
+     * 读取全部页
+     * @param pageSize 每页行数，不大于0时一次读取
+     */
+    <T> List<T> read(@NotNull JDBCSession session, int pageSize, @NotNull Binder binder, @NotNull XuguSchema.ObjectFetcher<T> fetcher)
+        throws SQLException, DBException
+    {
+        DBRProgressMonitor monitor = session.getProgressMonitor();
+        String orderSql = " ORDER BY " + nameColumn + "," + idColumn;
+        String firstSql = baseSql + filterSql + orderSql + (pageSize > 0 ? " LIMIT ?" : "");
+        String nextSql = baseSql + filterSql +
+            " AND (" + nameColumn + ">? OR (" + nameColumn + "=? AND " + idColumn + ">?))" + orderSql + " LIMIT ?";
+        String nameLabel = getLabel(nameColumn);
+        String idLabel = getLabel(idColumn);
+
+        List<T> objects = new ArrayList<>();
+        String lastName = null;
+        long lastId = 0;
+        int pageCount = 0;
+        long startTime = System.currentTimeMillis();
+        while (!monitor.isCanceled()) {
+            int rowCount = 0;
+            try (JDBCPreparedStatement dbStat = session.prepareStatement(lastName == null ? firstSql : nextSql)) {
+                binder.bind(dbStat);
+                int paramIndex = baseParamCount + 1;
+                for (String mask : filterMasks) {
+                    dbStat.setString(paramIndex++, mask);
+                }
+                if (lastName != null) {
+                    dbStat.setString(paramIndex++, lastName);
+                    dbStat.setString(paramIndex++, lastName);
+                    dbStat.setLong(paramIndex++, lastId);
+                }
+                if (pageSize > 0) {
+                    dbStat.setInt(paramIndex, pageSize);
+                    dbStat.setFetchSize(pageSize);
+                } else {
+                    dbStat.setFetchSize(DBConstants.METADATA_FETCH_SIZE);
+                }
+                try (JDBCResultSet dbResult = dbStat.executeQuery()) {
+                    while (dbResult.next()) {
+                        rowCount++;
+                        lastName = dbResult.getString(nameLabel);
+                        lastId = dbResult.getLong(idLabel);
+                        T object = fetcher.fetchObject(dbResult);
+                        if (object != null) {
+                            objects.add(object);
+                        }
+                    }
+                }
+            }
+            pageCount++;
+            if (pageSize <= 0 || rowCount < pageSize || lastName == null) {
+                break;
+            }
+            monitor.subTask("Loaded " + objects.size() + " objects");
+        }
+        if (pageCount > 1) {
+            log.debug("[Xugu] Read " + objects.size() + " objects in " + pageCount + " pages in " + (System.currentTimeMillis() - startTime) + "ms");
+        }
+        return objects;
+    }
+
+    private static String getLabel(String column)
+    {
+        int divPos = column.lastIndexOf('.');
+        return divPos == -1 ? column : column.substring(divPos + 1);
+    }
+}
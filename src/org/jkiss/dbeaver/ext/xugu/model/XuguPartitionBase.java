@@ -16,8 +16,23 @@
  */
 package org.jkiss.dbeaver.ext.xugu.model;
 
+import org.jkiss.code.NotNull;
+import org.jkiss.code.Nullable;
+import org.jkiss.dbeaver.model.DBPEvaluationContext;
+import org.jkiss.dbeaver.model.DBUtils;
+import org.jkiss.dbeaver.model.data.DBDDataFilter;
+import org.jkiss.dbeaver.model.data.DBDDataReceiver;
+import org.jkiss.dbeaver.model.exec.DBCException;
+import org.jkiss.dbeaver.model.exec.DBCExecutionSource;
+import org.jkiss.dbeaver.model.exec.DBCResultSet;
+import org.jkiss.dbeaver.model.exec.DBCSession;
+import org.jkiss.dbeaver.model.exec.DBCStatement;
+import org.jkiss.dbeaver.model.exec.DBCStatementType;
+import org.jkiss.dbeaver.model.exec.DBCStatistics;
 import org.jkiss.dbeaver.model.impl.jdbc.JDBCUtils;
 import org.jkiss.dbeaver.model.meta.Property;
+import org.jkiss.dbeaver.model.sql.SQLUtils;
+import org.jkiss.dbeaver.model.struct.DBSDataContainer;
 import org.jkiss.dbeaver.model.struct.DBSObject;
 
 import java.sql.ResultSet;
@@ -25,8 +40,9 @@ import java.sql.ResultSet;
 /**
  * @author Maple4Real
  *   表分区的基类，包括分区类型等分区基本信息
+ *   分区可作为数据容器单独查询和导出（每个分区一个文件）
  */
-public abstract class XuguPartitionBase<PARENT extends DBSObject> extends XuguObject<PARENT>
+public abstract class XuguPartitionBase<PARENT extends DBSObject> extends XuguObject<PARENT> implements DBSDataContainer
 {
     public enum PartitionType {
         RANGE,
@@ -219,5 +235,84 @@ public abstract class XuguPartitionBase<PARENT extends DBSObject> extends XuguOb
     public void setSubPartition(boolean subFlag) {
     	this.isSubParti = subFlag;
     }
-    
+
+    @Nullable
+    public XuguTablePhysical getTable() {
+        return parent instanceof XuguTablePhysical ? (XuguTablePhysical) parent : null;
+    }
+
+    /**
+     * 只扫描本分区的查询
+     */
+    @NotNull
+    public String getPartitionQuery(@NotNull String selectList) {
+        XuguTablePhysical table = getTable();
+        String tableName = table == null ? DBUtils.getQuotedIdentifier(parent) : table.getFullyQualifiedName(DBPEvaluationContext.DML);
+        return "SELECT " + selectList + " FROM " + tableName + (isSubParti ? " SUBPARTITION (" : " PARTITION (") +
+            DBUtils.getQuotedIdentifier(getDataSource(), getName()) + ")";
+    }
+
+    @Override
+    public int getSupportedFeatures() {
+        return DATA_SELECT | DATA_COUNT | DATA_FILTER;
+    }
+
+    @NotNull
+    @Override
+    public DBCStatistics readData(@NotNull DBCExecutionSource source, @NotNull DBCSession session, @NotNull DBDDataReceiver dataReceiver, @Nullable DBDDataFilter dataFilter, long firstRow, long maxRows, long flags)
+        throws DBCException
+    {
+        DBCStatistics statistics = new DBCStatistics();
+        StringBuilder query = new StringBuilder(getPartitionQuery("*"));
+        SQLUtils.appendQueryConditions(getDataSource(), query, null, dataFilter);
+        SQLUtils.appendQueryOrder(getDataSource(), query, null, dataFilter);
+        String sql = query.toString();
+        statistics.setQueryText(sql);
+
+        long startTime = System.currentTimeMillis();
+        try (DBCStatement dbStat = DBUtils.makeStatement(source, session, DBCStatementType.SCRIPT, sql, firstRow, maxRows)) {
+            if (dbStat.executeStatement()) {
+                statistics.setExecuteTime(System.currentTimeMillis() - startTime);
+                try (DBCResultSet dbResult = dbStat.openResultSet()) {
+                    startTime = System.currentTimeMillis();
+                    long rowCount = 0;
+                    dataReceiver.fetchStart(session, dbResult, firstRow, maxRows);
+                    try {
+                        while (dbResult.nextRow() && !session.getProgressMonitor().isCanceled()) {
+                            dataReceiver.fetchRow(session, dbResult);
+                            rowCount++;
+                        }
+                    } finally {
+                        dataReceiver.fetchEnd(session, dbResult);
+                    }
+                    statistics.addFetchTime(System.currentTimeMillis() - startTime);
+                    statistics.setRowsFetched(rowCount);
+                }
+            }
+        } finally {
+            dataReceiver.close();
+        }
+        return statistics;
+    }
+
+    @Override
+    public long countData(@NotNull DBCExecutionSource source, @NotNull DBCSession session, @Nullable DBDDataFilter dataFilter)
+        throws DBCException
+    {
+        StringBuilder query = new StringBuilder(getPartitionQuery("COUNT(*)"));
+        SQLUtils.appendQueryConditions(getDataSource(), query, null, dataFilter);
+        try (DBCStatement dbStat = DBUtils.makeStatement(source, session, DBCStatementType.SCRIPT, query.toString(), 0, 0)) {
+            if (dbStat.executeStatement()) {
+                try (DBCResultSet dbResult = dbStat.openResultSet()) {
+                    if (dbResult.nextRow()) {
+                        Object count = dbResult.getAttributeValue(0);
+                        if (count instanceof Number) {
+                            return ((Number) count).longValue();
+                        }
+                    }
+                }
+            }
+        }
+        return 0;
+    }
 }
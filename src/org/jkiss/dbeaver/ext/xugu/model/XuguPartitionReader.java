@@ -0,0 +1,261 @@
+/*
+ * DBeaver - Universal Database Manager
+ * Copyright (C) 2010-2018 Serge Rider (serge@jkiss.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jkiss.dbeaver.ext.xugu.model;
+
+import org.jkiss.code.NotNull;
+import org.jkiss.dbeaver.DBException;
+import org.jkiss.dbeaver.Log;
+import org.jkiss.dbeaver.ext.xugu.XuguConstants;
+import org.jkiss.dbeaver.model.data.DBDDataReceiver;
+import org.jkiss.dbeaver.model.exec.DBCException;
+import org.jkiss.dbeaver.model.exec.DBCExecutionPurpose;
+import org.jkiss.dbeaver.model.exec.DBCSession;
+import org.jkiss.dbeaver.model.exec.DBCStatistics;
+import org.jkiss.dbeaver.model.exec.jdbc.JDBCExecutionContext;
+import org.jkiss.dbeaver.model.exec.jdbc.JDBCPreparedStatement;
+import org.jkiss.dbeaver.model.exec.jdbc.JDBCResultSet;
+import org.jkiss.dbeaver.model.exec.jdbc.JDBCSession;
+import org.jkiss.dbeaver.model.runtime.DBRProgressMonitor;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 按分区并行读取整张表
+ * 每个分区单独扫描，最多同时使用指定数量的独立连接：后面分区的查询在前面分区输出期间提前执行，
+ * 输出时按分区顺序依次交给同一个数据接收者，结果与整表查询的列相同。
+ * 每个分区在各自的连接上以各自的快照读取，不保证整表一致：读取期间其他会话的修改可能使行重复或遗漏
+ */
+final class XuguPartitionReader {
+
+    private static final Log log = Log.getLog(XuguPartitionReader.class);
+
+    private static final int PARTITION_FETCH_SIZE = 2000;
+
+    /**
+     * 已执行查询的分区，结果集由输出线程读取
+     */
+    private static final class OpenedPartition {
+        private final JDBCExecutionContext context;
+        private final JDBCSession session;
+        private final JDBCPreparedStatement statement;
+        private final JDBCResultSet resultSet;
+        private final long executeTime;
+
+        private OpenedPartition(JDBCExecutionContext context, JDBCSession session, JDBCPreparedStatement statement, JDBCResultSet resultSet, long executeTime)
+        {
+            this.context = context;
+            this.session = session;
+            this.statement = statement;
+            this.resultSet = resultSet;
+            this.executeTime = executeTime;
+        }
+    }
+
+    private final XuguTablePhysical table;
+    private final List<? extends XuguPartitionBase<?>> partitions;
+    private final int connectionCount;
+    //空闲的独立连接，容量即并行度
+    private final BlockingQueue<JDBCExecutionContext> idleContexts;
+    private final List<JDBCExecutionContext> openedContexts = new ArrayList<>();
+    //关闭后不再打开新连接，与openedContexts使用同一个锁
+    private boolean closed;
+
+    XuguPartitionReader(@NotNull XuguTablePhysical table, @NotNull List<? extends XuguPartitionBase<?>> partitions, int connectionCount)
+    {
+        this.table = table;
+        this.partitions = partitions;
+        this.connectionCount = Math.max(1, Math.min(connectionCount, partitions.size()));
+        this.idleContexts = new ArrayBlockingQueue<>(this.connectionCount);
+    }
+
+    /**
+     * 读取全部分区并按分区顺序输出
+     */
+    @NotNull
+    DBCStatistics read(@NotNull DBCSession session, @NotNull DBDDataReceiver dataReceiver) throws DBCException
+    {
+        final DBRProgressMonitor monitor = session.getProgressMonitor();
+        //工作线程不共用调用方的监控，只跟随其取消状态
+        final DBRProgressMonitor workerMonitor = new XuguStructureLoader.WorkerMonitor(monitor);
+        DBCStatistics statistics = new DBCStatistics();
+        statistics.setQueryText(partitions.get(0).getPartitionQuery("*") + " ... (" + partitions.size() + " partitions)");
+        long startTime = System.currentTimeMillis();
+
+        ExecutorService executor = Executors.newFixedThreadPool(connectionCount, runnable -> {
+            Thread thread = new Thread(runnable, "Xugu partition reader (" + table.getName() + ")");
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<Future<OpenedPartition>> futures = new ArrayList<>(partitions.size());
+        int next = 0;
+        try {
+            //按分区顺序提交，线程池按提交顺序执行，空闲连接取完后后面的分区等待前面的分区输出完毕
+            for (final XuguPartitionBase<?> partition : partitions) {
+                futures.add(executor.submit(() -> openPartition(workerMonitor, partition)));
+            }
+            long rowCount = 0;
+            //正在输出的分区，最后一个分区在fetchEnd之后才关闭
+            OpenedPartition current = null;
+            //已调用fetchStart时，无论正常结束、取消还是后面的分区出错都要调用fetchEnd
+            JDBCResultSet lastResultSet = null;
+            try {
+                while (next < futures.size() && !monitor.isCanceled()) {
+                    current = getResult(futures.get(next++));
+                    statistics.addExecuteTime(current.executeTime);
+                    if (lastResultSet == null) {
+                        dataReceiver.fetchStart(session, current.resultSet, 0, 0);
+                    }
+                    lastResultSet = current.resultSet;
+                    monitor.subTask("Read partition " + partitions.get(next - 1).getName() + " (" + next + "/" + partitions.size() + ")");
+                    while (current.resultSet.nextRow() && !monitor.isCanceled()) {
+                        dataReceiver.fetchRow(session, current.resultSet);
+                        rowCount++;
+                    }
+                    if (next >= futures.size() || monitor.isCanceled()) {
+                        break;
+                    }
+                    releasePartition(current);
+                    current = null;
+                }
+            } finally {
+                try {
+                    if (lastResultSet != null) {
+                        //中途结束时最后输出的分区可能已关闭，其列信息在fetchStart时已读取
+                        dataReceiver.fetchEnd(session, current != null ? current.resultSet : lastResultSet);
+                    }
+                } finally {
+                    if (current != null) {
+                        releasePartition(current);
+                    }
+                }
+            }
+            statistics.setRowsFetched(rowCount);
+            statistics.addFetchTime(System.currentTimeMillis() - startTime - statistics.getExecuteTime());
+            log.debug("[Xugu] Read " + rowCount + " rows of " + table.getName() + " from " + next + " partitions using " +
+                openedContexts.size() + " connections in " + (System.currentTimeMillis() - startTime) + "ms");
+        } finally {
+            executor.shutdownNow();
+            //关闭已提前打开但未输出的分区，仍在执行的查询随连接一起关闭
+            for (int i = next; i < futures.size(); i++) {
+                Future<OpenedPartition> future = futures.get(i);
+                if (!future.cancel(true)) {
+                    try {
+                        releasePartition(future.get());
+                    } catch (Exception e) {
+                        // 查询失败或被取消，没有需要关闭的资源
+                    }
+                }
+            }
+            closeContexts();
+            dataReceiver.close();
+        }
+        return statistics;
+    }
+
+    private OpenedPartition openPartition(DBRProgressMonitor monitor, XuguPartitionBase<?> partition) throws Exception
+    {
+        JDBCExecutionContext context = takeContext(monitor);
+        JDBCSession session = null;
+        JDBCPreparedStatement dbStat = null;
+        try {
+            session = context.openSession(monitor, DBCExecutionPurpose.USER, "Read partition " + partition.getName());
+            long startTime = System.currentTimeMillis();
+            dbStat = session.prepareStatement(partition.getPartitionQuery("*"));
+            dbStat.setFetchSize(PARTITION_FETCH_SIZE);
+            JDBCResultSet dbResult = dbStat.executeQuery();
+            return new OpenedPartition(context, session, dbStat, dbResult, System.currentTimeMillis() - startTime);
+        } catch (Exception e) {
+            if (dbStat != null) {
+                dbStat.close();
+            }
+            if (session != null) {
+                session.close();
+            }
+            idleContexts.offer(context);
+            throw e;
+        }
+    }
+
+    /**
+     * 取一个空闲连接，连接数未达到上限时打开新的独立连接
+     */
+    private JDBCExecutionContext takeContext(DBRProgressMonitor monitor) throws DBException, InterruptedException
+    {
+        synchronized (openedContexts) {
+            if (closed) {
+                throw new DBCException("Partition reader is closed");
+            }
+            JDBCExecutionContext context = idleContexts.poll();
+            if (context != null) {
+                return context;
+            }
+            if (openedContexts.size() < connectionCount) {
+                context = table.getDataSource().getDefaultInstance().openIsolatedContext(monitor, XuguConstants.CONTEXT_PURPOSE_PARTITION_READER);
+                openedContexts.add(context);
+                return context;
+            }
+        }
+        return idleContexts.take();
+    }
+
+    private void releasePartition(OpenedPartition opened)
+    {
+        opened.resultSet.close();
+        opened.statement.close();
+        opened.session.close();
+        idleContexts.offer(opened.context);
+    }
+
+    private void closeContexts()
+    {
+        synchronized (openedContexts) {
+            closed = true;
+            for (JDBCExecutionContext context : openedContexts) {
+                context.close();
+            }
+            openedContexts.clear();
+            idleContexts.clear();
+        }
+    }
+
+    private OpenedPartition getResult(Future<OpenedPartition> future) throws DBCException
+    {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DBCException("Partition read interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof DBCException) {
+                throw (DBCException) cause;
+            }
+            if (cause instanceof SQLException) {
+                throw new DBCException(cause, table.getDataSource());
+            }
+            throw new DBCException("Partition read failed", cause);
+        }
+    }
+}
@@ -0,0 +1,351 @@
+/*
+ * DBeaver - Universal Database Manager
+ * Copyright (C) 2010-2018 Serge Rider (serge@jkiss.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jkiss.dbeaver.ext.xugu.model;
+
+import org.jkiss.code.NotNull;
+import org.jkiss.dbeaver.Log;
+import org.jkiss.dbeaver.model.exec.jdbc.JDBCExecutionContext;
+import org.jkiss.dbeaver.model.exec.jdbc.JDBCPreparedStatement;
+import org.jkiss.dbeaver.model.exec.jdbc.JDBCSession;
+import org.jkiss.dbeaver.model.impl.jdbc.exec.JDBCPreparedStatementImpl;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 元数据查询注册表
+ * 每类元数据查询使用固定的参数化SQL（按角色标识区分字典视图前缀），
+ * 并在每个元数据连接上复用已准备的语句，避免每次展开导航树都在服务器端重新解析SQL
+ */
+public class XuguQueryRegistry {
+
+    private static final Log log = Log.getLog(XuguQueryRegistry.class);
+
+    //角色前缀占位符，替换为SYS/DBA/ALL
+    private static final String ROLE_PREFIX = "{role}";
+    //按ID列表读取时每条语句的ID个数，不足时重复最后一个ID补齐
+    public static final int ID_LIST_SIZE = 16;
+
+    /**
+     * 约束查询只取模型需要的列
+     */
+    private static final class Columns {
+        static final String ID_LIST = String.join(",", Collections.nCopies(ID_LIST_SIZE, "?"));
+        static final String CONSTRAINT =
+            "C.DB_ID, C.TABLE_ID, C.CONS_NAME, C.CONS_TYPE, C.ENABLE, C.VALID, C.REF_TABLE_ID, C.MATCH_TYPE, C.DEFERRABLE, C.INITDEFERRED, " +
+            "C.DEFINE, C.DEFINE AS COL_NAME, C.UPDATE_ACTION, C.DELETE_ACTION, C.IS_SYS, T.TABLE_NAME";
+        //被引用表可能在其他模式，SCHEMA_NAME取被引用表所在模式；被引用键优先取主键
+        static final String FOREIGN_KEY_QUERY =
+            "SELECT " + CONSTRAINT + ", RT.TABLE_NAME AS REF_TABLE_NAME, RS.SCHEMA_NAME, RC.CONS_NAME AS REF_NAME " +
+            "FROM ALL_CONSTRAINTS C INNER JOIN ALL_TABLES T ON T.TABLE_ID=C.TABLE_ID AND T.DB_ID=C.DB_ID " +
+            "INNER JOIN ALL_TABLES RT ON RT.TABLE_ID=C.REF_TABLE_ID AND RT.DB_ID=C.DB_ID " +
+            "INNER JOIN ALL_SCHEMAS RS ON RS.SCHEMA_ID=RT.SCHEMA_ID AND RS.DB_ID=RT.DB_ID " +
+            "LEFT JOIN ALL_CONSTRAINTS RC ON RC.TABLE_ID=C.REF_TABLE_ID AND RC.DB_ID=C.DB_ID AND RC.CONS_TYPE IN ('P','U') " +
+            "WHERE C.CONS_TYPE='F' AND C.DB_ID=? AND T.SCHEMA_ID=?";
+        //表的最后修改时间取自ALL_OBJECTS，作为估计行数是否过时的参考
+        static final String TABLE_MODIFIED_JOIN = "LEFT JOIN ALL_OBJECTS O ON O.OBJ_ID=T.TABLE_ID AND O.DB_ID=T.DB_ID";
+        static final String TABLE_QUERY =
+            "SELECT T.*, O.LAST_MODI_TIME FROM ALL_TABLES T " + TABLE_MODIFIED_JOIN + " WHERE T.DB_ID=? AND T.SCHEMA_ID=?";
+    }
+
+    /**
+     * 元数据查询类型，SQL中的参数按声明顺序绑定
+     */
+    public enum Query {
+        // 模式级对象一律读取ALL_字典视图
+        TABLES(Columns.TABLE_QUERY),
+        TABLE_BY_ID(Columns.TABLE_QUERY + " AND T.TABLE_ID=?"),
+        TABLES_BY_IDS(Columns.TABLE_QUERY + " AND T.TABLE_ID IN (" + Columns.ID_LIST + ")"),
+        TABLE_BY_NAME(Columns.TABLE_QUERY + " AND T.TABLE_NAME=?"),
+        TABLE_COLUMNS("SELECT COL.*,TAB.TABLE_NAME FROM ALL_COLUMNS COL INNER JOIN ALL_TABLES TAB ON TAB.TABLE_ID=COL.TABLE_ID AND TAB.DB_ID=COL.DB_ID " +
+            "WHERE COL.DB_ID=? AND TAB.SCHEMA_ID=?"),
+        TABLE_COLUMNS_BY_TABLE("SELECT COL.*,TAB.TABLE_NAME FROM ALL_COLUMNS COL INNER JOIN ALL_TABLES TAB ON TAB.TABLE_ID=COL.TABLE_ID AND TAB.DB_ID=COL.DB_ID " +
+            "WHERE COL.DB_ID=? AND TAB.SCHEMA_ID=? AND COL.TABLE_ID=?"),
+        SCHEMA_COLUMNS("SELECT COL.* FROM ALL_COLUMNS COL INNER JOIN ALL_TABLES TAB ON TAB.TABLE_ID=COL.TABLE_ID AND TAB.DB_ID=COL.DB_ID " +
+            "WHERE COL.DB_ID=? AND TAB.SCHEMA_ID=? ORDER BY COL.TABLE_ID, COL.COL_NO"),
+        CONSTRAINTS("SELECT " + Columns.CONSTRAINT + " FROM ALL_CONSTRAINTS C INNER JOIN ALL_TABLES T ON T.TABLE_ID=C.TABLE_ID AND T.DB_ID=C.DB_ID " +
+            "WHERE C.DB_ID=? AND T.SCHEMA_ID=?"),
+        CONSTRAINTS_BY_TABLE("SELECT " + Columns.CONSTRAINT + " FROM ALL_CONSTRAINTS C INNER JOIN ALL_TABLES T ON T.TABLE_ID=C.TABLE_ID AND T.DB_ID=C.DB_ID " +
+            "WHERE C.DB_ID=? AND T.SCHEMA_ID=? AND C.TABLE_ID=?"),
+        FOREIGN_KEYS(Columns.FOREIGN_KEY_QUERY + " ORDER BY C.TABLE_ID, C.CONS_NAME, RC.CONS_TYPE"),
+        FOREIGN_KEYS_BY_TABLE(Columns.FOREIGN_KEY_QUERY + " AND C.TABLE_ID=? ORDER BY C.CONS_NAME, RC.CONS_TYPE"),
+        INDEXES("SELECT IDX.*,TAB.TABLE_NAME FROM ALL_INDEXES IDX LEFT JOIN ALL_TABLES TAB ON IDX.TABLE_ID=TAB.TABLE_ID WHERE IDX.DB_ID=?"),
+        INDEXES_BY_TABLE("SELECT IDX.*,TAB.TABLE_NAME FROM ALL_INDEXES IDX LEFT JOIN ALL_TABLES TAB ON IDX.TABLE_ID=TAB.TABLE_ID WHERE IDX.DB_ID=? AND IDX.TABLE_ID=?"),
+        SEQUENCES("SELECT * FROM ALL_SEQUENCES WHERE DB_ID=? AND SCHEMA_ID=? and is_sys=false"),
+        PROCEDURES("SELECT * FROM ALL_PROCEDURES WHERE DB_ID=? AND SCHEMA_ID=?"),
+        PROCEDURE_BY_ID("SELECT * FROM ALL_PROCEDURES WHERE DB_ID=? AND SCHEMA_ID=? AND PROC_ID=?"),
+        PACKAGES("SELECT * FROM ALL_PACKAGES WHERE DB_ID=? AND SCHEMA_ID=?"),
+        SYNONYMS("select syn.*,sch.schema_name from ALL_SYNONYMS syn left join ALL_SCHEMAS sch on syn.targ_sche_id=sch.schema_id " +
+            "WHERE (SYN.SCHEMA_ID=? OR SYN.SCHEMA_ID=0) AND SYN.DB_ID=?"),
+        TYPES("SELECT t.*,s.schema_name FROM ALL_TYPES t left join ALL_SCHEMAS s on t.schema_id=s.schema_id WHERE t.SCHEMA_ID=? AND t.DB_ID=?"),
+        VIEWS("SELECT * FROM ALL_VIEWS WHERE DB_ID=? AND SCHEMA_ID=?"),
+        VIEW_BY_ID("SELECT * FROM ALL_VIEWS WHERE DB_ID=? AND SCHEMA_ID=? AND VIEW_ID=?"),
+        VIEW_COLUMNS("SELECT COL.*,VW.VIEW_NAME FROM ALL_VIEW_COLUMNS COL LEFT JOIN ALL_VIEWS VW ON VW.VIEW_ID=COL.VIEW_ID " +
+            "WHERE VW.DB_ID=? AND VW.SCHEMA_ID=?"),
+        VIEW_COLUMNS_BY_VIEW("SELECT COL.*,VW.VIEW_NAME FROM ALL_VIEW_COLUMNS COL LEFT JOIN ALL_VIEWS VW ON VW.VIEW_ID=COL.VIEW_ID " +
+            "WHERE VW.DB_ID=? AND VW.SCHEMA_ID=? AND VW.VIEW_ID=?"),
+        JOBS("SELECT * FROM ALL_JOBS WHERE DB_ID=?"),
+        TABLE_MARKERS("SELECT T.TABLE_ID, T.FIELD_NUM, O.LAST_MODI_TIME FROM ALL_TABLES T " +
+            Columns.TABLE_MODIFIED_JOIN + " WHERE T.DB_ID=? AND T.SCHEMA_ID=?"),
+        // 表级对象
+        TABLE_TRIGGERS("SELECT *, tr.OBJ_ID AS TABLE_ID FROM {role}_TRIGGERS tr WHERE SCHEMA_ID=? AND TABLE_ID=? ORDER BY TRIG_NAME"),
+        VIEW_TRIGGERS("SELECT *, tr.OBJ_ID AS VIEW_ID FROM {role}_TRIGGERS tr WHERE SCHEMA_ID=? AND VIEW_ID=? ORDER BY TRIG_NAME"),
+        TRIGGER_COLUMNS("SELECT * FROM {role}_COLUMNS WHERE TABLE_ID=?"),
+        PARTITIONS("SELECT * FROM {role}_PARTIS P INNER JOIN (SELECT PARTI_TYPE, PARTI_KEY, AUTO_PARTI_TYPE, AUTO_PARTI_SPAN, TABLE_ID, TABLE_NAME " +
+            "FROM {role}_TABLES T WHERE TABLE_NAME=? and SCHEMA_ID=?) ON P.TABLE_ID = T.TABLE_ID"),
+        SUBPARTITIONS("SELECT * FROM {role}_SUBPARTIS SP INNER JOIN (SELECT SUBPARTI_TYPE, SUBPARTI_KEY, TABLE_ID, TABLE_NAME " +
+            "FROM {role}_TABLES T WHERE TABLE_NAME=? and SCHEMA_ID=?) ON SP.TABLE_ID = T.TABLE_ID"),
+        // 数据源级对象
+        DATABASE_INDEXES("SELECT IDX.*,TAB.TABLE_NAME FROM ALL_INDEXES IDX INNER JOIN ALL_TABLES TAB ON IDX.TABLE_ID=TAB.TABLE_ID AND IDX.DB_ID=TAB.DB_ID " +
+            "WHERE IDX.DB_ID=? ORDER BY IDX.TABLE_ID"),
+        DATABASE_CONSTRAINTS("SELECT C.*, C.DEFINE AS COL_NAME, TAB.TABLE_NAME FROM ALL_CONSTRAINTS C INNER JOIN ALL_TABLES TAB ON C.TABLE_ID=TAB.TABLE_ID AND C.DB_ID=TAB.DB_ID " +
+            "WHERE C.DB_ID=? ORDER BY C.TABLE_ID"),
+        DATABASE("SELECT * FROM {role}_DATABASES WHERE DB_NAME=?"),
+        ALL_DATABASE_SCHEMAS("select s.schema_id,s.schema_name,u.user_name,s.comments from {role}_SCHEMAS s,{role}_USERS u " +
+            "where s.user_id=u.user_id order by s.schema_id asc"),
+        DATABASE_SCHEMAS("select s.schema_id,s.schema_name,u.user_name,s.comments from {role}_SCHEMAS s,{role}_USERS u " +
+            "where s.user_id=u.user_id and s.db_id=? and u.db_id=? order by s.schema_id asc"),
+        SCHEMAS("select s.schema_id,s.schema_name,u.user_name,s.comments from ALL_SCHEMAS s,ALL_USERS u " +
+            "where s.user_id=u.user_id and s.db_id=? order by s.schema_id asc"),
+        SCHEMA_BY_NAME("select s.schema_id,s.schema_name,u.user_name,s.comments from ALL_SCHEMAS s,ALL_USERS u " +
+            "where s.user_id=u.user_id and s.db_id=? and s.schema_name=? order by s.schema_id asc"),
+        TABLESPACES("SELECT * FROM {role}_TABLESPACES"),
+        USERS("SELECT * FROM {role}_USERS WHERE IS_ROLE=FALSE AND DB_ID=?"),
+        USER_BY_ID("SELECT * FROM {role}_USERS WHERE IS_ROLE=FALSE AND DB_ID=? AND USER_ID=?"),
+        ROLES("SELECT * FROM {role}_USERS WHERE IS_ROLE=true AND DB_ID=?");
+
+        private final String template;
+
+        Query(String template)
+        {
+            this.template = template;
+        }
+
+        public String getSql(String roleFlag)
+        {
+            return template.replace(ROLE_PREFIX, roleFlag == null ? "ALL" : roleFlag);
+        }
+    }
+
+    /**
+     * 连接上已准备好的语句，同一时刻只借给一个调用方
+     */
+    private static class Handle {
+        final PreparedStatement statement;
+        boolean busy;
+
+        Handle(PreparedStatement statement)
+        {
+            this.statement = statement;
+        }
+    }
+
+    /**
+     * 一个执行上下文当前连接上的语句，重连后连接改变，原有语句随之作废
+     */
+    private static class ContextHandles {
+        final Connection connection;
+        final Map<String, Handle> statements = new HashMap<>();
+
+        ContextHandles(Connection connection)
+        {
+            this.connection = connection;
+        }
+    }
+
+    /**
+     * 关闭时归还语句而不是真正关闭
+     */
+    private class PooledStatement extends JDBCPreparedStatementImpl {
+        private final Handle handle;
+
+        PooledStatement(JDBCSession session, Handle handle, String query)
+        {
+            super(session, handle.statement, query, true);
+            this.handle = handle;
+        }
+
+        @Override
+        public void close()
+        {
+            try {
+                handle.statement.clearParameters();
+            } catch (SQLException e) {
+                log.debug("Can't clear metadata statement parameters", e);
+            }
+            release(handle);
+        }
+    }
+
+    private final XuguDataSource dataSource;
+    //按执行上下文弱引用登记，已关闭且不再被引用的上下文连同其语句一起回收
+    private final Map<JDBCExecutionContext, ContextHandles> handles = new WeakHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public XuguQueryRegistry(@NotNull XuguDataSource dataSource)
+    {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * 准备指定类型的元数据查询
+     * 当前连接上已有空闲的同类语句时直接复用（命中），否则新建并登记（未命中）；
+     * 语句正被其他调用方使用时退回为普通语句
+     * @param session 元数据会话
+     * @param query 查询类型
+     * @return 参数待绑定的语句，调用方用完后照常关闭
+     * @throws SQLException
+     */
+    @NotNull
+    public JDBCPreparedStatement prepare(@NotNull JDBCSession session, @NotNull Query query) throws SQLException
+    {
+        String roleFlag = dataSource.getRoleFlag();
+        String sql = query.getSql(roleFlag);
+        JDBCExecutionContext context = session.getExecutionContext();
+        Connection connection = session.getOriginal();
+        String key = roleFlag + ":" + query.name();
+        Handle handle;
+        synchronized (handles) {
+            ContextHandles contextHandles = handles.get(context);
+            if (contextHandles == null || contextHandles.connection != connection) {
+                if (contextHandles != null) {
+                    closeHandles(contextHandles);
+                }
+                purgeClosedConnections();
+                contextHandles = new ContextHandles(connection);
+                handles.put(context, contextHandles);
+            }
+            handle = contextHandles.statements.get(key);
+            if (handle != null) {
+                if (handle.busy) {
+                    misses.incrementAndGet();
+                    return session.prepareStatement(sql);
+                }
+                handle.busy = true;
+                hits.incrementAndGet();
+                return new PooledStatement(session, handle, sql);
+            }
+        }
+        misses.incrementAndGet();
+        log.debug("[Xugu] Prepare metadata query " + key + ": " + sql);
+        handle = new Handle(connection.prepareStatement(sql));
+        handle.busy = true;
+        synchronized (handles) {
+            ContextHandles contextHandles = handles.get(context);
+            if (contextHandles != null && contextHandles.connection == connection && !contextHandles.statements.containsKey(key)) {
+                contextHandles.statements.put(key, handle);
+                return new PooledStatement(session, handle, sql);
+            }
+        }
+        //并发时另一线程已登记同类语句，本次使用普通语句
+        handle.statement.close();
+        return session.prepareStatement(sql);
+    }
+
+    public long getHits()
+    {
+        return hits.get();
+    }
+
+    public long getMisses()
+    {
+        return misses.get();
+    }
+
+    /**
+     * 关闭执行上下文上已准备的语句，上下文重新连接时调用
+     * @param context 执行上下文
+     */
+    public void releaseContext(@NotNull JDBCExecutionContext context)
+    {
+        synchronized (handles) {
+            ContextHandles contextHandles = handles.remove(context);
+            if (contextHandles != null) {
+                closeHandles(contextHandles);
+            }
+        }
+    }
+
+    /**
+     * 关闭全部已准备的语句，数据源断开时调用
+     */
+    public void close()
+    {
+        synchronized (handles) {
+            for (ContextHandles contextHandles : handles.values()) {
+                closeHandles(contextHandles);
+            }
+            handles.clear();
+        }
+        log.debug("[Xugu] Metadata query registry closed: " + hits.get() + " hits, " + misses.get() + " misses");
+    }
+
+    private void release(Handle handle)
+    {
+        synchronized (handles) {
+            handle.busy = false;
+        }
+    }
+
+    private void purgeClosedConnections()
+    {
+        for (Iterator<ContextHandles> iter = handles.values().iterator(); iter.hasNext(); ) {
+            ContextHandles contextHandles = iter.next();
+            boolean closed;
+            try {
+                closed = contextHandles.connection.isClosed();
+            } catch (SQLException e) {
+                closed = true;
+            }
+            if (closed) {
+                closeHandles(contextHandles);
+                iter.remove();
+            }
+        }
+    }
+
+    private static void closeHandles(ContextHandles contextHandles)
+    {
+        for (Handle handle : contextHandles.statements.values()) {
+            closeHandle(handle);
+        }
+        contextHandles.statements.clear();
+    }
+
+    private static void closeHandle(Handle handle)
+    {
+        try {
+            handle.statement.close();
+        } catch (SQLException e) {
+            log.debug("Can't close metadata statement", e);
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Xugu metadata queries [hits=" + hits.get() + ", misses=" + misses.get() + "]";
+    }
+}
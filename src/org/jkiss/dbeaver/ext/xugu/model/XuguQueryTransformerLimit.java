@@ -0,0 +1,73 @@
+/*
+ * DBeaver - Universal Database Manager
+ * Copyright (C) 2010-2018 Serge Rider (serge@jkiss.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jkiss.dbeaver.ext.xugu.model;
+
+import org.jkiss.dbeaver.model.exec.DBCException;
+import org.jkiss.dbeaver.model.exec.DBCQueryTransformer;
+import org.jkiss.dbeaver.model.exec.DBCStatement;
+import org.jkiss.dbeaver.model.sql.SQLQuery;
+
+/**
+ * 结果集分页转换
+ * 普通SELECT语句追加LIMIT/OFFSET，由服务端只返回当前页；
+ * 无法安全改写的语句（UNION、已有LIMIT、FOR UPDATE、SELECT INTO或无法解析的语句）保持原样，由语句按最大行数在客户端截取
+ */
+public class XuguQueryTransformerLimit implements DBCQueryTransformer {
+
+    private Number offset;
+    private Number length;
+    private boolean limitSet;
+
+    @Override
+    public void setParameters(Object... parameters)
+    {
+        this.offset = (Number) parameters[0];
+        this.length = (Number) parameters[1];
+    }
+
+    @Override
+    public String transformQueryString(SQLQuery query) throws DBCException
+    {
+        String queryText = query.getText();
+        limitSet = false;
+        if (length == null || length.longValue() <= 0 || !query.isPlainSelect()) {
+            return queryText;
+        }
+        long offsetValue = offset == null ? 0 : offset.longValue();
+        int end = queryText.length();
+        while (end > 0 && Character.isWhitespace(queryText.charAt(end - 1))) {
+            end--;
+        }
+        StringBuilder newQuery = new StringBuilder(end + 40);
+        newQuery.append(queryText, 0, end);
+        //换行追加，避免语句末尾的单行注释吞掉LIMIT
+        newQuery.append("\nLIMIT ").append(length.longValue());
+        if (offsetValue > 0) {
+            newQuery.append(" OFFSET ").append(offsetValue);
+        }
+        limitSet = true;
+        return newQuery.toString();
+    }
+
+    @Override
+    public void transformStatement(DBCStatement statement, int parameterIndex) throws DBCException
+    {
+        if (!limitSet && length != null) {
+            statement.setLimit(offset == null ? 0 : offset.longValue(), length.longValue());
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * DBeaver - Universal Database Manager
+ * Copyright (C) 2010-2018 Serge Rider (serge@jkiss.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jkiss.dbeaver.ext.xugu.model;
+
+import org.jkiss.code.NotNull;
+import org.jkiss.code.Nullable;
+import org.jkiss.dbeaver.DBException;
+import org.jkiss.dbeaver.Log;
+import org.jkiss.dbeaver.ext.xugu.XuguConstants;
+import org.jkiss.dbeaver.ext.xugu.XuguUtils;
+import org.jkiss.dbeaver.model.DBUtils;
+import org.jkiss.dbeaver.model.exec.DBCException;
+import org.jkiss.dbeaver.model.exec.DBCExecutionPurpose;
+import org.jkiss.dbeaver.model.exec.jdbc.JDBCExecutionContext;
+import org.jkiss.dbeaver.model.exec.jdbc.JDBCSession;
+import org.jkiss.dbeaver.model.runtime.DBRProgressMonitor;
+import org.jkiss.dbeaver.model.struct.DBSObject;
+
+import java.io.EOFException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 断线重连管理
+ * 根据错误判断连接是否已断开，按带随机抖动的指数退避重新连接，重连后恢复记录的当前模式，
+ * 并重试幂等的元数据读取。自动提交和事务隔离级别由执行上下文在重连时自行恢复；
+ * 用户在SQL编辑器中执行的USE、set procedure_language等语句不经过数据源，重连后不恢复
+ */
+public class XuguReconnectManager {
+
+    private static final Log log = Log.getLog(XuguReconnectManager.class);
+
+    /**
+     * 会话上设置过的状态
+     */
+    private static final class SessionState {
+        private String schema;
+    }
+
+    private final XuguDataSource dataSource;
+    private final Map<JDBCExecutionContext, SessionState> sessionStates = new WeakHashMap<>();
+
+    XuguReconnectManager(@NotNull XuguDataSource dataSource)
+    {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * 判断错误是否由连接断开引起（SQLState 08类、连接类异常或底层网络异常）
+     */
+    public boolean isConnectionError(@Nullable Throwable error)
+    {
+        for (Throwable e = error; e != null; e = e.getCause() == e ? null : e.getCause()) {
+            if (e instanceof SQLRecoverableException ||
+                e instanceof SQLNonTransientConnectionException ||
+                e instanceof SQLTransientConnectionException ||
+                e instanceof SocketException ||
+                e instanceof SocketTimeoutException ||
+                e instanceof EOFException)
+            {
+                return true;
+            }
+            if (e instanceof SQLException) {
+                String sqlState = ((SQLException) e).getSQLState();
+                if (sqlState != null && sqlState.startsWith(XuguConstants.SQL_STATE_CONNECTION_EXCEPTION)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 第attempt次重试前的等待时间：指数增长并封顶，在[delay/2, delay]内随机取值，避免多个连接同时重连
+     */
+    public static long getBackoffDelay(int attempt)
+    {
+        long delay = Math.min(XuguConstants.RECONNECT_MAX_DELAY, XuguConstants.RECONNECT_BASE_DELAY << Math.min(attempt, 16));
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    /**
+     * 等待退避时间，期间响应取消
+     * @return 被取消或中断时返回false
+     */
+    public static boolean sleepBackoff(@NotNull DBRProgressMonitor monitor, int attempt)
+    {
+        long endTime = System.currentTimeMillis() + getBackoffDelay(attempt);
+        try {
+            long remaining;
+            while ((remaining = endTime - System.currentTimeMillis()) > 0) {
+                if (monitor.isCanceled()) {
+                    return false;
+                }
+                Thread.sleep(Math.min(remaining, 100));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return !monitor.isCanceled();
+    }
+
+    /**
+     * 在元数据会话上执行幂等的读取，连接断开时重连后重试
+     * @param monitor 监控
+     * @param object 用于打开会话的对象
+     * @param task 任务名
+     * @param reader 读取任务，重试时会再次执行，因此不能有副作用
+     * @throws DBException
+     */
+    public void runMetaRead(@NotNull DBRProgressMonitor monitor, @NotNull DBSObject object, @NotNull String task, @NotNull XuguStructureLoader.LoadTask reader)
+        throws DBException
+    {
+        for (int attempt = 0; ; attempt++) {
+            JDBCExecutionContext context = null;
+            try (JDBCSession session = DBUtils.openMetaSession(monitor, object, task)) {
+                context = session.getExecutionContext();
+                reader.load(session);
+                return;
+            } catch (SQLException | DBException e) {
+                if (context == null || attempt >= XuguConstants.RECONNECT_MAX_READ_RETRIES || !isConnectionError(e) || !sleepBackoff(monitor, attempt)) {
+                    throw e instanceof DBException ? (DBException) e : new DBException(e, dataSource);
+                }
+                log.debug("Connection lost during '" + task + "', reconnecting (attempt " + (attempt + 1) + ")");
+                context.invalidateContext(monitor, true);
+            }
+        }
+    }
+
+    private SessionState getState(JDBCExecutionContext context)
+    {
+        SessionState state = sessionStates.get(context);
+        if (state == null) {
+            state = new SessionState();
+            sessionStates.put(context, state);
+        }
+        return state;
+    }
+
+    public synchronized void recordSchema(@NotNull JDBCExecutionContext context, @NotNull String schema)
+    {
+        getState(context).schema = schema;
+    }
+
+    /**
+     * 在重新打开的连接上恢复记录的会话状态，首次连接时没有记录，不执行任何语句
+     */
+    public void replay(@NotNull DBRProgressMonitor monitor, @NotNull JDBCExecutionContext context) throws DBCException
+    {
+        String schema;
+        synchronized (this) {
+            SessionState state = sessionStates.get(context);
+            if (state == null) {
+                return;
+            }
+            schema = state.schema;
+        }
+        if (schema == null) {
+            return;
+        }
+        try (JDBCSession session = context.openSession(monitor, DBCExecutionPurpose.UTIL, "Restore session state")) {
+            XuguUtils.setCurrentSchema(session, schema);
+            log.debug("[Xugu] Restored session state of '" + context.getContextName() + "'");
+        } catch (SQLException e) {
+            throw new DBCException(e, dataSource);
+        }
+    }
+}
@@ -20,6 +20,7 @@ import org.jkiss.code.NotNull;
 import org.jkiss.code.Nullable;
 import org.jkiss.dbeaver.DBException;
 import org.jkiss.dbeaver.Log;
+import org.jkiss.dbeaver.model.DBConstants;
 import org.jkiss.dbeaver.model.DBPRefreshableObject;
 import org.jkiss.dbeaver.model.DBPSystemObject;
 import org.jkiss.dbeaver.model.DBUtils;
@@ -39,6 +40,7 @@ import org.jkiss.dbeaver.model.struct.DBSDataType;
 import org.jkiss.dbeaver.model.struct.DBSEntity;
 import org.jkiss.dbeaver.model.struct.DBSEntityConstraintType;
 import org.jkiss.dbeaver.model.struct.DBSObject;
+import org.jkiss.dbeaver.model.struct.DBSObjectFilter;
 import org.jkiss.dbeaver.model.struct.rdb.DBSProcedureContainer;
 import org.jkiss.dbeaver.model.struct.rdb.DBSSchema;
 import org.jkiss.utils.ArrayUtils;
@@ -47,6 +49,7 @@ import org.jkiss.dbeaver.ext.xugu.XuguConstants;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.util.*;
 
 /**
@@ -69,6 +72,9 @@ public class XuguSchema extends XuguGlobalObject implements DBSSchema, DBPRefres
     final public ProceduresCache proceduresCache = new ProceduresCache();
     final public SchedulerJobCache schedulerJobCache = new SchedulerJobCache();
 
+    //增量刷新时单次最多重新读取的表数
+    private static final int MAX_INCREMENTAL_TABLES = 500;
+
     private long id;
     private String name;
     private String owner;
@@ -76,6 +82,8 @@ public class XuguSchema extends XuguGlobalObject implements DBSSchema, DBPRefres
     private String roleFlag;
     private XuguDatabase parent;
 	private transient XuguUser user;
+    //上次刷新时各表的修改标记（TABLE_ID -> 标记），用于增量刷新
+    private volatile Map<Integer, Long> tableMarkers;
 
     /**
      * 通过指定模式ID和模式名称构造一个新的模式对象
@@ -177,16 +185,22 @@ public class XuguSchema extends XuguGlobalObject implements DBSSchema, DBPRefres
 
     public int getDBID(XuguSchema schema, JDBCSession session) {
     	try {
-	    	String dbName = schema.getDataSource().connection.getCatalog();
-	        int dbID = schema.getDataSource().databaseCache.getObject(session.getProgressMonitor(), schema.getDataSource(), dbName).getId();
-            return dbID;
-        } catch (DBException | SQLException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+    		//库ID按执行上下文缓存，不再每次查询
+            return schema.getDataSource().getCatalogContext(session).getDbId();
+        } catch (DBException e) {
+			log.debug("Can't resolve database id of schema '" + schema.getName() + "'", e);
 			return -1;
 		}
     }
 
+    /**
+     * 从数据源的元数据查询注册表准备语句
+     */
+    JDBCPreparedStatement prepareQuery(@NotNull JDBCSession session, @NotNull XuguQueryRegistry.Query query) throws SQLException
+    {
+        return getDataSource().getQueryRegistry().prepare(session, query);
+    }
+
     public XuguDatabase getParent() {
 		return parent;
 	}
@@ -479,38 +493,58 @@ public class XuguSchema extends XuguGlobalObject implements DBSSchema, DBPRefres
         return DBSEntity.class;
     }
 
+    /**
+     * 缓存模式结构
+     * 相互独立的缓存（表及列、视图及列、自定义类型、序列、包、同义词、作业）在多个元数据连接上并行加载，
+     * 依赖列信息的索引和约束在并行部分结束后依次加载
+     */
     @Override
     public synchronized void cacheStructure(@NotNull DBRProgressMonitor monitor, int scope)
         throws DBException
     {
-        monitor.subTask("Cache tables");
-        tableCache.getAllObjects(monitor, this);
-        monitor.subTask("Cache views");
-        viewCache.getAllObjects(monitor, this);
-        monitor.subTask("Cache udts");
-        udtCache.getAllObjects(monitor, this);
-        if ((scope & STRUCT_ATTRIBUTES) != 0) {
-            monitor.subTask("Cache table columns");
-            tableCache.loadChildren(monitor, this, null);
-            monitor.subTask("Cache view columns");
-            viewCache.loadChildren(monitor, this, null);
-        }
-        if ((scope & STRUCT_ASSOCIATIONS) != 0) {
+        final boolean loadAttributes = (scope & STRUCT_ATTRIBUTES) != 0;
+        final boolean loadAssociations = (scope & STRUCT_ASSOCIATIONS) != 0;
+        XuguStructureLoader loader = new XuguStructureLoader(getDataSource(), XuguConstants.STRUCTURE_LOADER_CONNECTIONS);
+        loader.addTask("Cache tables", session -> {
+            if (!tableCache.isFullyCached()) {
+                tableCache.readObjects(session, this);
+            }
+            if (loadAttributes) {
+                tableCache.loadSchemaColumns(session, this);
+            }
+        });
+        loader.addTask("Cache views", session -> {
+            if (!viewCache.isFullyCached()) {
+                viewCache.readObjects(session, this);
+            }
+            if (loadAttributes) {
+                viewCache.readColumns(session, this);
+            }
+        });
+        if (!udtCache.isFullyCached()) {
+            loader.addTask("Cache udts", session -> udtCache.readObjects(session, this));
+        }
+        if (loadAssociations) {
+            if (!sequenceCache.isFullyCached()) {
+                loader.addTask("Cache sequences", session -> sequenceCache.readObjects(session, this));
+            }
+            if (!packageCache.isFullyCached()) {
+                loader.addTask("Cache packages", session -> packageCache.readObjects(session, this));
+            }
+            if (!synonymCache.isFullyCached()) {
+                loader.addTask("Cache synonyms", session -> synonymCache.readObjects(session, this));
+            }
+            if (!schedulerJobCache.isFullyCached()) {
+                loader.addTask("Cache job", session -> schedulerJobCache.readObjects(session, this));
+            }
+        }
+        loader.run(monitor);
+        if (loadAssociations && !monitor.isCanceled()) {
             monitor.subTask("Cache table indexes");
             indexCache.getObjects(monitor, this, null);
             monitor.subTask("Cache table constraints");
             constraintCache.getObjects(monitor, this, null);
             foreignKeyCache.getObjects(monitor, this, null);
-            monitor.subTask("Cache indexes");
-            indexCache.getAllObjects(monitor, this);
-            monitor.subTask("Cache sequences");
-            sequenceCache.getAllObjects(monitor, this);
-            monitor.subTask("Cache packages");
-            packageCache.getAllObjects(monitor, this);
-            monitor.subTask("Cache synonyms");
-            synonymCache.getAllObjects(monitor, this);
-            monitor.subTask("Cache job");
-            schedulerJobCache.getAllObjects(monitor, this);
         }
     }
 
@@ -518,11 +552,14 @@ public class XuguSchema extends XuguGlobalObject implements DBSSchema, DBPRefres
     public synchronized DBSObject refreshObject(@NotNull DBRProgressMonitor monitor)
         throws DBException
     {
-        tableCache.clearCache();
+        boolean incremental = refreshTables(monitor);
+        if (!incremental) {
+            tableCache.clearCache();
+            constraintCache.clearCache();
+            indexCache.clearCache();
+            foreignKeyCache.clearCache();
+        }
         viewCache.clearCache();
-        foreignKeyCache.clearCache();
-        constraintCache.clearCache();
-        indexCache.clearCache();
         packageCache.clearCache();
         proceduresCache.clearCache();
         //triggerCache.clearCache();
@@ -531,9 +568,158 @@ public class XuguSchema extends XuguGlobalObject implements DBSSchema, DBPRefres
         synonymCache.clearCache();
         udtCache.clearCache();
         schedulerJobCache.clearCache();
+        if (incremental && refreshProperties(monitor)) {
+            //保留当前模式对象，已修补的表缓存随之保留
+            return this;
+        }
         return this.getDataSource().schemaCache.refreshObject(monitor, this.getDataSource(), this);
     }
 
+    /**
+     * 增量刷新表缓存
+     * 对比字典中表的ID和修改标记，只重新读取新增或变化的表并移除已删除的表，
+     * 未变化的表对象及其已加载的列、索引、约束、外键、触发器保持不变
+     * @param monitor 监控
+     * @return 是否完成了增量刷新，返回false时需要整体清空表相关缓存
+     */
+    private boolean refreshTables(DBRProgressMonitor monitor)
+    {
+        long startTime = System.currentTimeMillis();
+        try (JDBCSession session = DBUtils.openMetaSession(monitor, this, "Refresh schema tables")) {
+            Map<Integer, Long> markers = readTableMarkers(session);
+            Map<Integer, Long> oldMarkers = this.tableMarkers;
+            this.tableMarkers = markers;
+            if (oldMarkers == null || !tableCache.isFullyCached()) {
+                return false;
+            }
+            Map<Integer, XuguTableBase> cachedTables = new HashMap<>();
+            for (XuguTableBase table : tableCache.getCachedObjects()) {
+                cachedTables.put(table.getId(), table);
+            }
+            Set<Integer> reloadIds = new HashSet<>();
+            for (Map.Entry<Integer, Long> marker : markers.entrySet()) {
+                if (!cachedTables.containsKey(marker.getKey()) || !marker.getValue().equals(oldMarkers.get(marker.getKey()))) {
+                    reloadIds.add(marker.getKey());
+                }
+            }
+            List<XuguTableBase> removedTables = new ArrayList<>();
+            int droppedCount = 0;
+            for (XuguTableBase table : cachedTables.values()) {
+                if (!markers.containsKey(table.getId())) {
+                    removedTables.add(table);
+                    droppedCount++;
+                } else if (reloadIds.contains(table.getId())) {
+                    removedTables.add(table);
+                }
+            }
+            if (reloadIds.isEmpty() && removedTables.isEmpty()) {
+                log.debug("[Xugu] Tables of schema '" + name + "' are up to date (" + (System.currentTimeMillis() - startTime) + "ms)");
+                return true;
+            }
+            if (reloadIds.size() > MAX_INCREMENTAL_TABLES) {
+                //变化太多时整体重新加载更快
+                return false;
+            }
+            List<XuguTableBase> loadedTables = tableCache.readTables(session, this, reloadIds);
+            tableCache.patchTables(removedTables, loadedTables);
+            //索引、约束、外键只移除变化和删除的表的条目（无论是否已整体缓存），这些表下次访问时按表重新读取；
+            //引用了这些表的外键指向旧的约束对象，其所在表的外键一并移除
+            Set<XuguTableBase> removedSet = Collections.newSetFromMap(new IdentityHashMap<XuguTableBase, Boolean>());
+            removedSet.addAll(removedTables);
+            Set<XuguTable> staleFkTables = Collections.newSetFromMap(new IdentityHashMap<XuguTable, Boolean>());
+            for (XuguTableForeignKey foreignKey : foreignKeyCache.getCachedObjects()) {
+                if (removedSet.contains(foreignKey.getReferencedTable()) && foreignKey.getTable() instanceof XuguTable) {
+                    staleFkTables.add((XuguTable) foreignKey.getTable());
+                }
+            }
+            for (XuguTableBase table : removedTables) {
+                constraintCache.clearObjectCache(table);
+                if (table instanceof XuguTablePhysical) {
+                    indexCache.clearObjectCache((XuguTablePhysical) table);
+                }
+                if (table instanceof XuguTable) {
+                    staleFkTables.add((XuguTable) table);
+                }
+            }
+            for (XuguTable table : staleFkTables) {
+                foreignKeyCache.clearObjectCache(table);
+            }
+            //已整体缓存时按模式列出的结果只取缓存内容，需立即补读新读取的表，保持列表完整
+            for (XuguTableBase table : loadedTables) {
+                if (constraintCache.isFullyCached()) {
+                    constraintCache.getObjects(monitor, this, table);
+                }
+                if (indexCache.isFullyCached() && table instanceof XuguTablePhysical) {
+                    indexCache.getObjects(monitor, this, (XuguTablePhysical) table);
+                }
+            }
+            if (foreignKeyCache.isFullyCached()) {
+                for (XuguTable table : staleFkTables) {
+                    if (!removedSet.contains(table)) {
+                        foreignKeyCache.getObjects(monitor, this, table);
+                    }
+                }
+                for (XuguTableBase table : loadedTables) {
+                    if (table instanceof XuguTable) {
+                        foreignKeyCache.getObjects(monitor, this, (XuguTable) table);
+                    }
+                }
+            }
+            log.debug("[Xugu] Tables of schema '" + name + "' refreshed incrementally: " + loadedTables.size() + " reloaded, "
+                + droppedCount + " dropped in " + (System.currentTimeMillis() - startTime) + "ms");
+            return true;
+        } catch (SQLException | DBException e) {
+            log.debug("Incremental refresh of schema '" + name + "' failed, reload all tables", e);
+            this.tableMarkers = null;
+            return false;
+        }
+    }
+
+    /**
+     * 读取本模式各表的修改标记（修改时间与字段数）
+     */
+    private Map<Integer, Long> readTableMarkers(JDBCSession session) throws SQLException
+    {
+        Map<Integer, Long> markers = new HashMap<>();
+        try (JDBCPreparedStatement dbStat = prepareQuery(session, XuguQueryRegistry.Query.TABLE_MARKERS)) {
+            dbStat.setInt(1, getDBID(this, session));
+            dbStat.setLong(2, id);
+            dbStat.setFetchSize(DBConstants.METADATA_FETCH_SIZE);
+            try (JDBCResultSet dbResult = dbStat.executeQuery()) {
+                while (dbResult.next()) {
+                    Timestamp modified = JDBCUtils.safeGetTimestamp(dbResult, "LAST_MODI_TIME");
+                    long marker = (modified == null ? 0L : modified.getTime()) * 31 + JDBCUtils.safeGetInt(dbResult, "FIELD_NUM");
+                    markers.put(JDBCUtils.safeGetInt(dbResult, "TABLE_ID"), marker);
+                }
+            }
+        }
+        return markers;
+    }
+
+    /**
+     * 就地刷新模式自身的属性（所有者、注释）
+     * @return 模式仍然存在时返回true
+     */
+    private boolean refreshProperties(DBRProgressMonitor monitor)
+    {
+        try (JDBCSession session = DBUtils.openMetaSession(monitor, this, "Refresh schema properties")) {
+            try (JDBCStatement dbStat = getDataSource().schemaCache.prepareLookupStatement(session, getDataSource(), this, null)) {
+                dbStat.executeStatement();
+                try (JDBCResultSet dbResult = dbStat.getResultSet()) {
+                    if (dbResult == null || !dbResult.next()) {
+                        return false;
+                    }
+                    this.owner = JDBCUtils.safeGetString(dbResult, "USER_NAME");
+                    this.comment = JDBCUtils.safeGetString(dbResult, "COMMENTS");
+                    return true;
+                }
+            }
+        } catch (SQLException e) {
+            log.debug("Can't refresh schema '" + name + "' properties", e);
+            return false;
+        }
+    }
+
     @Override
     public boolean isSystem()
     {
@@ -546,6 +732,63 @@ public class XuguSchema extends XuguGlobalObject implements DBSSchema, DBPRefres
         return "Schema " + name;
     }
 
+    /**
+     * 读取结果行并转换为对象
+     */
+    interface ObjectFetcher<T> {
+        T fetchObject(JDBCResultSet dbResult) throws SQLException, DBException;
+    }
+
+    /**
+     * 在指定会话上执行元数据查询并读取全部对象（供并行加载使用）
+     */
+    private static <T> List<T> readObjects(JDBCStatement statement, ObjectFetcher<T> fetcher) throws SQLException, DBException
+    {
+        List<T> objects = new ArrayList<>();
+        try (JDBCStatement dbStat = statement) {
+            dbStat.setFetchSize(DBConstants.METADATA_FETCH_SIZE);
+            dbStat.executeStatement();
+            try (JDBCResultSet dbResult = dbStat.getResultSet()) {
+                if (dbResult != null) {
+                    while (dbResult.next()) {
+                        T object = fetcher.fetchObject(dbResult);
+                        if (object != null) {
+                            objects.add(object);
+                        }
+                    }
+                }
+            }
+        }
+        return objects;
+    }
+
+    /**
+     * 在新打开的元数据会话上执行读取任务
+     */
+    private static void readInSession(DBRProgressMonitor monitor, XuguSchema owner, String task, XuguStructureLoader.LoadTask reader)
+        throws DBException
+    {
+        //读取是幂等的，连接断开时重连后重试
+        owner.getDataSource().getReconnectManager().runMetaRead(monitor, owner, task, reader);
+    }
+
+    /**
+     * 导航器按名称分页读取时每页的行数，0表示不分页
+     */
+    int getNavigatorPageSize()
+    {
+        return getDataSource().getContainer().getPreferenceStore().getInt(XuguConstants.PREF_NAVIGATOR_PAGE_SIZE);
+    }
+
+    /**
+     * 连接上为本模式指定类型对象配置的名称过滤
+     */
+    @Nullable
+    DBSObjectFilter getNameFilter(Class<?> type)
+    {
+        return getDataSource().getContainer().getObjectFilter(type, this, false);
+    }
+
     private static XuguTableColumn getTableColumn(JDBCSession session, XuguTableBase parent, ResultSet dbResult) throws DBException
     {
         String columnName = JDBCUtils.safeGetStringTrimmed(dbResult, "COL_NAME");
@@ -573,6 +816,8 @@ public class XuguSchema extends XuguGlobalObject implements DBSSchema, DBPRefres
      */
     public static class TableCache extends JDBCStructLookupCache<XuguSchema, XuguTableBase, XuguTableColumn> {
 
+        private volatile boolean schemaColumnsCached;
+
         TableCache()
         {
             super("TABLE_NAME");
@@ -583,26 +828,19 @@ public class XuguSchema extends XuguGlobalObject implements DBSSchema, DBPRefres
         @Override
         public JDBCStatement prepareLookupStatement(@NotNull JDBCSession session, @NotNull XuguSchema owner, @Nullable XuguTableBase object, @Nullable String objectName) throws SQLException {
         	//xfc 根据schema name 查询所有表信息
-        	StringBuilder sql = new StringBuilder();
-        	sql.append("SELECT * FROM ");
-//			sql.append(owner.roleFlag);
-        	sql.append("all");
-			sql.append("_TABLES WHERE DB_ID=");
-			sql.append(owner.getDBID(owner, session));
-			sql.append(" AND SCHEMA_ID=");
-			sql.append(owner.id);
         	//当有检索条件时 只查询指定表 用于新建表之后的刷新工作
-        	if(object!=null) {
-        		sql.append(" AND TABLE_ID = ");
-        		sql.append(object.getId());
-        	}else if(objectName!=null) {
-        		sql.append(" AND TABLE_NAME ='");
-        		sql.append(objectName);
-        		sql.append("'");
+        	JDBCPreparedStatement dbStat;
+        	if (object != null) {
+        		dbStat = owner.prepareQuery(session, XuguQueryRegistry.Query.TABLE_BY_ID);
+        		dbStat.setInt(3, object.getId());
+        	} else if (objectName != null) {
+        		dbStat = owner.prepareQuery(session, XuguQueryRegistry.Query.TABLE_BY_NAME);
+        		dbStat.setString(3, objectName);
+        	} else {
+        		dbStat = owner.prepareQuery(session, XuguQueryRegistry.Query.TABLES);
         	}
-        	
-        	log.debug("Xugu table metadata: "+sql.toString());
-        	JDBCPreparedStatement dbStat = session.prepareStatement(sql.toString());
+        	dbStat.setInt(1, owner.getDBID(owner, session));
+        	dbStat.setLong(2, owner.id);
             return dbStat;
         }
 
@@ -625,29 +863,226 @@ public class XuguSchema extends XuguGlobalObject implements DBSSchema, DBPRefres
             throws SQLException
         {
         	//xfc 修改了获取列信息的sql
-            StringBuilder sql = new StringBuilder(500);
-            sql.append("SELECT COL.*,TAB.TABLE_NAME FROM ");
-//        	sql.append(owner.roleFlag);
-        	sql.append("all");
-        	sql.append("_COLUMNS COL");
-        	sql.append(" LEFT JOIN ");
-//        	sql.append(owner.roleFlag);
-        	sql.append("all");
-        	sql.append("_TABLES TAB ON TAB.TABLE_ID=COL.TABLE_ID");
-        	sql.append(" WHERE COL.DB_ID=");
-        	sql.append(owner.getDBID(owner, session));
+        	//未指定表时只取本模式的列，避免扫描整个库
+            JDBCPreparedStatement dbStat = owner.prepareQuery(session,
+                forTable == null ? XuguQueryRegistry.Query.TABLE_COLUMNS : XuguQueryRegistry.Query.TABLE_COLUMNS_BY_TABLE);
+            dbStat.setInt(1, owner.getDBID(owner, session));
+            dbStat.setLong(2, owner.id);
             if (forTable != null) {
-                sql.append(" AND COL.TABLE_ID=");
-                sql.append(forTable.getId());
-                sql.append(" AND COL.DB_ID=");
-                sql.append(owner.getDBID(owner, session));
-            }
-            
-            log.debug("[Xugu] Construct select table columns sql: "+sql.toString());
-            JDBCPreparedStatement dbStat = session.prepareStatement(sql.toString());
+                dbStat.setInt(3, forTable.getId());
+            }
             return dbStat;
         }
 
+        @Override
+        public synchronized void loadChildren(@NotNull DBRProgressMonitor monitor, @NotNull XuguSchema owner, @Nullable XuguTableBase forObject)
+            throws DBException
+        {
+            if (forObject != null) {
+                super.loadChildren(monitor, owner, forObject);
+                return;
+            }
+            if (schemaColumnsCached || monitor.isCanceled()) {
+                return;
+            }
+            loadSchemaColumns(monitor, owner);
+        }
+
+        /**
+         * 批量加载整个模式的列信息
+         * 服务端按SCHEMA_ID过滤，结果按TABLE_ID有序返回，逐行直接放入当前表的列表中，
+         * 只在TABLE_ID变化时才定位一次所属表
+         * @param monitor 监控
+         * @param owner 模式
+         * @return 本次读取的列记录数
+         * @throws DBException
+         */
+        public synchronized int loadSchemaColumns(@NotNull DBRProgressMonitor monitor, @NotNull XuguSchema owner)
+            throws DBException
+        {
+            try (JDBCSession session = DBUtils.openMetaSession(monitor, owner, "Load schema columns")) {
+                return loadSchemaColumns(session, owner);
+            } catch (SQLException ex) {
+                throw new DBException(ex, owner.getDataSource());
+            }
+        }
+
+        /**
+         * 在指定会话上批量加载整个模式的列信息
+         */
+        public synchronized int loadSchemaColumns(@NotNull JDBCSession session, @NotNull XuguSchema owner)
+            throws SQLException, DBException
+        {
+            if (schemaColumnsCached) {
+                return 0;
+            }
+            DBRProgressMonitor monitor = session.getProgressMonitor();
+            Collection<XuguTableBase> tables = getAllObjects(monitor, owner);
+            Map<Integer, XuguTableBase> tableMap = new HashMap<>(tables.size() * 2);
+            for (XuguTableBase table : tables) {
+                tableMap.put(table.getId(), table);
+            }
+            long startTime = System.currentTimeMillis();
+            int rowCount = 0;
+            try (JDBCPreparedStatement dbStat = owner.prepareQuery(session, XuguQueryRegistry.Query.SCHEMA_COLUMNS)) {
+                dbStat.setInt(1, owner.getDBID(owner, session));
+                dbStat.setLong(2, owner.id);
+                dbStat.setFetchSize(DBConstants.METADATA_FETCH_SIZE);
+                try (JDBCResultSet dbResult = dbStat.executeQuery()) {
+                    int curTableId = Integer.MIN_VALUE;
+                    XuguTableBase curTable = null;
+                    List<XuguTableColumn> curColumns = null;
+                    while (dbResult.next()) {
+                        if (monitor.isCanceled()) {
+                            //被取消时丢弃未读完的表
+                            return rowCount;
+                        }
+                        rowCount++;
+                        int tableId = JDBCUtils.safeGetInt(dbResult, "TABLE_ID");
+                        if (tableId != curTableId) {
+                            if (curColumns != null) {
+                                cacheChildren(curTable, curColumns);
+                            }
+                            curTableId = tableId;
+                            curTable = tableMap.remove(tableId);
+                            curColumns = (curTable == null || isChildrenCached(curTable)) ? null : new ArrayList<XuguTableColumn>();
+                        }
+                        if (curColumns != null) {
+                            curColumns.add(new XuguTableColumn(monitor, curTable, dbResult));
+                        }
+                    }
+                    if (curColumns != null) {
+                        cacheChildren(curTable, curColumns);
+                    }
+                }
+            }
+            //没有任何列的表也要标记为已缓存，避免再次逐表查询
+            for (XuguTableBase table : tableMap.values()) {
+                if (!isChildrenCached(table)) {
+                    cacheChildren(table, new ArrayList<XuguTableColumn>());
+                }
+            }
+            schemaColumnsCached = true;
+            log.debug("[Xugu] Loaded " + rowCount + " columns of schema '" + owner.getName() + "' in " + (System.currentTimeMillis() - startTime) + "ms");
+            return rowCount;
+        }
+
+        /**
+         * 在指定会话上加载模式下的全部表
+         */
+        void readObjects(@NotNull JDBCSession session, @NotNull XuguSchema owner)
+            throws SQLException, DBException
+        {
+            //先记录修改标记再读取表，读取期间发生的变化会在下次刷新时被发现
+            owner.tableMarkers = owner.readTableMarkers(session);
+            //视图也在本缓存中，表的名称过滤不作用于视图
+            List<XuguTableBase> tables = new XuguPagedQuery(owner.getDataSource(), XuguQueryRegistry.Query.TABLES, 2, "T.TABLE_NAME", "T.TABLE_ID")
+                .setFilter(owner.getNameFilter(XuguTable.class), "T.TABLE_TYPE<>0")
+                .read(session, owner.getNavigatorPageSize(), dbStat -> {
+                    dbStat.setInt(1, owner.getDBID(owner, session));
+                    dbStat.setLong(2, owner.id);
+                }, dbResult -> fetchObject(session, owner, dbResult));
+            if (!session.getProgressMonitor().isCanceled()) {
+                cacheTables(tables);
+            }
+        }
+
+        @Override
+        protected synchronized void loadObjects(@NotNull DBRProgressMonitor monitor, @NotNull XuguSchema owner)
+            throws DBException
+        {
+            if (!isFullyCached() && !monitor.isCanceled()) {
+                readInSession(monitor, owner, "Load tables", session -> readObjects(session, owner));
+            }
+        }
+
+        /**
+         * 用已读取的表列表填充缓存（并行加载和数据源预取共用）
+         */
+        void cacheTables(@NotNull List<XuguTableBase> tables)
+        {
+            tables.sort(DBUtils.nameComparator());
+            setCache(tables);
+        }
+
+        /**
+         * 按ID读取指定的表（增量刷新使用）
+         */
+        List<XuguTableBase> readTables(@NotNull JDBCSession session, @NotNull XuguSchema owner, @NotNull Collection<Integer> tableIds)
+            throws SQLException, DBException
+        {
+            List<XuguTableBase> tables = new ArrayList<>();
+            if (tableIds.isEmpty()) {
+                return tables;
+            }
+            //按固定个数的ID分批执行，语句文本不变，可由注册表复用
+            List<Integer> ids = new ArrayList<>(tableIds);
+            int dbId = owner.getDBID(owner, session);
+            for (int offset = 0; offset < ids.size(); offset += XuguQueryRegistry.ID_LIST_SIZE) {
+                JDBCPreparedStatement dbStat = owner.prepareQuery(session, XuguQueryRegistry.Query.TABLES_BY_IDS);
+                dbStat.setInt(1, dbId);
+                dbStat.setLong(2, owner.id);
+                for (int i = 0; i < XuguQueryRegistry.ID_LIST_SIZE; i++) {
+                    dbStat.setInt(3 + i, ids.get(Math.min(offset + i, ids.size() - 1)));
+                }
+                tables.addAll(XuguSchema.readObjects(dbStat, dbResult -> fetchObject(session, owner, dbResult)));
+            }
+            return tables;
+        }
+
+        /**
+         * 用增量刷新的结果修补缓存，其余表对象和已加载的列保持不变
+         */
+        synchronized void patchTables(@NotNull List<XuguTableBase> removed, @NotNull List<XuguTableBase> added)
+        {
+            for (XuguTableBase table : removed) {
+                super.clearChildrenCache(table);
+                removeObject(table, false);
+            }
+            for (XuguTableBase table : added) {
+                cacheObject(table);
+            }
+        }
+
+        /**
+         * 将数据源预取的一行表信息转换为表对象
+         */
+        XuguTableBase readTable(@NotNull JDBCSession session, @NotNull XuguSchema owner, @NotNull JDBCResultSet dbResult)
+            throws SQLException, DBException
+        {
+            return fetchObject(session, owner, dbResult);
+        }
+
+        /**
+         * 接收数据源预取的列信息，未出现在结果中的表按无列缓存
+         */
+        synchronized void cacheColumns(@NotNull Map<XuguTableBase, List<XuguTableColumn>> columns)
+        {
+            for (XuguTableBase table : getCachedObjects()) {
+                if (!isChildrenCached(table)) {
+                    List<XuguTableColumn> tableColumns = columns.get(table);
+                    cacheChildren(table, tableColumns == null ? new ArrayList<XuguTableColumn>() : tableColumns);
+                }
+            }
+            schemaColumnsCached = true;
+        }
+
+        @Override
+        public void clearCache()
+        {
+            schemaColumnsCached = false;
+            super.clearCache();
+        }
+
+        @Override
+        public void clearChildrenCache(XuguTableBase forParent)
+        {
+            if (forParent == null) {
+                schemaColumnsCached = false;
+            }
+            super.clearChildrenCache(forParent);
+        }
+
         @Override
         protected XuguTableColumn fetchChild(@NotNull JDBCSession session, @NotNull XuguSchema owner, @NotNull XuguTableBase table, @NotNull JDBCResultSet dbResult)
             throws SQLException, DBException
@@ -678,27 +1113,16 @@ public class XuguSchema extends XuguGlobalObject implements DBSSchema, DBPRefres
             throws SQLException
         {
         	//xfc 修改了获取约束信息的sql
-            StringBuilder sql = new StringBuilder(500);
-            sql.append("SELECT DISTINCT *, DEFINE AS COL_NAME, table_name FROM ");
-//        	sql.append(owner.roleFlag);
-        	sql.append("all");
-        	sql.append("_CONSTRAINTS INNER JOIN (SELECT s.SCHEMA_NAME, t.TABLE_ID,t.table_name FROM ");
-//            sql.append(owner.roleFlag);
-        	sql.append("all");
-            sql.append("_SCHEMAS s INNER JOIN ");
-//            sql.append(owner.roleFlag);
-        	sql.append("all");
-            sql.append("_TABLES t USING(SCHEMA_ID) ");
+            JDBCPreparedStatement dbStat;
             if (forTable != null) {
-                sql.append("WHERE TABLE_ID=");
-                sql.append(forTable.getId());
-            }
-            sql.append(") USING(TABLE_ID)");
-            sql.append(" WHERE DB_ID=");
-            sql.append(owner.getDBID(owner, session));
-            
-            log.debug("[Xugu] Construct select constraints sql: "+sql.toString());
-            JDBCPreparedStatement dbStat = session.prepareStatement(sql.toString());
+                dbStat = owner.prepareQuery(session, XuguQueryRegistry.Query.CONSTRAINTS_BY_TABLE);
+                dbStat.setInt(3, forTable.getId());
+            } else {
+                dbStat = owner.prepareQuery(session, XuguQueryRegistry.Query.CONSTRAINTS);
+            }
+            //只读取本模式下表的约束
+            dbStat.setInt(1, owner.getDBID(owner, session));
+            dbStat.setLong(2, owner.getId());
             return dbStat;
         }
 
@@ -770,6 +1194,73 @@ public class XuguSchema extends XuguGlobalObject implements DBSSchema, DBPRefres
         {
             constraint.setColumns(rows);
         }
+
+        /**
+         * 解析数据源预取的一行约束的列信息
+         */
+        XuguTableConstraintColumn[] readColumns(JDBCSession session, XuguTableBase parent, XuguTableConstraint constraint, JDBCResultSet dbResult)
+            throws SQLException, DBException
+        {
+            return fetchObjectRow(session, parent, constraint, dbResult);
+        }
+
+        //预取时确认没有约束的表，按表读取时不再查询
+        private final Set<XuguTableBase> emptyParents = Collections.newSetFromMap(new IdentityHashMap<XuguTableBase, Boolean>());
+
+        @Override
+        protected synchronized void loadObjects(DBRProgressMonitor monitor, XuguSchema schema, XuguTableBase forParent)
+            throws DBException
+        {
+            if (forParent != null && emptyParents.contains(forParent)) {
+                return;
+            }
+            super.loadObjects(monitor, schema, forParent);
+        }
+
+        @Override
+        public List<XuguTableConstraint> getObjects(DBRProgressMonitor monitor, XuguSchema schema, XuguTableBase forParent)
+            throws DBException
+        {
+            List<XuguTableConstraint> objects = super.getObjects(monitor, schema, forParent);
+            if (objects == null && forParent != null && emptyParents.contains(forParent)) {
+                return new ArrayList<>();
+            }
+            return objects;
+        }
+
+        @Override
+        public void clearObjectCache(XuguTableBase forParent)
+        {
+            if (forParent == null) {
+                emptyParents.clear();
+            } else {
+                emptyParents.remove(forParent);
+            }
+            super.clearObjectCache(forParent);
+        }
+
+        @Override
+        public void clearCache()
+        {
+            emptyParents.clear();
+            super.clearCache();
+        }
+
+        /**
+         * 接收数据源预取的本模式全部约束
+         * @param tables 预取范围内本模式的全部表，其中没有约束的表记为空
+         */
+        synchronized void cacheConstraints(List<XuguTableConstraint> constraints, Collection<XuguTableBase> tables)
+        {
+            for (XuguTableConstraint constraint : constraints) {
+                cacheObject(constraint);
+            }
+            setCache(constraints);
+            emptyParents.addAll(tables);
+            for (XuguTableConstraint constraint : constraints) {
+                emptyParents.remove(constraint.getTable());
+            }
+        }
     }
 
     /**
@@ -782,15 +1273,27 @@ public class XuguSchema extends XuguGlobalObject implements DBSSchema, DBPRefres
             super(tableCache, XuguTable.class, "TABLE_NAME", "CONS_NAME");
         }
 
+        //被引用表ID到表对象的映射，每次加载时构建一次，避免逐行按名称查找
+        private Map<Integer, XuguTableBase> refTables;
+
         @Override
-        protected void loadObjects(DBRProgressMonitor monitor, XuguSchema schema, XuguTable forParent)
+        protected synchronized void loadObjects(DBRProgressMonitor monitor, XuguSchema schema, XuguTable forParent)
             throws DBException
         {
             // Cache schema constraints if not table specified
             if (forParent == null) {
                 constraintCache.getAllObjects(monitor, schema);
             }
-            super.loadObjects(monitor, schema, forParent);
+            Map<Integer, XuguTableBase> tables = new HashMap<>();
+            for (XuguTableBase table : tableCache.getAllObjects(monitor, schema)) {
+                tables.put(table.getId(), table);
+            }
+            refTables = tables;
+            try {
+                super.loadObjects(monitor, schema, forParent);
+            } finally {
+                refTables = null;
+            }
         }
 
         @NotNull
@@ -799,36 +1302,15 @@ public class XuguSchema extends XuguGlobalObject implements DBSSchema, DBPRefres
             throws SQLException
         {
         	//xfc 修改了获取外键信息的sql
-            StringBuilder sql = new StringBuilder(500);
-            sql.append("SELECT f.*,s.schema_name,t.table_name, f.DEFINE AS COL_NAME,"
-            		+ " t2.TABLE_NAME AS REF_TABLE_NAME,"
-            		+ " f2.CONS_NAME AS REF_NAME FROM ");
-//        	sql.append(owner.roleFlag);
-        	sql.append("all");
-        	sql.append("_CONSTRAINTS f INNER JOIN (SELECT s.SCHEMA_NAME, t.TABLE_ID, t.table_name FROM ");
-//            sql.append(owner.roleFlag);
-        	sql.append("all");
-            sql.append("_SCHEMAS s INNER JOIN ");
-//            sql.append(owner.roleFlag);
-        	sql.append("all");
-            sql.append("_TABLES t USING(SCHEMA_ID) ");
+            JDBCPreparedStatement dbStat;
             if (forTable != null) {
-                sql.append("WHERE TABLE_ID=");
-                sql.append(forTable.getId());
-            }
-            sql.append(") USING(TABLE_ID) INNER JOIN (SELECT t2.TABLE_NAME, t2.TABLE_ID FROM ");
-//            sql.append(owner.roleFlag);
-        	sql.append("all");
-            sql.append("_TABLES t2) ON f.REF_TABLE_ID=t2.TABLE_ID JOIN ");
-//            sql.append(owner.roleFlag);
-        	sql.append("all");
-            sql.append("_CONSTRAINTS f2 ON f.REF_TABLE_ID=f2.TABLE_ID ");
-            sql.append("WHERE CONS_TYPE='F' AND DB_ID=");
-            sql.append(owner.getDBID(owner, session));
-            
-            log.debug("[Xugu] Construct select foreign keys sql: "+sql.toString());
-            JDBCPreparedStatement dbStat = session.prepareStatement(sql.toString());
-
+                dbStat = owner.prepareQuery(session, XuguQueryRegistry.Query.FOREIGN_KEYS_BY_TABLE);
+                dbStat.setInt(3, forTable.getId());
+            } else {
+                dbStat = owner.prepareQuery(session, XuguQueryRegistry.Query.FOREIGN_KEYS);
+            }
+            dbStat.setInt(1, owner.getDBID(owner, session));
+            dbStat.setLong(2, owner.getId());
             return dbStat;
         }
 
@@ -837,7 +1319,14 @@ public class XuguSchema extends XuguGlobalObject implements DBSSchema, DBPRefres
         protected XuguTableForeignKey fetchObject(JDBCSession session, XuguSchema owner, XuguTable parent, String indexName, JDBCResultSet dbResult)
             throws SQLException, DBException
         {
-            return new XuguTableForeignKey(session.getProgressMonitor(), parent, dbResult);
+            int refTableId = JDBCUtils.safeGetInt(dbResult, "REF_TABLE_ID");
+            XuguTableBase refTable = refTables == null ? null : refTables.get(refTableId);
+            XuguTableForeignKey foreignKey = new XuguTableForeignKey(session.getProgressMonitor(), parent, refTable, dbResult);
+            if (refTable == null && refTables != null && foreignKey.getReferencedTable() != null) {
+                //跨模式引用的表查到一次后加入映射
+                refTables.put(refTableId, foreignKey.getReferencedTable());
+            }
+            return foreignKey;
         }
 
         @Nullable
@@ -881,7 +1370,12 @@ public class XuguSchema extends XuguGlobalObject implements DBSSchema, DBPRefres
         @SuppressWarnings("unchecked")
         protected void cacheChildren(DBRProgressMonitor monitor, XuguTableForeignKey foreignKey, List<XuguTableForeignKeyColumn> rows)
         {
-            foreignKey.setColumns((List)rows);
+            //被引用表有多个唯一键时关联结果会重复，按列去重
+            Map<String, XuguTableForeignKeyColumn> columns = new LinkedHashMap<>();
+            for (XuguTableForeignKeyColumn row : rows) {
+                columns.putIfAbsent(row.getName(), row);
+            }
+            foreignKey.setColumns(new ArrayList(columns.values()));
         }
     }
 
@@ -895,30 +1389,20 @@ public class XuguSchema extends XuguGlobalObject implements DBSSchema, DBPRefres
             super(tableCache, XuguTablePhysical.class, "TABLE_NAME", "INDEX_NAME");
         }
 
+        private final Map<XuguTablePhysical, Map<String, XuguTableColumn>> columnMaps = new IdentityHashMap<>();
+
         @NotNull
         @Override
         protected JDBCStatement prepareObjectsStatement(JDBCSession session, XuguSchema owner, XuguTablePhysical forTable)
             throws SQLException
         {
         	//xfc 修改了获取索引信息的sql
-            StringBuilder sql = new StringBuilder();
-            sql.append("SELECT IDX.*,TAB.TABLE_NAME FROM ");
-//          sql.append(owner.roleFlag);
-        	sql.append("all");
-            sql.append("_INDEXES IDX ");
-            sql.append(" LEFT JOIN ");
-//            sql.append(owner.roleFlag);
-        	sql.append("all");
-            sql.append("_TABLES TAB ON IDX.TABLE_ID=TAB.TABLE_ID ");
-            sql.append(" WHERE IDX.DB_ID=");
-            sql.append(owner.getDBID(owner, session));
+            JDBCPreparedStatement dbStat = owner.prepareQuery(session,
+                forTable == null ? XuguQueryRegistry.Query.INDEXES : XuguQueryRegistry.Query.INDEXES_BY_TABLE);
+            dbStat.setInt(1, owner.getDBID(owner, session));
             if (forTable != null) {
-                sql.append(" AND IDX.TABLE_ID=");
-                sql.append(forTable.getId());
+                dbStat.setInt(2, forTable.getId());
             }
-            
-            log.debug("[Xugu] Construct select indexes sql: "+sql.toString());
-            JDBCPreparedStatement dbStat = session.prepareStatement(sql.toString());
             return dbStat;
         }
 
@@ -937,34 +1421,95 @@ public class XuguSchema extends XuguGlobalObject implements DBSSchema, DBPRefres
             XuguTablePhysical parent, XuguTableIndex object, JDBCResultSet dbResult)
             throws SQLException, DBException
         {
-        	//处理别名情况
-            String columnName = JDBCUtils.safeGetStringTrimmed(dbResult, "KEYS");
-            columnName = columnName.replaceAll("\"", "");
-            //处理多字段情况
-            if(columnName.indexOf(",")!=-1) {
-            	String[] cols = columnName.split(",");
-            	XuguTableIndexColumn[] res = new XuguTableIndexColumn[cols.length];
-            	for(int i=0; i<cols.length; i++) {
-            		boolean ascending = cols[i].toUpperCase().contains(" DESC")?false:true;
-            		XuguTableColumn tableColumn = parent.getAttribute(session.getProgressMonitor(), cols[i].replace(" DESC", "").trim());
+            String rawKeys = JDBCUtils.safeGetStringTrimmed(dbResult, "KEYS");
+            List<XuguIndexKeys.Key> keys = XuguIndexKeys.forKeys(rawKeys).getKeys();
+            Map<String, XuguTableColumn> columns = getColumnMap(session.getProgressMonitor(), parent);
+            XuguTableIndexColumn[] res = new XuguTableIndexColumn[keys.size()];
+            for (int i = 0; i < res.length; i++) {
+                XuguIndexKeys.Key key = keys.get(i);
+                String columnName = key.getColumnName();
+                XuguTableColumn tableColumn = null;
+                if (columnName != null) {
+                    tableColumn = columns.get(columnName);
                     if (tableColumn == null) {
-                        log.debug("Column '" + columnName + "' not found in table '" + parent.getName() + "' for index '" + object.getName() + "'");
-                        return null;
+                        tableColumn = columns.get(columnName.toUpperCase(Locale.ENGLISH));
                     }
-                    XuguTableIndexColumn tempIndexCol = new XuguTableIndexColumn(object, tableColumn, tableColumn.getOrdinalPosition(), ascending, null);
-                    res[i] = tempIndexCol;
-            	}
-            	return res;
-            }else {
-            	boolean ascending = columnName.toUpperCase().contains(" DESC")?false:true;
-            	columnName = columnName.replace(" DESC", "").trim();
-            	XuguTableColumn tableColumn = columnName == null ? null : parent.getAttribute(session.getProgressMonitor(), columnName);
+                }
                 if (tableColumn == null) {
-                    log.debug("Column '" + columnName + "' not found in table '" + parent.getName() + "' for index '" + object.getName() + "'");
+                    log.debug("Column '" + key.getExpression() + "' not found in table '" + parent.getName() + "' for index '" + object.getName() + "'");
                     return null;
                 }
-                return new XuguTableIndexColumn[] { new XuguTableIndexColumn(object, tableColumn, tableColumn.getOrdinalPosition(), ascending, null) };
+                res[i] = new XuguTableIndexColumn(object, tableColumn, tableColumn.getOrdinalPosition(), key.isAscending(), null);
             }
+            return res;
+        }
+
+        /**
+         * 表的列名到列的映射，同一次加载中每个表只构建一次
+         */
+        private synchronized Map<String, XuguTableColumn> getColumnMap(DBRProgressMonitor monitor, XuguTablePhysical table)
+            throws DBException
+        {
+            Map<String, XuguTableColumn> columns = columnMaps.get(table);
+            if (columns == null) {
+                Collection<XuguTableColumn> attributes = table.getAttributes(monitor);
+                columns = new HashMap<>(attributes.size() * 4);
+                for (XuguTableColumn column : attributes) {
+                    columns.put(column.getName(), column);
+                }
+                //未加引号的列名按大写匹配
+                for (XuguTableColumn column : attributes) {
+                    columns.putIfAbsent(column.getName().toUpperCase(Locale.ENGLISH), column);
+                }
+                columnMaps.put(table, columns);
+            }
+            return columns;
+        }
+
+        //预取时确认没有索引的表，按表读取时不再查询
+        private final Set<XuguTablePhysical> emptyParents = Collections.newSetFromMap(new IdentityHashMap<XuguTablePhysical, Boolean>());
+
+        @Override
+        protected synchronized void loadObjects(DBRProgressMonitor monitor, XuguSchema schema, XuguTablePhysical forParent)
+            throws DBException
+        {
+            if (forParent != null && emptyParents.contains(forParent)) {
+                return;
+            }
+            try {
+                super.loadObjects(monitor, schema, forParent);
+            } finally {
+                columnMaps.clear();
+            }
+        }
+
+        @Override
+        public List<XuguTableIndex> getObjects(DBRProgressMonitor monitor, XuguSchema schema, XuguTablePhysical forParent)
+            throws DBException
+        {
+            List<XuguTableIndex> objects = super.getObjects(monitor, schema, forParent);
+            if (objects == null && forParent != null && emptyParents.contains(forParent)) {
+                return new ArrayList<>();
+            }
+            return objects;
+        }
+
+        @Override
+        public void clearObjectCache(XuguTablePhysical forParent)
+        {
+            if (forParent == null) {
+                emptyParents.clear();
+            } else {
+                emptyParents.remove(forParent);
+            }
+            super.clearObjectCache(forParent);
+        }
+
+        @Override
+        public void clearCache()
+        {
+            emptyParents.clear();
+            super.clearCache();
         }
 
         @Override
@@ -972,6 +1517,40 @@ public class XuguSchema extends XuguGlobalObject implements DBSSchema, DBPRefres
         {
             index.setColumns(rows);
         }
+
+        /**
+         * 解析数据源预取的一行索引的列信息
+         */
+        XuguTableIndexColumn[] readColumns(JDBCSession session, XuguTablePhysical parent, XuguTableIndex index, JDBCResultSet dbResult)
+            throws SQLException, DBException
+        {
+            return fetchObjectRow(session, parent, index, dbResult);
+        }
+
+        /**
+         * 结束预取读取，丢弃解析索引列时构建的列映射（预取取消时不会调用cacheIndexes）
+         */
+        synchronized void endRead()
+        {
+            columnMaps.clear();
+        }
+
+        /**
+         * 接收数据源预取的本模式全部索引
+         * @param tables 预取范围内本模式的全部表，其中没有索引的表记为空
+         */
+        synchronized void cacheIndexes(List<XuguTableIndex> indexes, Collection<XuguTablePhysical> tables)
+        {
+            for (XuguTableIndex index : indexes) {
+                cacheObject(index);
+            }
+            setCache(indexes);
+            columnMaps.clear();
+            emptyParents.addAll(tables);
+            for (XuguTableIndex index : indexes) {
+                emptyParents.remove(index.getTable());
+            }
+        }
     }
 
     /**
@@ -1001,20 +1580,9 @@ public class XuguSchema extends XuguGlobalObject implements DBSSchema, DBPRefres
         protected JDBCStatement prepareObjectsStatement(@NotNull JDBCSession session, @NotNull XuguSchema owner) throws SQLException
         {
         	//xfc 修改了获取sequence信息的sql
-        	StringBuilder sql = new StringBuilder();
-        	sql.append("SELECT * FROM ");
-//        	sql.append(owner.roleFlag);
-        	sql.append("all");
-        	sql.append("_SEQUENCES");
-        	sql.append(" WHERE DB_ID=");
-        	sql.append(owner.getDBID(owner, session));
-        	sql.append(" AND SCHEMA_ID=");
-        	sql.append(owner.getId());
-        	sql.append(" and is_sys=false");
-        	sql.append(" ORDER BY SEQ_NAME");
-        	
-        	log.debug("Xugu sequence metadata: "+sql.toString());
-            JDBCPreparedStatement dbStat = session.prepareStatement(sql.toString());
+            JDBCPreparedStatement dbStat = owner.prepareQuery(session, XuguQueryRegistry.Query.SEQUENCES);
+            dbStat.setInt(1, owner.getDBID(owner, session));
+            dbStat.setLong(2, owner.getId());
             return dbStat;
         }
 
@@ -1023,6 +1591,32 @@ public class XuguSchema extends XuguGlobalObject implements DBSSchema, DBPRefres
         {
             return new XuguSequence(owner, resultSet);
         }
+
+        /**
+         * 在指定会话上按名称分页加载全部序列
+         */
+        void readObjects(@NotNull JDBCSession session, @NotNull XuguSchema owner)
+            throws SQLException, DBException
+        {
+            List<XuguSequence> sequences = new XuguPagedQuery(owner.getDataSource(), XuguQueryRegistry.Query.SEQUENCES, 2, "SEQ_NAME", "SEQ_ID")
+                .setFilter(owner.getNameFilter(XuguSequence.class), null)
+                .read(session, owner.getNavigatorPageSize(), dbStat -> {
+                    dbStat.setInt(1, owner.getDBID(owner, session));
+                    dbStat.setLong(2, owner.getId());
+                }, dbResult -> fetchObject(session, owner, dbResult));
+            if (!session.getProgressMonitor().isCanceled()) {
+                setCache(sequences);
+            }
+        }
+
+        @Override
+        protected synchronized void loadObjects(@NotNull DBRProgressMonitor monitor, @NotNull XuguSchema owner)
+            throws DBException
+        {
+            if (!isFullyCached() && !monitor.isCanceled()) {
+                readInSession(monitor, owner, "Load sequences", session -> readObjects(session, owner));
+            }
+        }
     }
 
     /**
@@ -1034,22 +1628,14 @@ public class XuguSchema extends XuguGlobalObject implements DBSSchema, DBPRefres
         @Override
         public JDBCStatement prepareLookupStatement(@NotNull JDBCSession session, @NotNull XuguSchema owner, @Nullable XuguProcedureStandalone object, @Nullable String objectName) throws SQLException {
             //xfc 修改了获取存储过程信息的sql语句
-        	StringBuilder sql = new StringBuilder();
-        	sql.append("SELECT * FROM ");
-//        	sql.append(owner.roleFlag);
-        	sql.append("all");
-        	sql.append("_PROCEDURES WHERE DB_ID=");
-        	sql.append(owner.getDBID(owner, session));
-        	sql.append(" AND SCHEMA_ID=");
-        	sql.append(owner.id);
-        	//当有检索条件时 只查询指定表 用于新建表之后的刷新工作
-        	if(object!=null) {
-        		sql.append(" AND PROC_ID = ");
-        		sql.append(object.getObjectId());
+        	//当有检索条件时 只查询指定存储过程 用于新建之后的刷新工作
+        	JDBCPreparedStatement dbStat = owner.prepareQuery(session,
+        	    object == null ? XuguQueryRegistry.Query.PROCEDURES : XuguQueryRegistry.Query.PROCEDURE_BY_ID);
+        	dbStat.setInt(1, owner.getDBID(owner, session));
+        	dbStat.setLong(2, owner.id);
+        	if (object != null) {
+        		dbStat.setLong(3, object.getObjectId());
         	}
-        	
-        	log.debug("Xugu procedure metadata: "+sql.toString());
-        	JDBCPreparedStatement dbStat = session.prepareStatement(sql.toString());
             return dbStat;
         }
 
@@ -1071,16 +1657,9 @@ public class XuguSchema extends XuguGlobalObject implements DBSSchema, DBPRefres
             throws SQLException
         {
         	//xfc 修改了获取所有包信息的sql语句
-        	StringBuilder sql = new StringBuilder();
-        	sql.append("SELECT * FROM ");
-//        	sql.append(owner.roleFlag);
-        	sql.append("all");
-        	sql.append("_PACKAGES WHERE DB_ID=");
-        	sql.append(owner.getDBID(owner, session));
-        	sql.append(" AND SCHEMA_ID=");
-        	sql.append(owner.id);
-        	log.debug("Xugu package metadata: "+sql.toString());
-            JDBCPreparedStatement dbStat = session.prepareStatement(sql.toString());
+            JDBCPreparedStatement dbStat = owner.prepareQuery(session, XuguQueryRegistry.Query.PACKAGES);
+            dbStat.setInt(1, owner.getDBID(owner, session));
+            dbStat.setLong(2, owner.id);
             return dbStat;
         }
 
@@ -1091,6 +1670,17 @@ public class XuguSchema extends XuguGlobalObject implements DBSSchema, DBPRefres
             return new XuguPackage(owner, dbResult);
         }
 
+        /**
+         * 在指定会话上加载全部对象（供并行加载使用）
+         */
+        void readObjects(@NotNull JDBCSession session, @NotNull XuguSchema owner)
+            throws SQLException, DBException
+        {
+            setCache(XuguSchema.readObjects(
+                prepareObjectsStatement(session, owner),
+                dbResult -> fetchObject(session, owner, dbResult)));
+        }
+
     }
 
     /**
@@ -1101,25 +1691,10 @@ public class XuguSchema extends XuguGlobalObject implements DBSSchema, DBPRefres
         protected JDBCStatement prepareObjectsStatement(@NotNull JDBCSession session, @NotNull XuguSchema owner) throws SQLException
         {
         	//xfc 修改了获取同义词信息的语句
-        	StringBuilder sql = new StringBuilder();
-        	sql.append("select syn.*,sch.schema_name from ");
-//        	sql.append(owner.roleFlag);
-        	sql.append("all");
-        	sql.append("_SYNONYMS syn ");
-        	sql.append("left join ");
-//        	sql.append(owner.roleFlag);
-        	sql.append("all");
-        	sql.append("_SCHEMAS sch ");
-        	sql.append("on syn.targ_sche_id=sch.schema_id ");
-        	sql.append("WHERE SYN.SCHEMA_ID=");
-        	sql.append(owner.id);
         	//加上公有的同义词
-        	sql.append(" OR SYN.SCHEMA_ID=0");
-        	sql.append(" AND SYN.DB_ID=");
-        	sql.append(owner.getDBID(owner, session));
-        	
-        	log.debug("Xugu synonyms metadata: "+sql.toString());
-            JDBCPreparedStatement dbStat = session.prepareStatement(sql.toString());
+            JDBCPreparedStatement dbStat = owner.prepareQuery(session, XuguQueryRegistry.Query.SYNONYMS);
+            dbStat.setLong(1, owner.id);
+            dbStat.setInt(2, owner.getDBID(owner, session));
             return dbStat;
         }
 
@@ -1128,6 +1703,32 @@ public class XuguSchema extends XuguGlobalObject implements DBSSchema, DBPRefres
         {
             return new XuguSynonym(session.getProgressMonitor(), session, owner, resultSet);
         }
+
+        /**
+         * 在指定会话上按名称分页加载全部同义词（含公有同义词，同名时按所属模式区分）
+         */
+        void readObjects(@NotNull JDBCSession session, @NotNull XuguSchema owner)
+            throws SQLException, DBException
+        {
+            List<XuguSynonym> synonyms = new XuguPagedQuery(owner.getDataSource(), XuguQueryRegistry.Query.SYNONYMS, 2, "SYN.SYNO_NAME", "SYN.SCHEMA_ID")
+                .setFilter(owner.getNameFilter(XuguSynonym.class), null)
+                .read(session, owner.getNavigatorPageSize(), dbStat -> {
+                    dbStat.setLong(1, owner.id);
+                    dbStat.setInt(2, owner.getDBID(owner, session));
+                }, dbResult -> fetchObject(session, owner, dbResult));
+            if (!session.getProgressMonitor().isCanceled()) {
+                setCache(synonyms);
+            }
+        }
+
+        @Override
+        protected synchronized void loadObjects(@NotNull DBRProgressMonitor monitor, @NotNull XuguSchema owner)
+            throws DBException
+        {
+            if (!isFullyCached() && !monitor.isCanceled()) {
+                readInSession(monitor, owner, "Load synonyms", session -> readObjects(session, owner));
+            }
+        }
     }
     
     /**
@@ -1137,22 +1738,10 @@ public class XuguSchema extends XuguGlobalObject implements DBSSchema, DBPRefres
         @Override
         protected JDBCStatement prepareObjectsStatement(@NotNull JDBCSession session, @NotNull XuguSchema owner) throws SQLException
         {
-        	//xfc 修改了获取同义词信息的语句
-        	StringBuilder sql = new StringBuilder();
-        	sql.append("SELECT t.*,s.schema_name FROM ");
-//        	sql.append(owner.roleFlag);
-        	sql.append("all");
-        	sql.append("_TYPES t left join ");
-//        	sql.append(owner.roleFlag);
-        	sql.append("all");
-        	sql.append("_SCHEMAS s on t.schema_id=s.schema_id ");
-        	sql.append("WHERE t.SCHEMA_ID=");
-        	sql.append(owner.id);
-        	sql.append(" AND t.DB_ID=");
-        	sql.append(owner.getDBID(owner, session));
-        	
-        	log.debug("Xugu udt metadata: "+sql.toString());
-            JDBCPreparedStatement dbStat = session.prepareStatement(sql.toString());
+        	//xfc 修改了获取自定义类型信息的语句
+            JDBCPreparedStatement dbStat = owner.prepareQuery(session, XuguQueryRegistry.Query.TYPES);
+            dbStat.setLong(1, owner.id);
+            dbStat.setInt(2, owner.getDBID(owner, session));
             return dbStat;
         }
 
@@ -1161,6 +1750,17 @@ public class XuguSchema extends XuguGlobalObject implements DBSSchema, DBPRefres
         {
             return new XuguUDT(owner, resultSet);
         }
+
+        /**
+         * 在指定会话上加载全部对象（供并行加载使用）
+         */
+        void readObjects(@NotNull JDBCSession session, @NotNull XuguSchema owner)
+            throws SQLException, DBException
+        {
+            setCache(XuguSchema.readObjects(
+                prepareObjectsStatement(session, owner),
+                dbResult -> fetchObject(session, owner, dbResult)));
+        }
     }
     
     /**
@@ -1180,21 +1780,13 @@ public class XuguSchema extends XuguGlobalObject implements DBSSchema, DBPRefres
             throws SQLException
         {
         	//xfc 修改了获取所有视图信息的sql
-        	StringBuilder sql = new StringBuilder();
-        	sql.append("SELECT * FROM ");
-//        	sql.append(owner.roleFlag);
-        	sql.append("all");
-        	sql.append("_VIEWS WHERE DB_ID=");
-        	sql.append(owner.getDBID(owner, session));
-        	sql.append(" AND SCHEMA_ID=");
-        	sql.append(owner.getId());
-        	if(object!=null) {
-        		sql.append(" AND VIEW_ID=");
-        		sql.append(object.getId());
-        	}
-        	
-        	log.debug("Xugu view metadata: "+sql.toString());
-            JDBCPreparedStatement dbStat = session.prepareStatement(sql.toString());
+            JDBCPreparedStatement dbStat = owner.prepareQuery(session,
+                object == null ? XuguQueryRegistry.Query.VIEWS : XuguQueryRegistry.Query.VIEW_BY_ID);
+            dbStat.setInt(1, owner.getDBID(owner, session));
+            dbStat.setLong(2, owner.getId());
+            if (object != null) {
+                dbStat.setInt(3, object.getId());
+            }
             return dbStat;
         }
 
@@ -1211,24 +1803,13 @@ public class XuguSchema extends XuguGlobalObject implements DBSSchema, DBPRefres
             throws SQLException
         {
         	//xfc 修改了获取列信息的sql
-            StringBuilder sql = new StringBuilder(500);
-            sql.append("SELECT COL.*,VW.VIEW_NAME FROM ");
-//        	sql.append(owner.roleFlag);
-        	sql.append("all");
-        	sql.append("_VIEW_COLUMNS COL ");
-        	sql.append(" LEFT JOIN ");
-//        	sql.append(owner.roleFlag);
-        	sql.append("all");
-        	sql.append("_VIEWS VW ON VW.VIEW_ID=COL.VIEW_ID ");
-        	sql.append(" WHERE VW.DB_ID=");
-        	sql.append(owner.getDBID(owner, session));
+            JDBCPreparedStatement dbStat = owner.prepareQuery(session,
+                forView == null ? XuguQueryRegistry.Query.VIEW_COLUMNS : XuguQueryRegistry.Query.VIEW_COLUMNS_BY_VIEW);
+            dbStat.setInt(1, owner.getDBID(owner, session));
+            dbStat.setLong(2, owner.getId());
             if (forView != null) {
-                sql.append(" AND VW.VIEW_ID=");
-                sql.append(forView.getId());
+                dbStat.setInt(3, forView.getId());
             }
-            
-            log.debug("[Xugu] Construct select view columns sql: "+sql.toString());
-            JDBCPreparedStatement dbStat = session.prepareStatement(sql.toString());
             return dbStat;
         }
 
@@ -1244,6 +1825,63 @@ public class XuguSchema extends XuguGlobalObject implements DBSSchema, DBPRefres
         	xuguTableColumns.sort(DBUtils.orderComparator());
             super.cacheChildren(parent, xuguTableColumns);
         }
+
+        /**
+         * 在指定会话上加载模式下的全部视图
+         */
+        void readObjects(@NotNull JDBCSession session, @NotNull XuguSchema owner)
+            throws SQLException, DBException
+        {
+            List<XuguView> views = new XuguPagedQuery(owner.getDataSource(), XuguQueryRegistry.Query.VIEWS, 2, "VIEW_NAME", "VIEW_ID")
+                .setFilter(owner.getNameFilter(XuguView.class), null)
+                .read(session, owner.getNavigatorPageSize(), dbStat -> {
+                    dbStat.setInt(1, owner.getDBID(owner, session));
+                    dbStat.setLong(2, owner.getId());
+                }, dbResult -> fetchObject(session, owner, dbResult));
+            if (!session.getProgressMonitor().isCanceled()) {
+                views.sort(DBUtils.nameComparator());
+                setCache(views);
+            }
+        }
+
+        @Override
+        protected synchronized void loadObjects(@NotNull DBRProgressMonitor monitor, @NotNull XuguSchema owner)
+            throws DBException
+        {
+            if (!isFullyCached() && !monitor.isCanceled()) {
+                readInSession(monitor, owner, "Load views", session -> readObjects(session, owner));
+            }
+        }
+
+        /**
+         * 在指定会话上加载模式下全部视图的列信息
+         */
+        synchronized void readColumns(@NotNull JDBCSession session, @NotNull XuguSchema owner)
+            throws SQLException, DBException
+        {
+            Map<XuguView, List<XuguTableColumn>> viewColumns = new HashMap<>();
+            XuguSchema.readObjects(
+                prepareChildrenStatement(session, owner, null),
+                dbResult -> {
+                    //列直接放入所属视图的列表，不需要收集返回值
+                    XuguView view = getCachedObject(JDBCUtils.safeGetString(dbResult, "VIEW_NAME"));
+                    if (view != null && !isChildrenCached(view)) {
+                        List<XuguTableColumn> columns = viewColumns.get(view);
+                        if (columns == null) {
+                            columns = new ArrayList<>();
+                            viewColumns.put(view, columns);
+                        }
+                        columns.add(fetchChild(session, owner, view, dbResult));
+                    }
+                    return null;
+                });
+            for (XuguView view : getCachedObjects()) {
+                if (!isChildrenCached(view)) {
+                    List<XuguTableColumn> columns = viewColumns.get(view);
+                    cacheChildren(view, columns == null ? new ArrayList<XuguTableColumn>() : columns);
+                }
+            }
+        }
     }
 
     /**
@@ -1256,15 +1894,8 @@ public class XuguSchema extends XuguGlobalObject implements DBSSchema, DBPRefres
                 throws SQLException
         {
         	//xfc 修改了获取所有job信息的sql语句
-        	StringBuilder sql = new StringBuilder();
-        	sql.append("SELECT * FROM ");
-//        	sql.append(owner.roleFlag);
-        	sql.append("all");
-        	sql.append("_JOBS WHERE DB_ID=");
-        	sql.append(owner.getDBID(owner, session));
-        	
-        	log.debug("[Xugu] Construct select jobs sql: "+sql.toString());
-            JDBCPreparedStatement dbStat = session.prepareStatement(sql.toString());
+            JDBCPreparedStatement dbStat = owner.prepareQuery(session, XuguQueryRegistry.Query.JOBS);
+            dbStat.setInt(1, owner.getDBID(owner, session));
             return dbStat;
         }
 
@@ -1274,5 +1905,16 @@ public class XuguSchema extends XuguGlobalObject implements DBSSchema, DBPRefres
         {
             return new XuguSchedulerJob(session.getProgressMonitor(), session, owner, dbResult);
         }
+
+        /**
+         * 在指定会话上加载全部对象（供并行加载使用）
+         */
+        void readObjects(@NotNull JDBCSession session, @NotNull XuguSchema owner)
+            throws SQLException, DBException
+        {
+            setCache(XuguSchema.readObjects(
+                prepareObjectsStatement(session, owner),
+                dbResult -> fetchObject(session, owner, dbResult)));
+        }
     }
 }
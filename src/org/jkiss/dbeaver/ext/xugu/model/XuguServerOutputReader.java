@@ -0,0 +1,169 @@
+/*
+ * DBeaver - Universal Database Manager
+ * Copyright (C) 2010-2018 Serge Rider (serge@jkiss.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jkiss.dbeaver.ext.xugu.model;
+
+import org.jkiss.code.NotNull;
+import org.jkiss.code.Nullable;
+import org.jkiss.dbeaver.Log;
+import org.jkiss.dbeaver.ext.xugu.XuguConstants;
+import org.jkiss.dbeaver.model.exec.DBCException;
+import org.jkiss.dbeaver.model.exec.DBCExecutionContext;
+import org.jkiss.dbeaver.model.exec.DBCExecutionPurpose;
+import org.jkiss.dbeaver.model.exec.DBCServerOutputReader;
+import org.jkiss.dbeaver.model.exec.DBCSession;
+import org.jkiss.dbeaver.model.exec.DBCStatement;
+import org.jkiss.dbeaver.model.exec.jdbc.JDBCCallableStatement;
+import org.jkiss.dbeaver.model.exec.jdbc.JDBCSession;
+import org.jkiss.dbeaver.model.exec.jdbc.JDBCStatement;
+import org.jkiss.dbeaver.model.impl.jdbc.JDBCUtils;
+import org.jkiss.dbeaver.model.runtime.DBRProgressMonitor;
+import org.jkiss.dbeaver.model.sql.SQLQueryResult;
+
+import java.io.PrintWriter;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLSyntaxErrorException;
+import java.sql.SQLWarning;
+import java.sql.Types;
+
+/**
+ * 服务器输出读取
+ * 执行期间SQL编辑器定时调用，读取正在执行的语句上服务器发出的消息（SQLWarning），读完即清除，驱动不会无限累积；
+ * 语句执行结束后通过DBMS_OUTPUT.GET_LINE读取会话输出缓冲区（缓冲区大小在启用时指定）。
+ * 输出按固定行数分批写出并刷新，不在客户端缓存完整输出
+ */
+final class XuguServerOutputReader implements DBCServerOutputReader {
+
+    private static final Log log = Log.getLog(XuguServerOutputReader.class);
+
+    private final XuguDataSource dataSource;
+    //服务器不支持DBMS_OUTPUT时不再尝试启用和读取
+    private volatile boolean dbmsOutputSupported = true;
+
+    XuguServerOutputReader(@NotNull XuguDataSource dataSource)
+    {
+        this.dataSource = dataSource;
+    }
+
+    @Override
+    public boolean isServerOutputEnabled()
+    {
+        return dataSource.getContainer().getPreferenceStore().getBoolean(XuguConstants.PREF_DBMS_OUTPUT);
+    }
+
+    @Override
+    public boolean isAsyncOutputReadSupported()
+    {
+        return true;
+    }
+
+    /**
+     * 在执行上下文上启用DBMS输出
+     */
+    void enableServerOutput(@NotNull DBRProgressMonitor monitor, @NotNull DBCExecutionContext context)
+    {
+        if (!dbmsOutputSupported) {
+            return;
+        }
+        try (DBCSession session = context.openSession(monitor, DBCExecutionPurpose.UTIL, "Enable DBMS output")) {
+            JDBCUtils.executeSQL((JDBCSession) session, "BEGIN DBMS_OUTPUT.ENABLE(" + XuguConstants.MAXIMUM_DBMS_OUTPUT_SIZE + "); END;");
+        } catch (SQLException e) {
+            //输出不是必需功能，不影响连接；只有服务器不支持时才对整个数据源停用，连接错误等其他错误下次仍会尝试
+            if (isNotSupported(e)) {
+                dbmsOutputSupported = false;
+                log.debug("DBMS output is not supported: " + e.getMessage());
+            } else {
+                log.debug("Can't enable DBMS output on '" + context.getContextName() + "'", e);
+            }
+        }
+    }
+
+    private boolean isNotSupported(SQLException e)
+    {
+        if (dataSource.getReconnectManager().isConnectionError(e)) {
+            return false;
+        }
+        if (e instanceof SQLFeatureNotSupportedException || e instanceof SQLSyntaxErrorException) {
+            return true;
+        }
+        String sqlState = e.getSQLState();
+        return sqlState != null && sqlState.startsWith(XuguConstants.SQL_STATE_SYNTAX_ERROR);
+    }
+
+    @Override
+    public void readServerOutput(@NotNull DBRProgressMonitor monitor, @NotNull DBCExecutionContext context, @Nullable SQLQueryResult queryResult, @Nullable DBCStatement statement, @NotNull PrintWriter output) throws DBCException
+    {
+        if (statement instanceof JDBCStatement) {
+            readStatementMessages((JDBCStatement) statement, output);
+        } else if (statement == null && dbmsOutputSupported && isServerOutputEnabled()) {
+            readOutputBuffer(monitor, context, output);
+        }
+    }
+
+    /**
+     * 读取语句上的服务器消息，可在语句执行期间从其他线程调用
+     */
+    private void readStatementMessages(JDBCStatement statement, PrintWriter output) throws DBCException
+    {
+        try {
+            SQLWarning warning = statement.getWarnings();
+            if (warning == null) {
+                return;
+            }
+            //先清除再输出，清除之后驱动追加的消息留到下一次读取
+            statement.clearWarnings();
+            int lines = 0;
+            for (; warning != null; warning = warning.getNextWarning()) {
+                output.println(warning.getMessage());
+                if (++lines % XuguConstants.DBMS_OUTPUT_BATCH_LINES == 0) {
+                    output.flush();
+                }
+            }
+            output.flush();
+        } catch (SQLException e) {
+            throw new DBCException(e, dataSource);
+        }
+    }
+
+    /**
+     * 读取会话输出缓冲区中的全部行
+     */
+    private void readOutputBuffer(DBRProgressMonitor monitor, DBCExecutionContext context, PrintWriter output) throws DBCException
+    {
+        try (JDBCSession session = (JDBCSession) context.openSession(monitor, DBCExecutionPurpose.UTIL, "Read DBMS output")) {
+            try (JDBCCallableStatement dbCall = session.prepareCall("{CALL DBMS_OUTPUT.GET_LINE(?,?)}")) {
+                dbCall.registerOutParameter(1, Types.VARCHAR);
+                dbCall.registerOutParameter(2, Types.INTEGER);
+                int lines = 0;
+                while (!monitor.isCanceled()) {
+                    dbCall.execute();
+                    if (dbCall.getInt(2) != 0) {
+                        break;
+                    }
+                    String line = dbCall.getString(1);
+                    output.println(line == null ? "" : line);
+                    if (++lines % XuguConstants.DBMS_OUTPUT_BATCH_LINES == 0) {
+                        output.flush();
+                    }
+                }
+                output.flush();
+            }
+        } catch (SQLException e) {
+            throw new DBCException(e, dataSource);
+        }
+    }
+}
@@ -0,0 +1,299 @@
+/*
+ * DBeaver - Universal Database Manager
+ * Copyright (C) 2010-2018 Serge Rider (serge@jkiss.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jkiss.dbeaver.ext.xugu.model;
+
+import org.jkiss.code.NotNull;
+import org.jkiss.dbeaver.DBException;
+import org.jkiss.dbeaver.Log;
+import org.jkiss.dbeaver.ext.xugu.XuguConstants;
+import org.jkiss.dbeaver.model.DBUtils;
+import org.jkiss.dbeaver.model.exec.DBCExecutionContext;
+import org.jkiss.dbeaver.model.exec.DBCExecutionPurpose;
+import org.jkiss.dbeaver.model.exec.jdbc.JDBCSession;
+import org.jkiss.dbeaver.model.runtime.DBRProgressMonitor;
+import org.jkiss.dbeaver.model.runtime.VoidProgressMonitor;
+
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 并行结构加载器
+ * 在有限数量的独立元数据连接上并行执行相互独立的缓存加载任务，每个工作线程借用一个连接并依次领取任务；
+ * 连接由数据源的加载连接池保存，多次加载之间复用，数据源关闭时才关闭
+ */
+public class XuguStructureLoader {
+
+    //等待工作线程时刷新进度的间隔
+    private static final long PROGRESS_INTERVAL_MS = 200;
+
+    /**
+     * 加载用的独立元数据连接，数量有上限，空闲连接保留到数据源关闭
+     */
+    static final class ContextPool {
+        private final XuguDataSource dataSource;
+        private final int maxSize;
+        private final Deque<DBCExecutionContext> idle = new ArrayDeque<>();
+        private int openCount;
+        private boolean closed;
+
+        ContextPool(@NotNull XuguDataSource dataSource, int maxSize)
+        {
+            this.dataSource = dataSource;
+            this.maxSize = Math.max(1, maxSize);
+        }
+
+        /**
+         * 借用一个连接，没有空闲连接且已达上限时返回null
+         */
+        DBCExecutionContext acquire(DBRProgressMonitor monitor) throws DBException
+        {
+            synchronized (this) {
+                if (closed) {
+                    return null;
+                }
+                while (!idle.isEmpty()) {
+                    DBCExecutionContext context = idle.pollFirst();
+                    if (context.isConnected()) {
+                        return context;
+                    }
+                    openCount--;
+                    context.close();
+                }
+                if (openCount >= maxSize) {
+                    return null;
+                }
+                openCount++;
+            }
+            try {
+                return dataSource.getDefaultInstance().openIsolatedContext(monitor, XuguConstants.CONTEXT_PURPOSE_STRUCTURE_LOADER);
+            } catch (DBException | RuntimeException e) {
+                synchronized (this) {
+                    openCount--;
+                }
+                throw e;
+            }
+        }
+
+        void release(DBCExecutionContext context)
+        {
+            synchronized (this) {
+                if (!closed) {
+                    idle.addFirst(context);
+                    return;
+                }
+                openCount--;
+            }
+            context.close();
+        }
+
+        /**
+         * 关闭空闲连接，借出中的连接在归还时关闭
+         */
+        void close()
+        {
+            List<DBCExecutionContext> contexts;
+            synchronized (this) {
+                closed = true;
+                contexts = new ArrayList<>(idle);
+                openCount -= idle.size();
+                idle.clear();
+            }
+            for (DBCExecutionContext context : contexts) {
+                context.close();
+            }
+        }
+    }
+
+    /**
+     * 工作线程使用的监控：只转发取消状态，进度由调用线程统一报告
+     */
+    static final class WorkerMonitor extends VoidProgressMonitor {
+        private final DBRProgressMonitor parent;
+
+        WorkerMonitor(DBRProgressMonitor parent)
+        {
+            this.parent = parent;
+        }
+
+        @Override
+        public boolean isCanceled()
+        {
+            return parent.isCanceled();
+        }
+    }
+
+    private static final Log log = Log.getLog(XuguStructureLoader.class);
+
+    /**
+     * 加载任务，使用工作线程自己的会话读取元数据
+     */
+    public interface LoadTask {
+        void load(@NotNull JDBCSession session) throws SQLException, DBException;
+    }
+
+    private final XuguDataSource dataSource;
+    private final int maxConnections;
+    private final Map<String, LoadTask> tasks = new LinkedHashMap<>();
+
+    public XuguStructureLoader(@NotNull XuguDataSource dataSource, int maxConnections)
+    {
+        this.dataSource = dataSource;
+        this.maxConnections = Math.max(1, maxConnections);
+    }
+
+    public XuguStructureLoader addTask(@NotNull String name, @NotNull LoadTask task)
+    {
+        tasks.put(name, task);
+        return this;
+    }
+
+    /**
+     * 执行全部任务并等待结束，任一任务失败时抛出其异常
+     * @param monitor 监控
+     * @throws DBException
+     */
+    public void run(@NotNull DBRProgressMonitor monitor) throws DBException
+    {
+        if (tasks.isEmpty()) {
+            return;
+        }
+        final Queue<Map.Entry<String, LoadTask>> queue = new ConcurrentLinkedQueue<>(tasks.entrySet());
+        final AtomicInteger completed = new AtomicInteger();
+        int workerCount = Math.min(maxConnections, tasks.size());
+        long startTime = System.currentTimeMillis();
+        if (workerCount == 1) {
+            try (JDBCSession session = DBUtils.openMetaSession(monitor, dataSource, "Load structure")) {
+                runTasks(monitor, session, queue, completed);
+            }
+            return;
+        }
+        //先在调用线程上借出连接，工作线程数等于实际借到的连接数，每个连接同时只有一个线程使用
+        final ContextPool pool = dataSource.getStructureLoaderContexts();
+        final Queue<DBCExecutionContext> contexts = acquireContexts(monitor, pool, workerCount);
+        if (contexts.isEmpty()) {
+            try (JDBCSession session = DBUtils.openMetaSession(monitor, dataSource, "Load structure")) {
+                runTasks(monitor, session, queue, completed);
+            }
+            return;
+        }
+        workerCount = contexts.size();
+        ExecutorService executor = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "Xugu structure loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>(workerCount);
+            for (int i = 0; i < workerCount; i++) {
+                futures.add(executor.submit(() -> {
+                    runWorker(new WorkerMonitor(monitor), pool, contexts, queue, completed);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                while (true) {
+                    monitor.subTask("Load structure (" + completed.get() + "/" + tasks.size() + ")");
+                    try {
+                        future.get(PROGRESS_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                        break;
+                    } catch (TimeoutException e) {
+                        // 继续等待
+                    }
+                }
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof DBException) {
+                throw (DBException) cause;
+            }
+            throw new DBException("Error loading structure", cause, dataSource);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DBException("Structure loading interrupted", e, dataSource);
+        } finally {
+            executor.shutdownNow();
+            //未开始执行的工作线程没有取走的连接
+            for (DBCExecutionContext context; (context = contexts.poll()) != null; ) {
+                pool.release(context);
+            }
+        }
+        log.debug("[Xugu] Loaded " + tasks.size() + " structure parts on " + workerCount + " connections in " + (System.currentTimeMillis() - startTime) + "ms");
+    }
+
+    /**
+     * 借出最多count个连接，连接池已满或无法再打开连接时按已借到的数量执行
+     */
+    private Queue<DBCExecutionContext> acquireContexts(DBRProgressMonitor monitor, ContextPool pool, int count)
+    {
+        Queue<DBCExecutionContext> contexts = new ConcurrentLinkedQueue<>();
+        try {
+            for (int i = 0; i < count; i++) {
+                DBCExecutionContext context = pool.acquire(monitor);
+                if (context == null) {
+                    break;
+                }
+                contexts.add(context);
+            }
+        } catch (DBException e) {
+            log.debug("Can't open isolated metadata context, load with " + contexts.size() + " connections", e);
+        }
+        return contexts;
+    }
+
+    private void runWorker(DBRProgressMonitor monitor, ContextPool pool, Queue<DBCExecutionContext> contexts, Queue<Map.Entry<String, LoadTask>> queue, AtomicInteger completed) throws DBException
+    {
+        DBCExecutionContext context = contexts.poll();
+        if (context == null) {
+            return;
+        }
+        try (JDBCSession session = (JDBCSession) context.openSession(monitor, DBCExecutionPurpose.META, "Load structure")) {
+            runTasks(monitor, session, queue, completed);
+        } finally {
+            pool.release(context);
+        }
+    }
+
+    private void runTasks(DBRProgressMonitor monitor, JDBCSession session, Queue<Map.Entry<String, LoadTask>> queue, AtomicInteger completed) throws DBException
+    {
+        Map.Entry<String, LoadTask> task;
+        while (!monitor.isCanceled() && (task = queue.poll()) != null) {
+            monitor.subTask(task.getKey());
+            long startTime = System.currentTimeMillis();
+            try {
+                task.getValue().load(session);
+            } catch (SQLException e) {
+                throw new DBException(e, dataSource);
+            }
+            completed.incrementAndGet();
+            log.debug("[Xugu] " + task.getKey() + ": " + (System.currentTimeMillis() - startTime) + "ms");
+        }
+    }
+}
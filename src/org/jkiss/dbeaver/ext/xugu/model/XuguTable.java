@@ -62,7 +62,6 @@ public class XuguTable extends XuguTablePhysical implements DBPScriptObject
     private int copy_num;
     private int block_size;
     private int chunk_size;
-    private long record_num;
     private int pctfree;
     private String file_type;
     private String file_path;
@@ -119,7 +118,6 @@ public class XuguTable extends XuguTablePhysical implements DBPScriptObject
             this.copy_num = JDBCUtils.safeGetInt(dbResult, "COPY_NUM");
             this.block_size = JDBCUtils.safeGetInt(dbResult, "BLOCK_SIZE");
             this.chunk_size = JDBCUtils.safeGetInt(dbResult, "CHUNK_SIZE");
-            this.record_num = JDBCUtils.safeGetLong(dbResult, "RECORD_NUM");
             this.pctfree = JDBCUtils.safeGetInt(dbResult, "PCTFREE");
             this.use_cache = JDBCUtils.safeGetBoolean(dbResult, "USE_CACHE");
             this.online = JDBCUtils.safeGetString(dbResult, "ONLINE");
@@ -224,7 +222,7 @@ public class XuguTable extends XuguTablePhysical implements DBPScriptObject
 	}
 
 	public long getRecord_num() {
-		return record_num;
+		return getRowCount();
 	}
 
 	public int getPctfree() {
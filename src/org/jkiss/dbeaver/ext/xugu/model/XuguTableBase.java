@@ -352,30 +352,12 @@ public abstract class XuguTableBase extends JDBCTable<XuguDataSource, XuguSchema
         @Override
         protected JDBCStatement prepareObjectsStatement(@NotNull JDBCSession session, @NotNull XuguTableBase owner) throws SQLException
         {
-    		StringBuilder builder = new StringBuilder();
-        	//对象类型为table
-        	if(owner.getType().getTypeName().equals(XuguObjectType.TABLE.getTypeName())) {
-        		builder.append("SELECT *, tr.OBJ_ID AS TABLE_ID\nFROM ");
-            	builder.append(owner.getDataSource().getRoleFlag());
-            	builder.append("_TRIGGERS tr WHERE SCHEMA_ID=");
-            	builder.append(owner.getSchema().getId());
-            	builder.append(" AND TABLE_ID=");
-            	builder.append(owner.getId());
-            	builder.append("\n ORDER BY TRIG_NAME");
-        	}
-        	//对象类型为view
-        	else {
-        		builder.append("SELECT *, tr.OBJ_ID AS VIEW_ID\nFROM ");
-            	builder.append(owner.getDataSource().getRoleFlag());
-            	builder.append("_TRIGGERS tr WHERE SCHEMA_ID=");
-            	builder.append(owner.getSchema().getId());
-            	builder.append(" AND VIEW_ID=");
-            	builder.append(owner.getId());
-            	builder.append("\n ORDER BY TRIG_NAME");
-        	}
-        	
-        	log.debug("[Xugu] Construct select triggers sql: "+builder.toString());
-            JDBCPreparedStatement dbStat = session.prepareStatement(builder.toString());
+        	//对象类型为table或view
+        	boolean isTable = owner.getType().getTypeName().equals(XuguObjectType.TABLE.getTypeName());
+            JDBCPreparedStatement dbStat = owner.getDataSource().getQueryRegistry().prepare(session,
+                isTable ? XuguQueryRegistry.Query.TABLE_TRIGGERS : XuguQueryRegistry.Query.VIEW_TRIGGERS);
+            dbStat.setLong(1, owner.getSchema().getId());
+            dbStat.setInt(2, owner.getId());
             return dbStat;
         }
 
@@ -392,29 +374,27 @@ public abstract class XuguTableBase extends JDBCTable<XuguDataSource, XuguSchema
         	String cols = forObject.getDescription();
         	int i1 = cols.toUpperCase().indexOf(" OF ");
         	int i2 = cols.toUpperCase().indexOf(" ON ");
-        	StringBuilder sql = new StringBuilder();
-        	sql.append("SELECT * FROM "+ owner.getDataSource().getRoleFlag() +"_COLUMNS WHERE ");
         	//columns系统表中只有table_id字段 不需要区分view
-        	sql.append("TABLE_ID=");
-    		sql.append(owner.getId());
-        	//指定了特殊字段则仅查询指定字段，若没有则直接查该表的所有列
-        	if(i1!=-1) {
-        		cols = cols.substring(i1+4, i2);
-        		String[] col = cols.split(",");
-        		sql.append(" AND COL_NAME IN(");
-        		for(int i=0; i<col.length; i++) {
-        			sql.append("'");
-        			sql.append(col[i].replaceAll("\"", ""));
-        			sql.append("'");
-        			if(i!=col.length-1) {
-        				sql.append(",");
-        			}
-        		}
-        		sql.append(")");
+        	//没有指定特殊字段时直接查该表的所有列，使用固定语句
+        	if (i1 == -1) {
+                JDBCPreparedStatement dbStat = owner.getDataSource().getQueryRegistry().prepare(session, XuguQueryRegistry.Query.TRIGGER_COLUMNS);
+                dbStat.setInt(1, owner.getId());
+                return dbStat;
         	}
-        	
-        	log.debug("[Xugu] Construct select trigger columns sql: "+sql.toString());
+        	//指定了特殊字段则仅查询指定字段，列数不固定，按列数生成参数
+        	String[] col = cols.substring(i1 + 4, i2).split(",");
+        	StringBuilder sql = new StringBuilder();
+        	sql.append(XuguQueryRegistry.Query.TRIGGER_COLUMNS.getSql(owner.getDataSource().getRoleFlag()));
+        	sql.append(" AND COL_NAME IN(");
+        	for (int i = 0; i < col.length; i++) {
+        		sql.append(i == 0 ? "?" : ",?");
+        	}
+        	sql.append(")");
             JDBCPreparedStatement dbStat = session.prepareStatement(sql.toString());
+            dbStat.setInt(1, owner.getId());
+            for (int i = 0; i < col.length; i++) {
+                dbStat.setString(i + 2, col[i].replaceAll("\"", ""));
+            }
             return dbStat;
         }
 
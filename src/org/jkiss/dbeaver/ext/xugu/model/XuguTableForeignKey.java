@@ -66,6 +66,19 @@ public class XuguTableForeignKey extends XuguTableConstraintBase implements DBST
         XuguTable table,
         ResultSet dbResult)
         throws DBException
+    {
+        this(monitor, table, null, dbResult);
+    }
+
+    /**
+     * @param refTable 调用方已解析的被引用表，为null时按结果集中的模式名和表名查找
+     */
+    public XuguTableForeignKey(
+        DBRProgressMonitor monitor,
+        XuguTable table,
+        @Nullable XuguTableBase refTable,
+        ResultSet dbResult)
+        throws DBException
     {
         super(
             table,
@@ -80,15 +93,17 @@ public class XuguTableForeignKey extends XuguTableConstraintBase implements DBST
 			this.enable = JDBCUtils.safeGetBoolean(dbResult, "ENABLE");
 		
 	        log.debug("Xugu can get alias filed? "+refTableName+" "+refName);
-	        XuguTableBase refTable = XuguTableBase.findTable(
-	            monitor,
-	            table.getDataSource(),
-	            refOwnerName,
-	            refTableName);
+	        if (refTable == null) {
+	            refTable = XuguTableBase.findTable(
+	                monitor,
+	                table.getDataSource(),
+	                refOwnerName,
+	                refTableName);
+	        }
 	        if (refTable == null) {
 	            log.warn("Referenced table '" + DBUtils.getSimpleQualifiedName(refOwnerName, refTableName) + "' not found");
 	        } else {
-	            referencedKey = refTable.getConstraint(monitor, refName);
+	            referencedKey = refName == null ? null : refTable.getConstraint(monitor, refName);
 	            if (referencedKey == null) {
 	                log.warn("Referenced constraint '" + refName + "' not found in table '" + refTable.getFullyQualifiedName(DBPEvaluationContext.DDL) + "'");
 	                referencedKey = new XuguTableConstraint(refTable, "refName", DBSEntityConstraintType.UNIQUE_KEY, null, XuguObjectStatus.ERROR);
@@ -17,10 +17,19 @@
 package org.jkiss.dbeaver.ext.xugu.model;
 
 import org.jkiss.code.NotNull;
+import org.jkiss.code.Nullable;
 import org.jkiss.dbeaver.DBException;
 import org.jkiss.dbeaver.Log;
+import org.jkiss.dbeaver.ext.xugu.XuguConstants;
+import org.jkiss.dbeaver.model.DBPEvaluationContext;
 import org.jkiss.dbeaver.model.DBUtils;
+import org.jkiss.dbeaver.model.data.DBDDataFilter;
+import org.jkiss.dbeaver.model.data.DBDDataReceiver;
 import org.jkiss.dbeaver.model.exec.DBCException;
+import org.jkiss.dbeaver.model.exec.DBCExecutionSource;
+import org.jkiss.dbeaver.model.exec.DBCSession;
+import org.jkiss.dbeaver.model.exec.DBCStatistics;
+import org.jkiss.dbeaver.model.exec.DBCTransactionManager;
 import org.jkiss.dbeaver.model.exec.jdbc.JDBCPreparedStatement;
 import org.jkiss.dbeaver.model.exec.jdbc.JDBCResultSet;
 import org.jkiss.dbeaver.model.exec.jdbc.JDBCSession;
@@ -28,14 +37,17 @@ import org.jkiss.dbeaver.model.exec.jdbc.JDBCStatement;
 import org.jkiss.dbeaver.model.impl.jdbc.JDBCUtils;
 import org.jkiss.dbeaver.model.impl.jdbc.cache.JDBCObjectCache;
 import org.jkiss.dbeaver.model.meta.*;
+import org.jkiss.dbeaver.model.preferences.DBPPreferenceStore;
 import org.jkiss.dbeaver.model.runtime.DBRProgressMonitor;
 import org.jkiss.dbeaver.model.runtime.VoidProgressMonitor;
+import org.jkiss.dbeaver.model.struct.DBSAttributeBase;
 import org.jkiss.dbeaver.model.struct.DBSObject;
 import org.jkiss.dbeaver.model.struct.DBSObjectLazy;
 import org.jkiss.dbeaver.ext.xugu.XuguUtils;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -51,7 +63,10 @@ public abstract class XuguTablePhysical extends XuguTableBase implements DBSObje
     public static final String CAT_STATISTICS = "Statistics";
 
     //private boolean valid;
+    //统计信息中的估计行数（ALL_TABLES.RECORD_NUM），读取表列表时一并获得，不访问表数据
     private long rowCount;
+    //最后修改时间（ALL_OBJECTS.LAST_MODI_TIME），由表查询关联读取
+    private Timestamp lastModified;
     private Long realRowCount;
     private Object tablespace;
     private Integer partitioned;
@@ -73,10 +88,128 @@ public abstract class XuguTablePhysical extends XuguTableBase implements DBSObje
 
         //加载表分区信息
         this.partitioned = JDBCUtils.safeGetInteger(dbResult, "PARTI_TYPE");
+        this.rowCount = JDBCUtils.safeGetLong(dbResult, "RECORD_NUM");
+        this.lastModified = JDBCUtils.safeGetTimestamp(dbResult, "LAST_MODI_TIME");
         this.partitionCache = new PartitionCache();
         this.subPartitionCache = new SubPartitionCache();
     }
 
+    /**
+     * @return 字典统计的估计行数
+     */
+    @Property(category = CAT_STATISTICS, viewable = true, order = 20)
+    public long getRowCount()
+    {
+        return rowCount;
+    }
+
+    /**
+     * @return 表最后修改时间，用于判断估计行数是否可能已过时
+     */
+    @Property(category = CAT_STATISTICS, viewable = false, order = 21)
+    public Timestamp getLastModified()
+    {
+        return lastModified;
+    }
+
+    /**
+     * 精确行数，需要扫描整张表，仅在属性页中按需计算（后台执行，取消时中止查询），结果缓存到刷新对象为止
+     */
+    @Property(category = CAT_STATISTICS, viewable = false, expensive = true, order = 22)
+    public synchronized Long getRealRowCount(DBRProgressMonitor monitor)
+    {
+        if (realRowCount != null) {
+            return realRowCount;
+        }
+        if (!isPersisted()) {
+            return null;
+        }
+        realRowCount = readRealRowCount(monitor);
+        return realRowCount;
+    }
+
+    private Long readRealRowCount(DBRProgressMonitor monitor)
+    {
+        try (JDBCSession session = DBUtils.openUtilSession(monitor, this, "Read row count of '" + getName() + "'")) {
+            try (JDBCStatement dbStat = session.createStatement()) {
+                try (JDBCResultSet dbResult = dbStat.executeQuery("SELECT COUNT(*) FROM " + getFullyQualifiedName(DBPEvaluationContext.DML))) {
+                    if (dbResult.next()) {
+                        return dbResult.getLong(1);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            if (!monitor.isCanceled()) {
+                log.debug("Can't read row count of '" + getName() + "'", e);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 数据导入使用批量插入；需要返回生成键时仍按默认方式逐行插入
+     */
+    @NotNull
+    @Override
+    public ExecuteBatch insertData(@NotNull DBCSession session, @NotNull DBSAttributeBase[] attributes, @Nullable DBDDataReceiver keysReceiver, @NotNull DBCExecutionSource source)
+        throws DBCException
+    {
+        if (keysReceiver != null) {
+            return super.insertData(session, attributes, keysReceiver, source);
+        }
+        DBPPreferenceStore preferenceStore = getDataSource().getContainer().getPreferenceStore();
+        return new XuguInsertBatch(
+            this,
+            attributes,
+            preferenceStore.getInt(XuguConstants.PREF_INSERT_BATCH_SIZE),
+            preferenceStore.getInt(XuguConstants.PREF_INSERT_COMMIT_INTERVAL));
+    }
+
+    /**
+     * 无过滤、无行数限制地读取整张分区表（数据导出）时，按分区（有子分区时按子分区）并行扫描，结果按分区顺序输出。
+     * 各分区在各自的连接上读取，不是同一个快照，读取期间的并发修改可能使行重复或遗漏；
+     * 会话处于手动提交（事务中）时按普通方式读取，保证读到本事务内的数据
+     */
+    @NotNull
+    @Override
+    public DBCStatistics readData(@NotNull DBCExecutionSource source, @NotNull DBCSession session, @NotNull DBDDataReceiver dataReceiver, @Nullable DBDDataFilter dataFilter, long firstRow, long maxRows, long flags)
+        throws DBCException
+    {
+        int connections = getDataSource().getContainer().getPreferenceStore().getInt(XuguConstants.PREF_PARTITION_READ_CONNECTIONS);
+        if (connections > 1 && partitioned != null && partitioned > 0 && firstRow <= 0 && maxRows <= 0 &&
+            (dataFilter == null || !dataFilter.hasFilters()) && (flags & FLAG_READ_PSEUDO) == 0 && isAutoCommit(session))
+        {
+            List<? extends XuguPartitionBase<?>> partitions = getReadPartitions(session.getProgressMonitor());
+            if (partitions.size() > 1) {
+                return new XuguPartitionReader(this, partitions, connections).read(session, dataReceiver);
+            }
+        }
+        return super.readData(source, session, dataReceiver, dataFilter, firstRow, maxRows, flags);
+    }
+
+    private static boolean isAutoCommit(DBCSession session) throws DBCException
+    {
+        DBCTransactionManager txnManager = DBUtils.getTransactionManager(session.getExecutionContext());
+        return txnManager == null || txnManager.isAutoCommit();
+    }
+
+    private List<? extends XuguPartitionBase<?>> getReadPartitions(DBRProgressMonitor monitor)
+    {
+        try {
+            Collection<XuguTableSubPartition> subPartitions = getSubPartitions(monitor);
+            if (subPartitions != null && !subPartitions.isEmpty()) {
+                return new ArrayList<>(subPartitions);
+            }
+            Collection<XuguTablePartition> partitions = getPartitions(monitor);
+            if (partitions != null) {
+                return new ArrayList<>(partitions);
+            }
+        } catch (DBException e) {
+            log.debug("Can't read partitions of '" + getName() + "', reading the whole table", e);
+        }
+        return new ArrayList<XuguTablePartition>();
+    }
+
     @Override
     public Object getLazyReference(Object propertyId)
     {
@@ -132,6 +265,7 @@ public abstract class XuguTablePhysical extends XuguTableBase implements DBSObje
     public DBSObject refreshObject(@NotNull DBRProgressMonitor monitor) throws DBException
     {
         getContainer().indexCache.clearObjectCache(this);
+        realRowCount = null;
     	//return this;
         return super.refreshObject(monitor);
     }
@@ -146,18 +280,9 @@ public abstract class XuguTablePhysical extends XuguTableBase implements DBSObje
         @Override
         protected JDBCStatement prepareObjectsStatement(@NotNull JDBCSession session, @NotNull XuguTablePhysical table) throws SQLException
         {        	
-        	StringBuilder builder = new StringBuilder();
-        	builder.append("SELECT * FROM ");
-        	builder.append(table.getSchema().getRoleFlag());
-        	builder.append("_PARTIS P INNER JOIN (SELECT PARTI_TYPE, PARTI_KEY, AUTO_PARTI_TYPE, AUTO_PARTI_SPAN, TABLE_ID, TABLE_NAME FROM ");
-        	builder.append(table.getSchema().getRoleFlag());
-        	builder.append("_TABLES T WHERE TABLE_NAME = '");
-        	builder.append(table.getName());
-        	builder.append("' and SCHEMA_ID = ");
-        	builder.append(table.getSchema().getId());
-        	builder.append(") ON P.TABLE_ID = T.TABLE_ID");
-        	
-            final JDBCPreparedStatement dbStat = session.prepareStatement(builder.toString());
+            final JDBCPreparedStatement dbStat = table.getDataSource().getQueryRegistry().prepare(session, XuguQueryRegistry.Query.PARTITIONS);
+            dbStat.setString(1, table.getName());
+            dbStat.setLong(2, table.getSchema().getId());
             return dbStat;
         }
 
@@ -173,17 +298,9 @@ public abstract class XuguTablePhysical extends XuguTableBase implements DBSObje
     	@Override
         protected JDBCStatement prepareObjectsStatement(@NotNull JDBCSession session, @NotNull XuguTablePhysical table) throws SQLException
         {        	
-    		StringBuilder builder = new StringBuilder();
-        	builder.append("SELECT * FROM ");
-        	builder.append(table.getSchema().getRoleFlag());
-        	builder.append("_SUBPARTIS SP INNER JOIN (SELECT SUBPARTI_TYPE, SUBPARTI_KEY, TABLE_ID, TABLE_NAME FROM  ");
-        	builder.append(table.getSchema().getRoleFlag());
-        	builder.append("_TABLES T WHERE TABLE_NAME = '");
-        	builder.append(table.getName());
-        	builder.append("' and SCHEMA_ID = ");
-        	builder.append(table.getSchema().getId());
-        	builder.append(") ON SP.TABLE_ID = T.TABLE_ID");
-            final JDBCPreparedStatement dbStat = session.prepareStatement(builder.toString());
+            final JDBCPreparedStatement dbStat = table.getDataSource().getQueryRegistry().prepare(session, XuguQueryRegistry.Query.SUBPARTITIONS);
+            dbStat.setString(1, table.getName());
+            dbStat.setLong(2, table.getSchema().getId());
             return dbStat;
         }
 
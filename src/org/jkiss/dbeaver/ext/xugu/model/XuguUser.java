@@ -118,21 +118,22 @@ public class XuguUser extends XuguGlobalObject implements DBAUser, DBPRefreshabl
         }
         //加载roleList和schemaList        
 		try {
-			//获取SYSDBA连接,用来获取当前用户所包含的角色信息
-			Connection tempConn = dataSource.getSYSDBAConn(monitor);
-	        Statement stmt = tempConn.createStatement();
+			//借用SYSDBA连接,用来获取当前用户所包含的角色信息
 	        String sql = "SELECT USER_NAME FROM ";
 	        sql += dataSource.getRoleFlag();
 	        sql += "_USERS WHERE USER_ID IN(SELECT ROLE_ID FROM SYS_ROLE_MEMBERS WHERE USER_ID=";
 	        sql += this.user_id;
 	        sql += ") AND DB_ID=";
 	        sql += this.db_id;
-	        ResultSet rs = stmt.executeQuery(sql);
 			//获取当前用户所含角色信息
 	        String text = "";
-	        while(rs.next()) {
-	        	String role = rs.getString(1);
-	        	text += role+",";
+	        try (XuguAuxConnectionPool.Lease lease = dataSource.getSYSDBAPool().borrow(monitor);
+	             Statement stmt = lease.getConnection().createStatement();
+	             ResultSet rs = stmt.executeQuery(sql)) {
+	            while(rs.next()) {
+	                String role = rs.getString(1);
+	                text += role+",";
+	            }
 	        }
 	        if(!text.equals("")) {
 	        	text = text.substring(0, text.length()-1);
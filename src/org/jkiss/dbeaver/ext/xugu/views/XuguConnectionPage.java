@@ -59,6 +59,7 @@ public class XuguConnectionPage extends ConnectionPageAbstract implements ICompo
 {
     private Text hostText;
     private Text portText;
+    private Text clusterNodesText;
     private Text dbText;
     private Text usernameText;
     private Text passwordText;
@@ -132,6 +133,14 @@ public class XuguConnectionPage extends ConnectionPageAbstract implements ICompo
         portText.addVerifyListener(UIUtils.getIntegerVerifyListener(Locale.getDefault()));
         portText.addModifyListener(textListener);
 
+        Label clusterNodesLabel = UIUtils.createControlLabel(addrGroup, XuguMessages.dialog_connection_cluster_nodes);
+        clusterNodesLabel.setLayoutData(new GridData(GridData.HORIZONTAL_ALIGN_END));
+
+        clusterNodesText = new Text(addrGroup, SWT.BORDER);
+        clusterNodesText.setLayoutData(new GridData(GridData.FILL_HORIZONTAL));
+        clusterNodesText.setToolTipText(XuguMessages.dialog_connection_cluster_nodes_tip);
+        clusterNodesText.addModifyListener(textListener);
+
         Label dbLabel = UIUtils.createControlLabel(addrGroup, XuguMessages.dialog_connection_database);
         dbLabel.setLayoutData(new GridData(GridData.HORIZONTAL_ALIGN_END));
 
@@ -233,6 +242,9 @@ public class XuguConnectionPage extends ConnectionPageAbstract implements ICompo
                 portText.setText("");
             }
         }
+        if (clusterNodesText != null) {
+            clusterNodesText.setText(CommonUtils.notEmpty(connectionInfo.getProviderProperty(XuguConstants.PROP_CLUSTER_NODES)));
+        }
         if (dbText != null) {
             dbText.setText(CommonUtils.notEmpty(connectionInfo.getDatabaseName()));
         }
@@ -269,6 +281,13 @@ public class XuguConnectionPage extends ConnectionPageAbstract implements ICompo
         if (portText != null) {
             connectionInfo.setHostPort(portText.getText().trim());
         }
+        if (clusterNodesText != null) {
+            if (CommonUtils.isEmptyTrimmed(clusterNodesText.getText())) {
+                connectionInfo.removeProviderProperty(XuguConstants.PROP_CLUSTER_NODES);
+            } else {
+                connectionInfo.setProviderProperty(XuguConstants.PROP_CLUSTER_NODES, clusterNodesText.getText().trim());
+            }
+        }
         if (dbText != null) {
             connectionInfo.setDatabaseName(dbText.getText().trim());
         }